@@ -1,9 +1,5 @@
 package com.example.alpharelease.GameFramework;
 
-import android.os.Handler;
-import android.os.Looper;
-import android.os.Message;
-
 import com.example.alpharelease.GameFramework.actionMessage.EndTurnAction;
 import com.example.alpharelease.GameFramework.actionMessage.GameAction;
 import com.example.alpharelease.GameFramework.actionMessage.GameOverAckAction;
@@ -20,6 +16,10 @@ import com.example.alpharelease.GameFramework.players.GamePlayer;
 import com.example.alpharelease.GameFramework.utilities.GameTimer;
 import com.example.alpharelease.GameFramework.utilities.Logger;
 import com.example.alpharelease.GameFramework.utilities.Tickable;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A class that knows how to play the game. The data in this class represent the
@@ -30,6 +30,13 @@ import com.example.alpharelease.GameFramework.utilities.Tickable;
  * Each game has a unique state definition, so this abstract base class has
  * little inherent functionality.
  *
+ * Actions from the players (and the timer) go into a bounded queue that the
+ * game's own thread takes them from one at a time, so the subclass methods
+ * only ever run on that thread. A sender blocks while the queue is full
+ * instead of piling up work, and nothing here needs Android's Looper, so a
+ * game can run on any JVM. The thread ends once every player has seen the
+ * game over.
+ *
  * @author Steven R. Vegdahl
  * @author Andrew Nuxoll
  * @version July 2013
@@ -41,8 +48,22 @@ public abstract class LocalGame implements Game, Tickable {
     // the stage that the game is in
     private GameStage gameStage = GameStage.BEFORE_GAME;
 
-    // the handler for the game's thread
-    private Handler myHandler;
+    // how many actions may wait for the game's thread before senders block
+    private static final int ACTION_QUEUE_CAPACITY = 64;
+
+    // how long a blocked sender waits before checking whether the game has ended
+    private static final long SEND_RETRY_MILLIS = 100;
+
+    // the actions waiting for the game's thread, from any number of senders
+    private final BlockingQueue<GameAction> actions =
+            new ArrayBlockingQueue<>(ACTION_QUEUE_CAPACITY);
+
+    // actions the game's thread sent itself; only that thread touches this
+    private final ArrayDeque<GameAction> ownActions = new ArrayDeque<>();
+
+    // the game's thread, and whether it has finished
+    private Thread gameThread;
+    private volatile boolean finished = false;
 
     // the players in the game, in order of  player number
     protected GamePlayer[] players;
@@ -105,14 +126,12 @@ public abstract class LocalGame implements Game, Tickable {
             // start the thread
             Runnable runnable = new Runnable() {
                 public void run() {
-                    Looper.prepare();
-                    myHandler = new MyHandler(LocalGame.this);
-                    Looper.loop();
+                    runEventLoop();
                 }
             };
-            Thread thread = new Thread(runnable);
-            thread.setName("Local Game");
-            thread.start();
+            gameThread = new Thread(runnable);
+            gameThread.setName("Local Game");
+            gameThread.start();
         }
 
         // at this point the game is running, so set our game stage to be that of
@@ -165,111 +184,131 @@ public abstract class LocalGame implements Game, Tickable {
     }
 
     /**
-     * Invoked whenever the game's thread receives a message (e.g., from a player
-     * or from a timer).
-     *
-     * @param msg
-     * 			the message that was received
+     * The game's thread: takes actions off the queue and handles them, one at
+     * a time and in the order they were sent, until the game is over and all
+     * players have acknowledged it
      */
-    private void receiveMessage(Message msg) {
-        if (msg.obj instanceof GameAction) { // ignore if not GameAction
-            GameAction action = (GameAction)msg.obj;
-
-            // CASE 1: the game is at the stage where we we waiting for
-            // players to tell us their names. In this case, we expect
-            // a MyNameIsAction object. Once each player have told us its
-            // name, we move on to the next stage.
-
-            if (action instanceof MyNameIsAction &&
-                    gameStage == GameStage.WAITING_FOR_NAMES) {
-                MyNameIsAction mnis = (MyNameIsAction) action;
-                Logger.debugLog(TAG, "received 'myNameIs' ("+mnis.getName()+")");
-
-                // mark that player as having given us its name
-                int playerIdx = getPlayerIdx(mnis.getPlayer());
-                if (playerIdx >= 0 && playerNames[playerIdx] == null) {
-                    playerNames[playerIdx] = mnis.getName(); // store player name
-                    synchronized (this){
-                        playerNameCount++;
-                    }
+    private void runEventLoop() {
+        try {
+            while (!finished) {
+                GameAction action = ownActions.poll();
+                if (action == null) {
+                    action = actions.take(); // sleeps until there is something to do
                 }
-
-                // If all players have told us their name, then move onto the next
-                // game stage, and send a message to each player that the game is
-                // about to start
-                if (playerNameCount >= playerNames.length) {
-                    Logger.debugLog(TAG, "broadcasting player names");
-                    gameStage = GameStage.WAITING_FOR_READY;
-                    playersReady = new boolean[players.length]; // array to keep track of players responding
-                    for (GamePlayer p : players) {
-                        p.sendInfo(
-                                new StartGameInfo((String[])playerNames.clone()));
-                    }
+                receiveAction(action);
+                if (gameStage == GameStage.GAME_OVER && playerFinishedCount >= players.length) {
+                    finished = true;
                 }
             }
-            else if (action instanceof ReadyAction &&
-                    gameStage == GameStage.WAITING_FOR_READY) {
-
-                // CASE 2: we have told all players that the game is about to start;
-                // we are now processing ReadyAction messages from each player to
-                // acknowledge this.
-                ReadyAction ra = (ReadyAction)action;
-
-                // mark the given player as being ready
-                int playerIdx = getPlayerIdx(ra.getPlayer());
-                Logger.debugLog(TAG, "got 'ready' ("+playerNames[playerIdx]+")");
-                if (playerIdx >= 0 && !playersReady[playerIdx]) {
-                    playersReady[playerIdx] = true;
-                    synchronized (this) {
-                        playerReadyCount++;
-                    }
-                }
+        } catch (InterruptedException e) {
+            finished = true;
+        }
+        actions.clear();
+    }
 
-                // if all players are ready, set the game stage to "during game", and
-                // send each player the initial state
-                if (playerReadyCount >= playerNames.length) {
-                    //We initially set the stage to setup, however we are smart enough to know
-                    //If we have to actually perform a setup phase, so check for that and send out
-                    //info accordingly.
-                    gameStage = GameStage.SETUP_PHASE;
-                    if(this.state.getNumSetupTurns() == 0){ gameStage = GameStage.DURING_GAME;}
-                    Logger.log(TAG, "Num of setup turns is "+ this.state.getNumSetupTurns());
-                    Logger.debugLog(TAG, "broadcasting initial state - setup phase");
-                    // send each player the initial state of the game
-                    sendAllUpdatedState();
+    /**
+     * Invoked whenever the game's thread takes an action (e.g., from a player
+     * or from a timer) off its queue.
+     *
+     * @param action
+     * 			the action that was received
+     */
+    private void receiveAction(GameAction action) {
+
+        // CASE 1: the game is at the stage where we we waiting for
+        // players to tell us their names. In this case, we expect
+        // a MyNameIsAction object. Once each player have told us its
+        // name, we move on to the next stage.
+
+        if (action instanceof MyNameIsAction &&
+                gameStage == GameStage.WAITING_FOR_NAMES) {
+            MyNameIsAction mnis = (MyNameIsAction) action;
+            Logger.debugLog(TAG, "received 'myNameIs' ("+mnis.getName()+")");
+
+            // mark that player as having given us its name
+            int playerIdx = getPlayerIdx(mnis.getPlayer());
+            if (playerIdx >= 0 && playerNames[playerIdx] == null) {
+                playerNames[playerIdx] = mnis.getName(); // store player name
+                synchronized (this){
+                    playerNameCount++;
                 }
             }
-            else if (action instanceof TimerAction && gameStage == GameStage.DURING_GAME) {
-
-                // CASE 3: it's during the game, and we get a timer action
 
-                // Only perform the "tick" if it was our timer; otherwise, just post the message
-                if (((TimerAction)action).getTimer() == myTimer) {
-                    this.timerTicked();
+            // If all players have told us their name, then move onto the next
+            // game stage, and send a message to each player that the game is
+            // about to start
+            if (playerNameCount >= playerNames.length) {
+                Logger.debugLog(TAG, "broadcasting player names");
+                gameStage = GameStage.WAITING_FOR_READY;
+                playersReady = new boolean[players.length]; // array to keep track of players responding
+                for (GamePlayer p : players) {
+                    p.sendInfo(
+                            new StartGameInfo((String[])playerNames.clone()));
                 }
-                else {
-                    this.checkAndHandleAction(action);
+            }
+        }
+        else if (action instanceof ReadyAction &&
+                gameStage == GameStage.WAITING_FOR_READY) {
+
+            // CASE 2: we have told all players that the game is about to start;
+            // we are now processing ReadyAction messages from each player to
+            // acknowledge this.
+            ReadyAction ra = (ReadyAction)action;
+
+            // mark the given player as being ready
+            int playerIdx = getPlayerIdx(ra.getPlayer());
+            Logger.debugLog(TAG, "got 'ready' ("+playerNames[playerIdx]+")");
+            if (playerIdx >= 0 && !playersReady[playerIdx]) {
+                playersReady[playerIdx] = true;
+                synchronized (this) {
+                    playerReadyCount++;
                 }
             }
-            else if (action instanceof GameAction && gameStage == GameStage.DURING_GAME) {
 
-                // CASE 4: it's during the game, and we get an action from a player
-                this.checkAndHandleAction(action);
+            // if all players are ready, set the game stage to "during game", and
+            // send each player the initial state
+            if (playerReadyCount >= playerNames.length) {
+                //We initially set the stage to setup, however we are smart enough to know
+                //If we have to actually perform a setup phase, so check for that and send out
+                //info accordingly.
+                gameStage = GameStage.SETUP_PHASE;
+                if(this.state.getNumSetupTurns() == 0){ gameStage = GameStage.DURING_GAME;}
+                Logger.log(TAG, "Num of setup turns is "+ this.state.getNumSetupTurns());
+                Logger.debugLog(TAG, "broadcasting initial state - setup phase");
+                // send each player the initial state of the game
+                sendAllUpdatedState();
             }
-            //CASE 5: We are setup phase and we get an action from a player
-            else if (action instanceof GameAction && gameStage == GameStage.SETUP_PHASE) {
+        }
+        else if (action instanceof TimerAction && gameStage == GameStage.DURING_GAME) {
+
+            // CASE 3: it's during the game, and we get a timer action
+
+            // Only perform the "tick" if it was our timer; otherwise, just post the message
+            if (((TimerAction)action).getTimer() == myTimer) {
+                this.timerTicked();
+            }
+            else {
                 this.checkAndHandleAction(action);
             }
-            else if (action instanceof GameOverAckAction && gameStage == GameStage.GAME_OVER) {
-
-                // CASE 6: the game is over, and we are waiting for each player to
-                // acknowledge this
-                int playerIdx = getPlayerIdx(action.getPlayer());
-                if (playerIdx >= 0 && !playersFinished[playerIdx]) {
-                    playersFinished[playerIdx] = true;
-                    synchronized (this) {
-                        playerFinishedCount++;
-                    }
+        }
+        else if (action instanceof GameAction && gameStage == GameStage.DURING_GAME) {
+
+            // CASE 4: it's during the game, and we get an action from a player
+            this.checkAndHandleAction(action);
+        }
+        //CASE 5: We are setup phase and we get an action from a player
+        else if (action instanceof GameAction && gameStage == GameStage.SETUP_PHASE) {
+            this.checkAndHandleAction(action);
+        }
+        else if (action instanceof GameOverAckAction && gameStage == GameStage.GAME_OVER) {
+
+            // CASE 6: the game is over, and we are waiting for each player to
+            // acknowledge this
+            int playerIdx = getPlayerIdx(action.getPlayer());
+            if (playerIdx >= 0 && !playersFinished[playerIdx]) {
+                playersFinished[playerIdx] = true;
+                synchronized (this) {
+                    playerFinishedCount++;
                 }
             }
         }
@@ -391,13 +430,24 @@ public abstract class LocalGame implements Game, Tickable {
      *            the action to send
      */
     public final void sendAction(GameAction action) {
-        // wait until handler is set
-        while (myHandler == null) Thread.yield();
+        if (action == null || finished) return;
 
-        // package the action into a message and send it to the handler
-        Message msg = new Message();
-        msg.obj = action;
-        myHandler.dispatchMessage(msg);
+        // an action the game's thread sends itself (say, a player answering
+        // on the same thread) is handled after the current one; blocking on
+        // the full queue here would wait forever
+        if (Thread.currentThread() == gameThread) {
+            ownActions.add(action);
+            return;
+        }
+
+        // otherwise wait for room in the queue, giving up if the game ends
+        try {
+            while (!actions.offer(action, SEND_RETRY_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (finished) return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
@@ -420,22 +470,6 @@ public abstract class LocalGame implements Game, Tickable {
         BEFORE_GAME, WAITING_FOR_NAMES, WAITING_FOR_READY, DURING_GAME, GAME_OVER, SETUP_PHASE
     }
 
-    // a handler class for the game's thread
-    private static class MyHandler extends Handler {
-        // the game
-        private final LocalGame game;
-
-        // constructor; parameter is expected to be this game
-        public MyHandler(LocalGame game) {
-            this.game = game;
-        }
-
-        // callback when message is received; invoke the 'gameReceived' message
-        public void handleMessage(Message msg) {
-            game.receiveMessage(msg);
-        }
-    }
-
     /**
      * Returns whether or not we are in setup phase.
      * @return
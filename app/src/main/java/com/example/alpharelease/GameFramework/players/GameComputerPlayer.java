@@ -42,6 +42,7 @@ public abstract class GameComputerPlayer implements GamePlayer, Tickable {
     private Handler myHandler; // the handler for this player's thread
     private boolean running; // whether the player's thread is running
     private boolean gameOver = false; // whether the game is over
+    private boolean headless = false; // whether messages come through receiveNow
     private final GameTimer myTimer = new GameTimer(this); // my timer
 
     /**
@@ -131,6 +132,20 @@ public abstract class GameComputerPlayer implements GamePlayer, Tickable {
         myHandler.post(new MyRunnable(info));
     }
 
+    /**
+     * Handles a message right away on the caller's thread, for running games
+     * without Android's message loop (see Shogi's Tournament). A player fed
+     * this way never starts a thread of its own and doesn't sleep, since
+     * nobody is watching.
+     *
+     * @param info
+     * 			the information message to handle
+     */
+    public final void receiveNow(GameInfo info) {
+        headless = true;
+        new MyRunnable(info).run();
+    }
+
     /**
      * Starts the player.
      */
@@ -228,6 +243,9 @@ public abstract class GameComputerPlayer implements GamePlayer, Tickable {
 
                     // mark game as being over
                     gameOver = true;
+
+                    // let the subclass stop anything it has running
+                    gameEnded();
                 }
                 else if (myInfo instanceof TimerInfo) {
 
@@ -251,6 +269,14 @@ public abstract class GameComputerPlayer implements GamePlayer, Tickable {
         }
     }
 
+    /**
+     * callback method--called on this player's thread once the game is over,
+     * whether or not this player is connected to the GUI
+     */
+    protected void gameEnded() {
+        // by default, we do nothing
+    }
+
     /**
      * callback method--called when we are notified that the game is over
      *
@@ -270,6 +296,7 @@ public abstract class GameComputerPlayer implements GamePlayer, Tickable {
      * 			the number of seconds to sleep for
      */
     protected void sleep(double seconds) {
+        if (headless) return; // nobody to pace the game for
         long milliseconds;
 
         //Since Thread.sleep takes in milliseconds, convert from seconds to milliseconds
@@ -292,6 +319,7 @@ public abstract class GameComputerPlayer implements GamePlayer, Tickable {
      * @param nanoseconds: The number of nanoseconds to sleep for
      */
     protected void sleep(double seconds, int nanoseconds){
+        if (headless) return; // nobody to pace the game for
         long milliseconds;
 
         //Since Thread.sleep takes in milliseconds, convert from seconds to milliseconds
@@ -7,6 +7,10 @@ import android.widget.Toast;
 /**
  * Logger is a class used for all logging purposes.
  * It can perform regular logging as well as toast logging.
+ * Off Android (unit tests, or games run on a desktop JVM) there is no
+ * android.util.Log to write to, so messages go to System.err instead, and
+ * there is no toasting. There only warnings and errors get through when
+ * debug mode is off, so a long run can be kept quiet.
  *
  * @author: Nicole Kister
  */
@@ -29,6 +33,8 @@ public class Logger {
     //These should be used to set the LENGTH variable for Toasting Length
     public static final int SHORT = Toast.LENGTH_SHORT;
     public static final int LONG = Toast.LENGTH_LONG;
+    //Whether we are running on Android, which reports its VM as Dalvik
+    private static final boolean ANDROID = "Dalvik".equals(System.getProperty("java.vm.name"));
 
 
     /**
@@ -39,6 +45,12 @@ public class Logger {
      * @param logMessage
      */
     public static void log(String loggingTag, String logMessage){
+        if(!ANDROID){
+            if(debug){
+                printLog("I", loggingTag, logMessage);
+            }
+            return;
+        }
         if(loggingTag.length() > 23){
             Log.wtf("LOGGING ERROR", "Logging Tag ("+loggingTag+") cannot exceed 23 characters");
         }
@@ -65,6 +77,13 @@ public class Logger {
      * @param logType
      */
     public static void log(String loggingTag, String logMessage, int logType){
+        if(!ANDROID){
+            if(logType != DEBUG || debug){
+                printLog(logType == DEBUG ? "D" : logType == WARN ? "W" : logType == ERROR ? "E" : "F",
+                        loggingTag, logMessage);
+            }
+            return;
+        }
         switch (logType){
             //Debug logging
             case DEBUG:
@@ -109,12 +128,28 @@ public class Logger {
      */
     public static void debugLog(String loggingTag, String logMessage){
         if (debug){
-            Log.d(loggingTag, logMessage);
+            if (ANDROID) {
+                Log.d(loggingTag, logMessage);
+            } else {
+                printLog("D", loggingTag, logMessage);
+            }
         }
 
         //If debug mode isn't selected, we won't do anything.
     }
 
+    /**
+     * Writes a message to System.err in the style of logcat, for when there is no
+     * android.util.Log
+     *
+     * @param level the letter logcat would show for the level (D, I, W, E or F)
+     * @param loggingTag
+     * @param logMessage
+     */
+    private static void printLog(String level, String loggingTag, String logMessage){
+        System.err.println(level + "/" + loggingTag + ": " + logMessage);
+    }
+
     //Getters and setters
     public static boolean getDebugValue(){
         return debug;
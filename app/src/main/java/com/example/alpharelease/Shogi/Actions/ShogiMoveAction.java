@@ -0,0 +1,93 @@
+package com.example.alpharelease.Shogi.Actions;
+
+import com.example.alpharelease.GameFramework.actionMessage.GameAction;
+import com.example.alpharelease.GameFramework.players.GamePlayer;
+import com.example.alpharelease.Shogi.Piece;
+import com.example.alpharelease.Shogi.Tile;
+import com.example.alpharelease.Shogi.Engine.Bitboards;
+import com.example.alpharelease.Shogi.Engine.Move;
+import com.example.alpharelease.Shogi.Engine.Pieces;
+
+/**
+ * A whole move in one action: which piece goes where, whether it promotes,
+ * and for a drop which kind of piece comes out of the hand. The game checks
+ * and plays it in one go, so players keep their own selection and there is
+ * no round trip between picking a piece and moving it.
+ */
+public class ShogiMoveAction extends GameAction {
+
+    private static final long serialVersionUID = 5821930467718253016L;
+
+    // The from square of a drop, which has none
+    public static final int DROP = -1;
+
+    public final int from; //Board tile index the piece leaves, or DROP
+    public final int to; //Board tile index the piece lands on
+    public final boolean promote;
+    public final int dropPiece; //Engine type (see Pieces) of the dropped piece, 0 if not a drop
+
+    /**
+     * Constructor for a move action
+     *
+     * @param player the player who created the action
+     * @param from the tile index the piece moves from, or DROP
+     * @param to the tile index the piece moves to
+     * @param promote whether the piece promotes when it lands
+     * @param dropPiece the engine type of the piece dropped, or 0 for a board move
+     */
+    public ShogiMoveAction(GamePlayer player, int from, int to, boolean promote, int dropPiece) {
+        super(player);
+        this.from = from;
+        this.to = to;
+        this.promote = promote;
+        this.dropPiece = dropPiece;
+    }
+
+    /**
+     * Constructor for the action playing an engine move
+     *
+     * @param player the player who created the action
+     * @param move the move (see {@link Move})
+     */
+    public ShogiMoveAction(GamePlayer player, int move) {
+        this(player, Move.isDrop(move) ? DROP : Move.from(move), Move.to(move),
+                Move.isPromote(move), Move.isDrop(move) ? Move.type(move) : 0);
+    }
+
+    /**
+     * Constructor for the action moving the piece on one tile to another, the
+     * way a player picks it on the screen
+     *
+     * @param player the player who created the action
+     * @param fromTile the tile holding the piece, on the board or in a grave
+     * @param toTile the board tile it moves to
+     * @param promote whether the piece promotes when it lands
+     */
+    public ShogiMoveAction(GamePlayer player, Tile fromTile, Tile toTile, boolean promote) {
+        this(player, isGraveTile(fromTile) ? DROP : fromTile.getTileIndex(), toTile.getTileIndex(),
+                promote, isGraveTile(fromTile) ? dropType(fromTile.getPiece()) : 0);
+    }
+
+    /**
+     * Checks whether this action drops a piece from the hand
+     *
+     * @return true for a drop
+     */
+    public boolean isDrop() {
+        return from == DROP;
+    }
+
+    /**
+     * Checks whether a tile is one of the graves' rather than the board's
+     */
+    private static boolean isGraveTile(Tile t) {
+        return t.getTileIndex() >= Bitboards.SQUARES;
+    }
+
+    /**
+     * The engine type a captured piece is dropped as
+     */
+    private static int dropType(Piece p) {
+        return p == null ? 0 : Pieces.unpromote(p.pieceType.getEngineType());
+    }
+}
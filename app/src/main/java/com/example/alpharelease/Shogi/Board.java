@@ -1,11 +1,18 @@
 package com.example.alpharelease.Shogi;
 
 import android.graphics.Canvas;
-import android.util.Log;
-import com.example.alpharelease.R;
+import com.example.alpharelease.GameFramework.utilities.Logger;
+import com.example.alpharelease.Shogi.Engine.Bitboards;
+import com.example.alpharelease.Shogi.Engine.Move;
+import com.example.alpharelease.Shogi.Engine.MoveGenerator;
+import com.example.alpharelease.Shogi.Engine.Pieces;
+import com.example.alpharelease.Shogi.Engine.Position;
+import com.example.alpharelease.Shogi.Engine.Zobrist;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
  *
@@ -23,6 +30,15 @@ public class Board implements Serializable {
     private final ArrayList<Tile> tiles, possibleTiles;
     private ArrayList<Tile> g1Array, g0Array;
     private final int size = 9;
+
+    // direct lookups: board tiles by row * 9 + col, grave tiles by [player][hand type - 1]
+    public static final int GRAVE_SIZE = Pieces.HAND_TYPES - 1;
+    public static final int GRAVE1_START = 100;
+    public static final int GRAVE0_START = 200;
+    private final Tile[] mailbox = new Tile[81];
+    private final Tile[][] graves = new Tile[2][GRAVE_SIZE];
+    // captured pieces by [player][hand type][n]; the position's hand count says how many are held
+    private final Piece[][][] held = new Piece[2][Pieces.HAND_TYPES][Zobrist.MAX_HAND - 1];
     private final int imagesize = 1030;
     private final int tileSize;
     private final int graveSide = 426;
@@ -47,6 +63,9 @@ public class Board implements Serializable {
     private boolean promoted;
     private Tile temp;
 
+    // bitboard copy of the pieces on the tiles, kept in step by every board change
+    private final Position position;
+
     /**
      * Constructor for Board class
      */
@@ -55,12 +74,84 @@ public class Board implements Serializable {
         g1Array = new ArrayList<>();
         g0Array = new ArrayList<>();
         possibleTiles = new ArrayList<>();
+        position = new Position();
         tileSize = imagesize / 9 - 3;
 
         makeBoard();
         makeGraves();
     }
 
+    /**
+     * Deep copy constructor for Board
+     *
+     * @param orig the board to copy
+     */
+    public Board(Board orig) {
+        this(orig, new IdentityHashMap<Piece, Piece>());
+    }
+
+    /**
+     * Deep copy constructor for Board that shares its piece copies with the
+     * caller, so a game state's piece lists can point at the copied pieces
+     *
+     * @param orig the board to copy
+     * @param copies each original piece mapped to its copy, filled in as
+     *               pieces are copied
+     */
+    Board(Board orig, Map<Piece, Piece> copies) {
+        tiles = new ArrayList<>();
+        g1Array = new ArrayList<>();
+        g0Array = new ArrayList<>();
+        possibleTiles = new ArrayList<>();
+        position = new Position(orig.position);
+        tileSize = orig.tileSize;
+
+        for (Tile t : orig.tiles) {
+            Tile copy = new Tile(t, copyOf(t.getPiece(), copies));
+            tiles.add(copy);
+            mailbox[copy.getTileIndex()] = copy;
+        }
+        for (Tile t : orig.g1Array) {
+            Tile copy = new Tile(t, copyOf(t.getPiece(), copies));
+            g1Array.add(copy);
+            graves[1][copy.getTileIndex() - GRAVE1_START] = copy;
+        }
+        for (Tile t : orig.g0Array) {
+            Tile copy = new Tile(t, copyOf(t.getPiece(), copies));
+            g0Array.add(copy);
+            graves[0][copy.getTileIndex() - GRAVE0_START] = copy;
+        }
+        for (Tile t : orig.possibleTiles) {
+            possibleTiles.add(getTile(t.getTileIndex()));
+        }
+        for (int side = 0; side < 2; side++) {
+            for (int type = 1; type < Pieces.HAND_TYPES; type++) {
+                for (int n = 0; n < position.handCount(side, type); n++) {
+                    held[side][type][n] = copyOf(orig.held[side][type][n], copies);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies a piece once, giving back the same copy when it's asked for again
+     *
+     * @param piece the piece to copy, or null
+     * @param copies each original piece mapped to its copy
+     * @return the copy, or null for no piece
+     */
+    static Piece copyOf(Piece piece, Map<Piece, Piece> copies) {
+        if (piece == null) {
+            return null;
+        }
+        Piece copy = copies.get(piece);
+        if (copy == null) {
+            copy = new Piece(piece);
+            copies.put(piece, copy);
+        }
+        return copy;
+    }
+
     /**
      * Initializes the tiles to create the initial board setup
      */
@@ -106,6 +197,7 @@ public class Board implements Serializable {
                 temp.setCoords(left, top, right, bottom);
                 temp.setTileIndex(tileNum);
                 tiles.add(temp);
+                mailbox[tileNum] = temp;
                 tileNum++;
             }
         }
@@ -120,56 +212,48 @@ public class Board implements Serializable {
         tileNum = 100;
         offsetVer = 0;
 
-        // Top Grave (5x4)
-        for (int i = 0; i < 5; i++) {
+        // Top Grave (rows of 4, one tile per kind of piece)
+        for (int slot = 0; slot < GRAVE_SIZE; slot++) {
+            int i = slot / 4;
+            int j = slot % 4;
             // vertical
             top = tgTopEdge + (i * (graveSide/5));
             bottom = tgTopEdge + ((i + 1) * (graveSide/5));
-
-            for (int j = 0; j < 4; j++) {
-                // horizontal
-                left = tgLeftEdge + (j * (graveSide/4));
-                right = tgLeftEdge + ((j + 1) * (graveSide/4));
-
-                temp = new Tile();
-                temp.setOccupied(false);
-                temp.setRow(i);
-                temp.setCol(j);
-                temp.setCoords(left, top, right, bottom);
-                temp.setTileIndex(tileNum);
-                g1Array.add(temp);
-                tileNum++;
-
-            } // for j ! col
-        } // for i ! row
+            // horizontal
+            left = tgLeftEdge + (j * (graveSide/4));
+            right = tgLeftEdge + ((j + 1) * (graveSide/4));
+
+            temp = new Tile();
+            temp.setOccupied(false);
+            temp.setRow(i);
+            temp.setCol(j);
+            temp.setCoords(left, top, right, bottom);
+            temp.setTileIndex(tileNum);
+            g1Array.add(temp);
+            graves[1][tileNum - GRAVE1_START] = temp;
+            tileNum++;
+        }
 
         tileNum = 200;
-        // Bottom Grave (5x4)
-        for (int i = 0; i < 5; i++) {
-
+        // Bottom Grave (rows of 4, one tile per kind of piece)
+        for (int slot = 0; slot < GRAVE_SIZE; slot++) {
+            int i = slot / 4;
+            int j = slot % 4;
             bottom = bgBottomEdge - (i * (graveSide/5));
             top = bgBottomEdge - ((i + 1) * (graveSide/5));
-
-            //bottom = bgBottomEdge;
-            //top = bgTopEdge;
-
-            for (int j = 0; j < 4; j++) {
-                // horizontal
-                //left = bgLeftEdge;
-                //right = bgRightEdge;
-                left = bgLeftEdge + (j * (graveSide/4));
-                right = bgLeftEdge + ((j + 1) * (graveSide/4));
-
-                temp = new Tile();
-                temp.setOccupied(false);
-                temp.setRow(i);
-                temp.setCol(j);
-                temp.setCoords(left, top, right, bottom);
-                temp.setTileIndex(tileNum);
-                g0Array.add(temp);
-                tileNum++;
-            } // for j ! col
-        } // for i ! row
+            left = bgLeftEdge + (j * (graveSide/4));
+            right = bgLeftEdge + ((j + 1) * (graveSide/4));
+
+            temp = new Tile();
+            temp.setOccupied(false);
+            temp.setRow(i);
+            temp.setCol(j);
+            temp.setCoords(left, top, right, bottom);
+            temp.setTileIndex(tileNum);
+            g0Array.add(temp);
+            graves[0][tileNum - GRAVE0_START] = temp;
+            tileNum++;
+        }
     }
 
     /**
@@ -179,14 +263,10 @@ public class Board implements Serializable {
      */
     public void assignTile(ArrayList<Piece> pieces) {
         for (Piece p : pieces) {
-            for (Tile t : tiles) {
-                if (p.getRow() != t.getRow() || p.getCol() != t.getCol()) {
-                    continue;
-                }
-                if (p.getRow() == t.getRow() && p.getCol() == t.getCol()) {
-                    t.setPiece(p);
-                    break;
-                }
+            Tile t = getTile(p.getCol(), p.getRow());
+            if (t != null) { //Promoted pieces aren't on the board yet
+                t.setPiece(p);
+                position.put(t.getTileIndex(), codeOf(p));
             }
         }
     }
@@ -262,12 +342,10 @@ public class Board implements Serializable {
      * @return the selected Tile if found and null if not
      */
     public Tile getTile(int col, int row) {
-        for (Tile t : tiles) { //Check the tiles rows/col
-            if (t.getCol() == col && t.getRow() == row) {
-                return t;
-            }
+        if (col < 0 || col >= size || row < 0 || row >= size) {
+            return null; //If the tile doesn't exist it's null
         }
-        return null; //If the tile doesn't exist it's null
+        return mailbox[row * size + col];
     }
 
     /**
@@ -277,20 +355,14 @@ public class Board implements Serializable {
      * @return t the selected Tile if found and null if not
      */
     public Tile getTile(int index) {
-        for (Tile t : tiles) { //Check the tiles indexes
-            if (t.getTileIndex() == index) {
-                return t;
-            }
+        if (index >= 0 && index < mailbox.length) {
+            return mailbox[index];
         }
-        for (Tile t : g0Array) { //Check the tiles indexes
-            if (t.getTileIndex() == index) {
-                return t;
-            }
+        if (index >= GRAVE0_START && index < GRAVE0_START + GRAVE_SIZE) {
+            return graves[0][index - GRAVE0_START];
         }
-        for (Tile t : g1Array) { //Check the tiles indexes
-            if (t.getTileIndex() == index) {
-                return t;
-            }
+        if (index >= GRAVE1_START && index < GRAVE1_START + GRAVE_SIZE) {
+            return graves[1][index - GRAVE1_START];
         }
         return null; //If the tile doesn't exist it's null
     }
@@ -312,25 +384,197 @@ public class Board implements Serializable {
         return g1Array;
     }
 
-    // When killed, place in first empty tile, when dropped, tile is emptied [not occupied]
+    /**
+     * Returns the bitboard position mirroring the pieces on the tiles
+     *
+     * @return the board's Position
+     */
+    public Position getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns how many pieces of one kind a player is holding in their grave
+     *
+     * @param side the player
+     * @param type the engine type of the piece (see {@link Pieces})
+     * @return the number held
+     */
+    public int heldCount(int side, int type) {
+        return position.handCount(side, type);
+    }
+
+    /**
+     * Finds the tile a move starts from: the board square for a normal move,
+     * or a grave tile holding the right kind of piece for a drop
+     *
+     * @param move the move (see {@link Move})
+     * @param side the player making the move
+     * @return the tile to select, or null if the move's piece isn't there
+     */
+    public Tile getMoveTile(int move, int side) {
+        if (!Move.isDrop(move)) {
+            return mailbox[Move.from(move)];
+        }
+        Tile t = graves[side][Move.type(move) - 1];
+        return t.getPiece() != null ? t : null;
+    }
+
+    /**
+     * Finds the legal move a player described by its squares, for checking a
+     * move sent as one action; it doesn't look at any tiles
+     *
+     * @param gen the calling thread's move generator
+     * @param from the square the piece moves from, ignored for a drop
+     * @param to the square the piece moves to
+     * @param promote whether the piece promotes (it does anyway if it has to)
+     * @param dropPiece the engine type of the piece dropped, or 0 for a board move
+     * @return the move, or Move.NONE if the player to move can't make it
+     */
+    public int findLegalMove(MoveGenerator gen, int from, int to, boolean promote, int dropPiece) {
+        int side = position.getSideToMove();
+        if (to < 0 || to >= Bitboards.SQUARES) {
+            return Move.NONE;
+        }
+        int move;
+        if (dropPiece != 0) {
+            move = Move.makeDrop(to, dropPiece);
+        } else {
+            if (from < 0 || from >= Bitboards.SQUARES || !position.isOccupiedBy(side, from)) {
+                return Move.NONE;
+            }
+            promote |= position.mustPromote(from, to);
+            move = Move.make(from, to, Pieces.type(position.pieceAt(from)), promote);
+        }
+        if (!gen.isPseudoLegal(position, move) || !gen.isLegal(position, move, side)) {
+            return Move.NONE;
+        }
+        return move;
+    }
+
+    /**
+     * Plays a move on the engine position only, for looking ahead; the tiles
+     * and pieces aren't touched, so every makeMove has to be undone with
+     * unmakeMove before the board is drawn or moved on again
+     *
+     * @param move a legal move for the side to move (see {@link Move})
+     */
+    public void makeMove(int move) {
+        position.makeMove(move);
+    }
+
+    /**
+     * Takes back the last move played with makeMove
+     */
+    public void unmakeMove() {
+        position.unmakeMove();
+    }
+
+    /**
+     * Checks whether a player's king is under attack
+     *
+     * @param gen the calling thread's move generator
+     * @param side the player whose king is checked
+     * @return true if that player is in check
+     */
+    public boolean isInCheck(MoveGenerator gen, int side) {
+        return gen.inCheck(position, side);
+    }
+
+    /**
+     * Checks whether the player to move has been checkmated
+     *
+     * @param gen the calling thread's move generator
+     * @return true if the player to move is in check and has no legal moves
+     */
+    public boolean isCheckmate(MoveGenerator gen) {
+        return gen.isCheckmate(position);
+    }
+
+    /**
+     * Finds the engine piece code (owner and type) of a piece on the board
+     *
+     * @param p the piece
+     * @return the piece code used by the Position
+     */
+    public static int codeOf(Piece p) {
+        return Pieces.code(p.getThePlayer(), p.pieceType.getEngineType());
+    }
+
+    /**
+     * Moves the piece on one tile to another, capturing whatever enemy piece
+     * is on the destination and dropping the piece if it came from a grave
+     *
+     * @param from the tile holding the piece being moved (board or grave)
+     * @param to the board tile the piece is moving to
+     * @param turn the player making the move
+     * @return the captured piece, or null if nothing was captured
+     */
+    public Piece movePiece(Tile from, Tile to, int turn) {
+        Piece mover = from.getPiece();
+        Piece captured = null;
+        int toSq = to.getTileIndex();
+
+        if (position.isOccupiedBy(1 - mover.getThePlayer(), toSq)) {
+            captured = to.getPiece();
+            position.remove(toSq);
+            captured.demote(); //Captured pieces lose their promotion
+            captured.setAlive(false);
+            captured.setOnBoard(false);
+            captured.changeTeams();
+            addToGrave(captured, turn);
+        }
+
+        if (!mover.isAlive()) { //Dropping from the grave
+            position.removeFromHand(mover.getThePlayer(),
+                    Pieces.unpromote(mover.pieceType.getEngineType()));
+            mover.setAlive(true);
+            // change moveset since changed team
+            mover.setMoveNumAfterDrop();
+            mover.changeDirection();
+            position.put(toSq, Pieces.code(mover.getThePlayer(),
+                    Pieces.unpromote(mover.pieceType.getEngineType())));
+            releaseGraveTile(from);
+        } else {
+            position.put(toSq, position.remove(from.getTileIndex()));
+        }
+        if (!mover.isOnBoard()) {
+            mover.setOnBoard(true);
+        }
+        to.setPiece(mover);
+        if (from.getTileIndex() < mailbox.length) {
+            from.setPiece(null);
+        }
+        return captured;
+    }
+
+    /**
+     * Puts a captured piece in a player's hand: it goes on top of the grave
+     * tile for its kind, and the position's hand count goes up to match
+     *
+     * @param p the captured piece, already demoted and on its new team
+     * @param turn the player who captured it
+     */
     public void addToGrave(Piece p, int turn) {
-        if (turn == 0) {
-            for (Tile t : g0Array) {
-                if (!t.isOccupied()) {
-                    t.setPiece(p);
-                    return;
-                }
-            } // for t
-        } // if turn == 0
-        else {
-            for (Tile t : g1Array) {
-                if (!t.isOccupied()) {
-                    t.setPiece(p);
-                    return;
-                }
-            } // for t
-        } // else
-}
+        int type = Pieces.unpromote(p.pieceType.getEngineType());
+        held[turn][type][position.handCount(turn, type)] = p;
+        position.addToHand(turn, type);
+        graves[turn][type - 1].setPiece(p);
+    }
+
+    /**
+     * Takes the piece just dropped off its grave tile, showing the next one of
+     * the same kind underneath (or nothing if that was the last)
+     *
+     * @param t the grave tile being dropped from
+     */
+    private void releaseGraveTile(Tile t) {
+        int side = t.getTileIndex() >= GRAVE0_START ? 0 : 1;
+        int type = t.getTileIndex() - (side == 0 ? GRAVE0_START : GRAVE1_START) + 1;
+        int count = position.handCount(side, type);
+        held[side][type][count] = null;
+        t.setPiece(count > 0 ? held[side][type][count - 1] : null);
+    }
 
     /**
      * Resets which tiles are able to be moved to
@@ -349,148 +593,32 @@ public class Board implements Serializable {
      * @return an arraylist of all possible tiles
      */
     public ArrayList<Tile> checkMoves(Tile tile) {
-        Piece.DIRECTION dir;
-        int[] nums;
-        Tile tempy;
-        int rowMod = -2;
-        nums = tile.getPiece().getMoveNum();
-        dir = tile.getPiece().directionMovement;
-        possibleTiles.clear();
-
-        //For dropping from grave
-        if (!tile.getPiece().isAlive()) {
-            // if pawn, check all tiles, if tile has pawn alr, notPossible is col
-            ArrayList<Integer> holdPawnCols = new ArrayList<>();
-            if (tile.getPiece().pieceType.getID() == R.drawable.pawn) {
-                for (Tile t : tiles) {
-                    if (t.isOccupied()) {
-                        // if pawn and  same team.
-                        if (t.getPiece().pieceType.getID() == R.drawable.pawn &&
-                                t.getPiece().getThePlayer() == tile.getPiece().getThePlayer()) {
-                            holdPawnCols.add(t.getCol());
-                        }
-                    } // if occupied
-                } // for t
-            }
-            // [End] if pawn, check all tiles, if tile has pawn alr, notPossible is col
-            // find empty spaces
-            for (Tile t: tiles) {
-                if (!t.isOccupied()) {
-                    if (!holdPawnCols.contains(t.getCol())) {
-                        t.setPossible(true);
-                    }
-                } // if not occupied
-            } // for t
-            // [End] find empty spaces
-            return getPossibleTiles();
-        }
-        /**END For dropping from grave*/
-
-        // if it's a knight,
-        if (tile.getPiece().pieceType == Piece.GAME_PIECES.KNIGHT ||
-                tile.getPiece().pieceType == Piece.GAME_PIECES.OPP_KNIGHT) { //Knights have different moves
-            // if it's the "computer"
-            if (dir == Piece.DIRECTION.BACKWARD) {
-                // reverse location for flipped board of "computer"
-                rowMod = -rowMod;
-            }
-            for (int j = -1; j < 2; j = j + 2) {
-                //Log.i("knightMoveHere", "Tempy: " + (tile.getCol() + j) + " and " + (tile.getRow() + rowMod));
-                tempy = getTile(tile.getCol() + j, tile.getRow() + rowMod);
-                if (tempy == null || (tempy.isOccupied() && tempy.getPiece().directionMovement == dir)) {
-                    if (tempy != null) {
-                        tempy.setPossible(false);
-                    }
-                    //Out of bounds or an ally is on that tile
-                    continue;
-                }
-
-                if ((tile.getCol() + j) > 8 || (tile.getRow() + rowMod) > 8
-                        || (tile.getCol() + j) < 0 || (tile.getRow() + rowMod) < 0) {
-                    tempy.setPossible(false);
-                } else {
-                    tempy.setPossible(true);
-                }
-
-            }
-            return getPossibleTiles();
-        }
+        return checkMoves(tile, new MoveGenerator(), new int[MoveGenerator.MAX_MOVES]);
+    }
 
-        for (int j = -1; j < 2; j++) { //0, 1, 2
-            if (nums[j + 1] == 0) {
-                continue;
-            }
-            for (int i = 1; i < nums[j + 1] + 1; i++) {//Check Top Directions
-                tempy = getTile(tile.getCol() + (i * j), tile.getRow() - i);
-                if (tempy == null) {
-                    //Can't go any further in this direction, so move on
-                    break;
-                } else if (tempy.isOccupied()) {
-                    if (tempy.getPiece().directionMovement == dir) {//Same team
-                        tempy.setPossible(false);
-                        // Move onto the next possible direction
-                        break;
-                    } else { //Opposite team
-                        tempy.setPossible(true); //You can jump your enemy
-                        //Move onto the next possible direction
-                        break;
-                    }
-                }
-                tempy.setPossible(true);
-                possibleTiles.add(tempy);
-            }
-        }
+    /**
+     * Checks to see which tiles the selected piece can move to, with a
+     *      generator and move buffer that belong to the calling thread
+     *
+     * @param tile the tile that is currently selected
+     * @param gen the calling thread's move generator
+     * @param moveBuffer room for the piece's moves
+     *
+     * @return an arraylist of all possible tiles
+     */
+    public ArrayList<Tile> checkMoves(Tile tile, MoveGenerator gen, int[] moveBuffer) {
+        Piece piece = tile.getPiece();
+        int n;
 
-        for (int j = 0; j < 2; j++) { //3, 4
-            int colMod = j;
-            if (j == 0) {
-               colMod = -1;
-            }
-            if (nums[j + 3] == 0) {
-                continue;
-            }
-            for (int i = 1; i < nums[j + 3] + 1; i++) {//Check Middle Row
-                tempy = getTile(tile.getCol() + (i * colMod), tile.getRow());
-                if (tempy == null) {
-                    //Can't go any further in this direction, so move on
-                    break;
-                } else if (tempy.isOccupied()) {
-                    if (tempy.getPiece().directionMovement == dir) {//Same team
-                        tempy.setPossible(false);
-                        //Move onto the next possible direction
-                        break;
-                    } else { //Opposite team
-                        tempy.setPossible(true); //You can jump your enemy
-                        //Move onto the next possible direction
-                        break;
-                    }
-                }
-                tempy.setPossible(true);
-            }
+        if (!piece.isAlive()) { //For dropping from grave
+            n = gen.generateLegalDrops(position, piece.getThePlayer(),
+                    Pieces.unpromote(piece.pieceType.getEngineType()), moveBuffer, 0);
+        } else {
+            n = gen.generateLegalFrom(position, tile.getTileIndex(), moveBuffer, 0);
         }
 
-        for (int j = -1; j < 2; j++) { //5, 6, 7
-            if (nums[j + 6] == 0) {
-                continue;
-            }
-            for (int i = 1; i < nums[j + 6] + 1; i++) {//Check Bottom Row
-                tempy = getTile(tile.getCol() + (i * j), tile.getRow() + i);
-                if (tempy == null) {
-                    //Can't go any further in this direction, so move on
-                    break;
-                } else if (tempy.isOccupied()) {
-                    if (tempy.getPiece().directionMovement == dir) {//Same team
-                        tempy.setPossible(false);
-                        //Move onto the next possible direction
-                        break;
-                    } else { //Opposite team
-                        tempy.setPossible(true); //You can jump your enemy
-                        //Move onto the next possible direction
-                        break;
-                    }
-                }
-                tempy.setPossible(true);
-            }
+        for (int i = 0; i < n; i++) {
+            mailbox[Move.to(moveBuffer[i])].setPossible(true);
         }
         return getPossibleTiles();
     }//End checkMoves
@@ -523,178 +651,58 @@ public class Board implements Serializable {
      *         false otherwise
      * */
     public boolean canPromote(Tile t) {
-        switch (t.getPiece().pieceType) {
-            case KING: case OPP_KING: case GOLD_GENERAL: case OPP_GOLD_GEN:
-            return false;
-        }
-        if (t.getPiece().directionMovement == Piece.DIRECTION.FORWARD) {
-            return t.getRow() < 3 && !t.getPiece().getPromoted();
+        if (t.getTileIndex() >= Bitboards.SQUARES || t.getPiece() == null) {
+            return false; //Pieces in the graves can't promote
         }
-        else if (t.getPiece().directionMovement == Piece.DIRECTION.BACKWARD) {
-            return t.getRow() > 5 && !t.getPiece().getPromoted();
-        }
-        return false;
+        return position.canPromote(t.getTileIndex());
     } //canPromote
 
 
     /**
-     * Promotes the given piece
+     * Checks whether a piece may promote while moving between two tiles:
+     * either the start or the end has to be in the owner's promotion zone
      *
-     * @param t the tile holding the piece that's being promoted
-     * @param state current gamestate
-     * @param turn the player's turn
-     * */
-    public void promote(Tile t, ShogiGameState state, int turn) {
-       Piece p = t.getPiece();
-       if (turn == 0) {
-        switch (p.pieceType.getID()) {
-            // Pawn promotion
-            case (R.drawable.pawn):
-                for (Piece p1 : state.pieces1) {
-                    if (p1.pieceType.getID() == R.drawable.promoted_pawn && p1.getRow() == -1 &&
-                            p1.getCol() == -1) {
-                        // set replacement
-                        promoteHelper(p,p1,t);
-                        break;
-                    }
-                }
-                break;
-                // Lance promotion
-            case (R.drawable.lance):
-                for (Piece p1 : state.pieces1) {
-                    if (p1.pieceType.getID() == R.drawable.promoted_lance && p1.getRow() == -1 &&
-                            p1.getCol() == -1) {
-                        promoteHelper(p,p1,t);
-                        break;
-                    }
-                }
-                break;
-                // Rook promotion
-            case (R.drawable.rook):
-                for (Piece p1 : state.pieces1) {
-                    if (p1.pieceType.getID() == R.drawable.promoted_rook && p1.getRow() == -1 &&
-                            p1.getCol() == -1) {
-                        promoteHelper(p,p1,t);
-                        break;
-                    }
-                }
-                break;
-                // Bishop promotion
-            case (R.drawable.bishop):
-                for (Piece p1 : state.pieces1) {
-                    if (p1.pieceType.getID() == R.drawable.promoted_bishop && p1.getRow() == -1 &&
-                            p1.getCol() == -1) {
-                        promoteHelper(p,p1,t);
-                        break;
-                    }
-                }
-                break;
-                // Knight promotion
-            case (R.drawable.knight):
-                for (Piece p1 : state.pieces1) {
-                    if (p1.pieceType.getID() == R.drawable.promoted_knight && p1.getRow() == -1 && p1.getCol() == -1) {
-                        promoteHelper(p,p1,t);
-                        break;
-                    }
-                }
-                break;
-                // Silver General promotion
-            case (R.drawable.silv_gen):
-                for (Piece p1 : state.pieces1) {
-                    if (p1.pieceType.getID() == R.drawable.promoted_silv_gen && p1.getRow() == -1 && p1.getCol() == -1) {
-                        promoteHelper(p,p1,t);
-                        break;
-                    }
-                }
-                break;
-        }
-    } // if Turn == 0
-        else if (turn == 1) {
-            switch (p.pieceType.getID()) {
-                // Pawn promotion
-                case (R.drawable.pawn):
-                    for (Piece p1 : state.pieces2) {
-                        if (p1.pieceType.getID() == R.drawable.promoted_pawn && p1.getRow() == -1 && p1.getCol() == -1) {
-                            // set replacement
-                            promoteHelper(p,p1,t);
-                            break;
-                        }
-                    }
-                    break;
-                    // Lance promotion
-                case (R.drawable.lance):
-                    for (Piece p1 : state.pieces2) {
-                        if (p1.pieceType.getID() == R.drawable.promoted_lance && p1.getRow() == -1 && p1.getCol() == -1) {
-                            promoteHelper(p,p1,t);
-                            break;
-                        }
-                    }
-                    break;
-                    // Rook promotion
-                case (R.drawable.rook):
-                    for (Piece p1 : state.pieces2) {
-                        if (p1.pieceType.getID() == R.drawable.promoted_rook && p1.getRow() == -1 && p1.getCol() == -1) {
-                            promoteHelper(p,p1,t);
-                            break;
-                        }
-                    }
-                    break;
-                    // Bishop promotion
-                case (R.drawable.bishop):
-                    for (Piece p1 : state.pieces2) {
-                        if (p1.pieceType.getID() == R.drawable.promoted_bishop && p1.getRow() == -1 && p1.getCol() == -1) {
-                            promoteHelper(p,p1,t);
-                            break;
-                        }
-                    }
-                    break;
-                    // Knight promotion
-                case (R.drawable.knight):
-                    for (Piece p1 : state.pieces2) {
-                        if (p1.pieceType.getID() == R.drawable.promoted_knight && p1.getRow() == -1 && p1.getCol() == -1) {
-                            promoteHelper(p,p1,t);
-                            break;
-                        }
-                    }
-                    break;
-                    // Silver promotion
-                case (R.drawable.silv_gen):
-                    for (Piece p1 : state.pieces2) {
-                        if (p1.pieceType.getID() == R.drawable.promoted_silv_gen && p1.getRow() == -1 && p1.getCol() == -1) {
-                            promoteHelper(p,p1,t);
-                            break;
-                        }
-                    }
-                    break;
-            }
-        } // if Turn == 1
-    } // promote
+     * @param from the tile holding the piece (before the move)
+     * @param to the tile the piece is moving to
+     * @return true if promoting on this move is allowed
+     */
+    public boolean canPromote(Tile from, Tile to) {
+        if (from.getTileIndex() >= Bitboards.SQUARES || from.getPiece() == null) {
+            return false; //Drops never promote
+        }
+        return position.canPromote(from.getTileIndex(), to.getTileIndex());
+    }
 
     /**
-     * Check the opposite team's pieces
+     * Checks whether a piece has to promote on a move because it could
+     * never move again otherwise (pawns and lances on the last row,
+     * knights on the last two rows)
      *
-     * @param orig the piece prior to promotion (i.e. KNIGHT)
-     * @param promo the piece post promotion (i.e. PROMO_KNIGHT)
-     * @param t the tile holding the piece being checked
-     * */
-    private void promoteHelper(Piece orig, Piece promo, Tile t) {
-
-        if ((orig.getPromoted())) {
-            Log.i("promotionCheck", "This is already promoted.");
+     * @param from the tile holding the piece (before the move)
+     * @param to the tile the piece is moving to
+     * @return true if the move is only legal as a promotion
+     */
+    public boolean mustPromote(Tile from, Tile to) {
+        if (from.getTileIndex() >= Bitboards.SQUARES || from.getPiece() == null) {
+            return false;
+        }
+        return position.mustPromote(from.getTileIndex(), to.getTileIndex());
+    }
 
-        } else {
-            Log.i("promotionCheck", "This is not yet promoted.");
-            orig.setOnBoard(false);
-            promo.setCol(orig.getCol());
-            promo.setRow(orig.getRow());
-            promo.setPromoted(true);
-            orig.setPromoted(false);
-            orig.setRow(-1);
-            orig.setCol(-1);
-            promo.setOnBoard(true);
-            t.setPiece(promo);
-        }
-
-    }// promote helper
+    /**
+     * Promotes the given piece in place (nothing happens to pieces that can't
+     * promote or already have)
+     *
+     * @param t the tile holding the piece that's being promoted
+     * */
+    public void promote(Tile t) {
+        Piece p = t.getPiece();
+        if (p == null || !p.promote()) {
+            Logger.log("promotionCheck", "This can't be promoted.");
+            return;
+        }
+        position.remove(t.getTileIndex());
+        position.put(t.getTileIndex(), codeOf(p));
+    } // promote
 
 }
@@ -0,0 +1,88 @@
+package com.example.alpharelease.Shogi.Engine;
+
+/**
+ * The first layer of an {@link NnueEvaluator} for one Position: for each
+ * side's point of view, the network's feature biases plus the weights of
+ * every feature that is on in the position.
+ *
+ * Position calls in here every time a piece is placed, lifted or moved
+ * between board and hand, so making or unmaking a move only adds or takes
+ * away the two or three weight rows that changed. The features are counted
+ * from the king's square, so when a king moves its side's half is marked
+ * dirty instead and rebuilt from scratch the next time it is needed.
+ */
+
+final class Accumulator {
+
+    final NnueEvaluator net;
+    final short[][] values = new short[2][];
+    final boolean[] dirty = {true, true};
+    final int[] sums = new int[NnueEvaluator.L1_SIZE]; // evaluator scratch, one per position and so per thread
+
+    /**
+     * Constructor for an Accumulator that still has to be filled in
+     *
+     * @param net the network whose weights are added up
+     */
+    Accumulator(NnueEvaluator net) {
+        this.net = net;
+        values[0] = new short[net.getHidden()];
+        values[1] = new short[net.getHidden()];
+    }
+
+    /**
+     * Follows a piece being placed on or lifted off the board
+     *
+     * @param pos the position, with the change already made
+     * @param code the piece code
+     * @param sq the square
+     * @param sign 1 when the piece was placed, -1 when it was lifted
+     */
+    void board(Position pos, int code, int sq, int sign) {
+        if (Pieces.type(code) == Pieces.KING) {
+            dirty[Pieces.side(code)] = true; //Every feature of that side moved
+            return;
+        }
+        for (int perspective = 0; perspective < 2; perspective++) {
+            if (!dirty[perspective]) {
+                net.add(values[perspective], NnueEvaluator.boardFeature(perspective,
+                        pos.kingSquare[perspective], code, sq), sign);
+            }
+        }
+    }
+
+    /**
+     * Follows a piece being added to or taken from a hand
+     *
+     * @param pos the position
+     * @param side whose hand changed
+     * @param type the piece type
+     * @param count which of the pieces of that type changed (0 for the first)
+     * @param sign 1 when it was added, -1 when it was taken
+     */
+    void hand(Position pos, int side, int type, int count, int sign) {
+        for (int perspective = 0; perspective < 2; perspective++) {
+            if (!dirty[perspective]) {
+                int feature = NnueEvaluator.handFeature(perspective, pos.kingSquare[perspective],
+                        side, type, count);
+                if (feature >= 0) {
+                    net.add(values[perspective], feature, sign);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the halves that are dirty, as long as their king is on the board
+     *
+     * @param pos the position
+     */
+    void refresh(Position pos) {
+        for (int perspective = 0; perspective < 2; perspective++) {
+            if (dirty[perspective] && pos.kingSquare[perspective] >= 0) {
+                net.refresh(pos, perspective, values[perspective]);
+                dirty[perspective] = false;
+            }
+        }
+    }
+}
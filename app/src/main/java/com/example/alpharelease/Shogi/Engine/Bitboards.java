@@ -0,0 +1,223 @@
+package com.example.alpharelease.Shogi.Engine;
+
+/**
+ * Static masks and attack tables for the 81 square bitboards.
+ *
+ * Square indexes match the board tile indexes (row * 9 + col, row 0 at the top).
+ * A bitboard is held as a pair of longs: squares 0 - 62 (rows 0 - 6) live in the
+ * "lo" word and squares 63 - 80 (rows 7 and 8) live in the "hi" word.
+ */
+
+public final class Bitboards {
+
+    public static final int SIZE = 9;
+    public static final int SQUARES = 81;
+    public static final int SPLIT = 63;
+    public static final long LO_MASK = Long.MAX_VALUE; // 63 bits
+    public static final long HI_MASK = (1L << (SQUARES - SPLIT)) - 1; // 18 bits
+
+    // One mask per column
+    public static final long[] FILE_LO = new long[SIZE];
+    public static final long[] FILE_HI = new long[SIZE];
+
+    // Union of the columns in a 9 bit column set, indexed by the set
+    public static final long[] FILES_LO = new long[1 << SIZE];
+    public static final long[] FILES_HI = new long[1 << SIZE];
+
+    // Promotion zone (the three furthest rows) for each side
+    public static final long[] ZONE_LO = new long[2];
+    public static final long[] ZONE_HI = new long[2];
+
+    // Squares an unpromoted piece may stand on (pawns, lances and knights can't
+    // be left where they would never move again), indexed by piece code
+    public static final long[] ALIVE_LO = new long[Pieces.CODES];
+    public static final long[] ALIVE_HI = new long[Pieces.CODES];
+
+    // Direction (0 - 7) of the line from one square to another, or -1 if the
+    // two squares don't share a row, column or diagonal
+    static final byte[][] DIRECTION = new byte[SQUARES][SQUARES];
+    static final int[] DIR_COL = {-1, 0, 1, -1, 1, -1, 0, 1};
+    static final int[] DIR_ROW = {-1, -1, -1, 0, 0, 1, 1, 1};
+
+    // Single step attacks, indexed by piece code and square
+    static final long[][] STEP_LO = new long[Pieces.CODES][SQUARES];
+    static final long[][] STEP_HI = new long[Pieces.CODES][SQUARES];
+
+    // {col offset, forward offset} pairs; forward is toward row 0 for side 0
+    private static final int[][] ORTHOGONAL = {{0, 1}, {0, -1}, {-1, 0}, {1, 0}};
+    private static final int[][] DIAGONAL = {{-1, 1}, {1, 1}, {-1, -1}, {1, -1}};
+    private static final int[][] GOLD_STEPS = {{-1, 1}, {0, 1}, {1, 1}, {-1, 0}, {1, 0}, {0, -1}};
+    private static final int[][] SILVER_STEPS = {{-1, 1}, {0, 1}, {1, 1}, {-1, -1}, {1, -1}};
+    private static final int[][] KING_STEPS = {{-1, 1}, {0, 1}, {1, 1}, {-1, 0}, {1, 0},
+            {-1, -1}, {0, -1}, {1, -1}};
+    private static final int[][] NONE = {};
+
+    static {
+        for (int sq = 0; sq < SQUARES; sq++) {
+            FILE_LO[colOf(sq)] |= lo(sq);
+            FILE_HI[colOf(sq)] |= hi(sq);
+            if (rowOf(sq) < 3) {
+                ZONE_LO[0] |= lo(sq);
+                ZONE_HI[0] |= hi(sq);
+            } else if (rowOf(sq) > 5) {
+                ZONE_LO[1] |= lo(sq);
+                ZONE_HI[1] |= hi(sq);
+            }
+        }
+
+        for (int files = 1; files < 1 << SIZE; files++) {
+            int col = Integer.numberOfTrailingZeros(files);
+            FILES_LO[files] = FILES_LO[files & (files - 1)] | FILE_LO[col];
+            FILES_HI[files] = FILES_HI[files & (files - 1)] | FILE_HI[col];
+        }
+
+        for (int from = 0; from < SQUARES; from++) {
+            for (int to = 0; to < SQUARES; to++) {
+                DIRECTION[from][to] = -1;
+            }
+            for (int dir = 0; dir < 8; dir++) {
+                int to = offset(from, DIR_COL[dir], DIR_ROW[dir]);
+                while (to >= 0) {
+                    DIRECTION[from][to] = (byte) dir;
+                    to = offset(to, DIR_COL[dir], DIR_ROW[dir]);
+                }
+            }
+        }
+
+        for (int side = 0; side < 2; side++) {
+            for (int type = Pieces.PAWN; type < Pieces.TYPES; type++) {
+                int[][] steps;
+                switch (type) {
+                    case Pieces.PAWN:
+                        steps = new int[][]{{0, 1}};
+                        break;
+                    case Pieces.KNIGHT:
+                        steps = new int[][]{{-1, 2}, {1, 2}};
+                        break;
+                    case Pieces.SILVER:
+                        steps = SILVER_STEPS;
+                        break;
+                    case Pieces.GOLD: case Pieces.PRO_PAWN: case Pieces.PRO_LANCE:
+                    case Pieces.PRO_KNIGHT: case Pieces.PRO_SILVER:
+                        steps = GOLD_STEPS;
+                        break;
+                    case Pieces.KING:
+                        steps = KING_STEPS;
+                        break;
+                    case Pieces.HORSE:
+                        steps = ORTHOGONAL;
+                        break;
+                    case Pieces.DRAGON:
+                        steps = DIAGONAL;
+                        break;
+                    default: // lance, bishop and rook only slide (see Sliders)
+                        steps = NONE;
+                        break;
+                }
+                int code = Pieces.code(side, type);
+                for (int sq = 0; sq < SQUARES; sq++) {
+                    int rowsLeft = side == 0 ? rowOf(sq) : SIZE - 1 - rowOf(sq);
+                    if (!((type == Pieces.PAWN || type == Pieces.LANCE) && rowsLeft < 1)
+                            && !(type == Pieces.KNIGHT && rowsLeft < 2)) {
+                        ALIVE_LO[code] |= lo(sq);
+                        ALIVE_HI[code] |= hi(sq);
+                    }
+                    for (int[] step : steps) {
+                        int to = offset(sq, step[0], forward(side) * step[1]);
+                        if (to >= 0) {
+                            STEP_LO[code][sq] |= lo(to);
+                            STEP_HI[code][sq] |= hi(to);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    public static int rowOf(int sq) {
+        return sq / SIZE;
+    }
+
+    public static int colOf(int sq) {
+        return sq % SIZE;
+    }
+
+    /**
+     * Row delta of one step forward for the given side
+     *
+     * @param side the player (0 moves up the board, 1 moves down)
+     * @return -1 for side 0, 1 for side 1
+     */
+    public static int forward(int side) {
+        return side == 0 ? -1 : 1;
+    }
+
+    /**
+     * Finds the direction of the line running from one square to another
+     *
+     * @param from the square the line starts at
+     * @param to the square the line runs to
+     * @return the direction index (0 - 7) or -1 if the squares aren't on a line
+     */
+    public static int direction(int from, int to) {
+        return DIRECTION[from][to];
+    }
+
+    /**
+     * Counts the king steps between two squares
+     *
+     * @param a the first square
+     * @param b the second square
+     * @return the larger of the row and column differences
+     */
+    public static int distance(int a, int b) {
+        return Math.max(Math.abs(colOf(a) - colOf(b)), Math.abs(rowOf(a) - rowOf(b)));
+    }
+
+    /**
+     * Finds the square reached by moving from a square by the given offsets
+     *
+     * @param sq the starting square
+     * @param dCol the column offset
+     * @param dRow the row offset
+     * @return the resulting square, or -1 if it falls off the board
+     */
+    public static int offset(int sq, int dCol, int dRow) {
+        int col = colOf(sq) + dCol;
+        int row = rowOf(sq) + dRow;
+        if (col < 0 || col >= SIZE || row < 0 || row >= SIZE) {
+            return -1;
+        }
+        return row * SIZE + col;
+    }
+
+    public static long lo(int sq) {
+        return sq < SPLIT ? 1L << sq : 0L;
+    }
+
+    public static long hi(int sq) {
+        return sq < SPLIT ? 0L : 1L << (sq - SPLIT);
+    }
+
+    public static boolean test(long lo, long hi, int sq) {
+        return sq < SPLIT ? (lo & (1L << sq)) != 0 : (hi & (1L << (sq - SPLIT))) != 0;
+    }
+
+    /**
+     * Returns the lowest square in a bitboard; callers must check it isn't empty
+     *
+     * @param lo the lo word
+     * @param hi the hi word
+     * @return the lowest set square
+     */
+    public static int first(long lo, long hi) {
+        return lo != 0 ? Long.numberOfTrailingZeros(lo) : SPLIT + Long.numberOfTrailingZeros(hi);
+    }
+
+    public static int count(long lo, long hi) {
+        return Long.bitCount(lo) + Long.bitCount(hi);
+    }
+}
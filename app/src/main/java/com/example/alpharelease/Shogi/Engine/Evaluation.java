@@ -0,0 +1,165 @@
+package com.example.alpharelease.Shogi.Engine;
+
+/**
+ * Static evaluation of a Position, in centipawn-like units from the point of
+ * view of the side to move (positive means the side to move is better).
+ *
+ * The score has three parts:
+ *  - material on the board and in hand. Pieces in hand are worth a little
+ *    more than the same piece on the board since they can be dropped anywhere.
+ *  - piece-square tables: a bonus or penalty for each piece type on each
+ *    square (pawns and promoted pieces like to advance, golds and the king
+ *    like to stay home, knights dislike the edge, ...).
+ *  - king safety: friendly pieces next to a king help, enemy pieces next to
+ *    it hurt, and so does every empty square around it the opponent could
+ *    drop a piece on.
+ *
+ * Material and piece-square values are folded into one table per piece code
+ * and square (side 1's values mirrored and negated), and Position adds or
+ * takes away an entry every time a piece is placed, lifted or moved between
+ * board and hand, the same way it keeps its Zobrist key. Evaluating a leaf
+ * therefore reads that running sum and adds the king safety term, which only
+ * looks at the squares around the two kings.
+ */
+
+public final class Evaluation {
+
+    // Piece values indexed by type (EMPTY and KING count for nothing)
+    public static final int[] VALUE = {0, 90, 315, 405, 495, 855, 990, 540, 0,
+            540, 540, 540, 540, 945, 1395};
+
+    // Values of pieces held in hand, indexed by unpromoted type
+    public static final int[] HAND_VALUE = {0, 100, 350, 450, 550, 950, 1100, 600};
+
+    // King safety weights
+    public static final int KING_DEFENDER = 12; // per friendly piece next to the king
+    public static final int KING_INTRUDER = 25; // per enemy piece next to the king
+    public static final int KING_DROP_SQUARE = 8; // per empty square next to the king
+
+    // Piece-square bonus for side 0, indexed by type and square
+    static final int[][] PST = new int[Pieces.TYPES][Bitboards.SQUARES];
+
+    // Value plus piece-square bonus from side 0's view, indexed by piece code and square
+    static final int[][] PIECE_SCORE = new int[Pieces.CODES][Bitboards.SQUARES];
+
+    // Hand value from side 0's view, indexed by side and type
+    static final int[][] HAND_SCORE = new int[2][Pieces.HAND_TYPES];
+
+    static {
+        for (int type = Pieces.PAWN; type < Pieces.TYPES; type++) {
+            for (int sq = 0; sq < Bitboards.SQUARES; sq++) {
+                PST[type][sq] = bonus(type, Bitboards.rowOf(sq), Bitboards.colOf(sq));
+            }
+        }
+        for (int type = Pieces.PAWN; type < Pieces.TYPES; type++) {
+            for (int sq = 0; sq < Bitboards.SQUARES; sq++) {
+                // Side 1 sits on the other end, so its squares are turned around
+                PIECE_SCORE[Pieces.code(0, type)][sq] = VALUE[type] + PST[type][sq];
+                PIECE_SCORE[Pieces.code(1, type)][sq] =
+                        -(VALUE[type] + PST[type][Bitboards.SQUARES - 1 - sq]);
+            }
+        }
+        for (int type = Pieces.PAWN; type < Pieces.HAND_TYPES; type++) {
+            HAND_SCORE[0][type] = HAND_VALUE[type];
+            HAND_SCORE[1][type] = -HAND_VALUE[type];
+        }
+    }
+
+    private Evaluation() {
+    }
+
+    /**
+     * Works out the piece-square bonus of a side 0 piece
+     *
+     * @param type the piece type
+     * @param row the row (side 0 starts on row 8 and moves toward row 0)
+     * @param col the column
+     * @return the bonus
+     */
+    private static int bonus(int type, int row, int col) {
+        int advance = Bitboards.SIZE - 1 - row;
+        int center = 4 - Math.abs(col - 4);
+        switch (type) {
+            case Pieces.PAWN:
+                return 4 * advance;
+            case Pieces.LANCE:
+                return -2 * advance;
+            case Pieces.KNIGHT:
+                return 3 * advance + (center == 0 ? -15 : 0);
+            case Pieces.SILVER:
+                return 4 * Math.min(advance, 4) + 2 * center;
+            case Pieces.GOLD:
+                return -5 * Math.max(advance - 2, 0) + 2 * center;
+            case Pieces.KING:
+                return -15 * advance - 6 * center;
+            case Pieces.PRO_PAWN: case Pieces.PRO_LANCE:
+            case Pieces.PRO_KNIGHT: case Pieces.PRO_SILVER:
+                return 5 * advance + 2 * center;
+            case Pieces.HORSE:
+                return 3 * center;
+            case Pieces.DRAGON:
+                return 2 * advance;
+            default: // bishop and rook earn their keep through mobility, not squares
+                return 0;
+        }
+    }
+
+    /**
+     * Scores a position for the side to move
+     *
+     * @param pos the position
+     * @return the score, positive when the side to move is ahead
+     */
+    public static int evaluate(Position pos) {
+        int score = pos.material + kingSafety(pos, 0) - kingSafety(pos, 1);
+        return pos.sideToMove == 0 ? score : -score;
+    }
+
+    /**
+     * Scores the shelter around one side's king
+     *
+     * @param pos the position
+     * @param side the king's side
+     * @return the king safety score, from that side's point of view
+     */
+    static int kingSafety(Position pos, int side) {
+        int king = pos.kingSquare[side];
+        if (king < 0) {
+            return 0;
+        }
+        int code = Pieces.code(side, Pieces.KING);
+        long zoneLo = Bitboards.STEP_LO[code][king];
+        long zoneHi = Bitboards.STEP_HI[code][king];
+        int enemy = 1 - side;
+        int score = KING_DEFENDER * Bitboards.count(zoneLo & pos.occLo[side], zoneHi & pos.occHi[side])
+                - KING_INTRUDER * Bitboards.count(zoneLo & pos.occLo[enemy], zoneHi & pos.occHi[enemy]);
+        if (pos.handTotal[enemy] > 0) {
+            score -= KING_DROP_SQUARE * Bitboards.count(zoneLo & ~pos.occupiedLo(),
+                    zoneHi & ~pos.occupiedHi());
+        }
+        return score;
+    }
+
+    /**
+     * Adds up material and piece-square bonuses from scratch, for checking
+     * the running sum Position keeps (they should always match)
+     *
+     * @param pos the position
+     * @return the material and piece-square score from side 0's view
+     */
+    public static int computeMaterial(Position pos) {
+        int score = 0;
+        for (int sq = 0; sq < Bitboards.SQUARES; sq++) {
+            int code = pos.board[sq];
+            if (code != Pieces.EMPTY) {
+                score += PIECE_SCORE[code][sq];
+            }
+        }
+        for (int side = 0; side < 2; side++) {
+            for (int type = Pieces.PAWN; type < Pieces.HAND_TYPES; type++) {
+                score += pos.hand[side][type] * HAND_SCORE[side][type];
+            }
+        }
+        return score;
+    }
+}
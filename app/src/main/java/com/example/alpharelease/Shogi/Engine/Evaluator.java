@@ -0,0 +1,37 @@
+package com.example.alpharelease.Shogi.Engine;
+
+/**
+ * Something that can score a position for the search. The search only ever
+ * asks through this interface, so the hand-written {@link Evaluation} and the
+ * neural {@link NnueEvaluator} can be swapped without touching it.
+ */
+
+public interface Evaluator {
+
+    // The hand-written evaluation, which needs no preparing
+    Evaluator CLASSICAL = new Evaluator() {
+        @Override
+        public int evaluate(Position pos) {
+            return Evaluation.evaluate(pos);
+        }
+    };
+
+    /**
+     * Gets ready to score positions reached from this one by makeMove and
+     * unmakeMove, for evaluators that keep state in step with the position
+     *
+     * @param pos the root of a search
+     */
+    default void prepare(Position pos) {
+        // nothing to do by default
+    }
+
+    /**
+     * Scores a position for the side to move
+     *
+     * @param pos the position
+     * @return the score in centipawn-like units, positive when the side to
+     *         move is ahead
+     */
+    int evaluate(Position pos);
+}
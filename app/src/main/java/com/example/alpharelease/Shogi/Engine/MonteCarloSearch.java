@@ -0,0 +1,519 @@
+package com.example.alpharelease.Shogi.Engine;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Monte Carlo tree search (UCT): instead of looking at every move to a fixed
+ * depth, it grows a tree one playout at a time, spending more playouts on
+ * the moves that have done well so far.
+ *
+ * Each playout walks down from the root picking the child with the best
+ * upper confidence bound until it reaches a leaf (which gets children of its
+ * own once it has been played out a few times), plays a few random moves from
+ * there and scores the result with the static evaluation, turned into a win
+ * chance. The result is then added to every node on the way back up. With
+ * priors turned on, captures and promotions start out looking more promising
+ * than quiet moves (PUCT); without them every untried move is tried once
+ * before any is tried twice.
+ *
+ * Several threads grow the same tree at once (tree parallelism). A thread
+ * walking through a node adds a virtual loss to it until its result comes
+ * back, so the others spread out instead of all following the same path.
+ * Nodes live in preallocated primitive arrays and a node's children sit in
+ * one block, so a playout allocates nothing. The tree under the position
+ * actually reached is kept for the next move.
+ */
+
+public class MonteCarloSearch {
+
+    public static final int DEFAULT_NODES = 1 << 19;
+    public static final int PLAYOUT_PLIES = 8;
+    public static final int MAX_DEPTH = 128;
+    public static final int EXPAND_VISITS = 8; // playouts through a leaf before it gets children
+
+    static final double UCT_C = 1.4;
+    static final double PUCT_C = 1.5;
+    static final double FIRST_PLAY = 0.5; // value of an untried move with priors on
+    static final double WIN_SCALE = 600; // centipawns per unit of the win chance's logistic
+    static final double PRIOR_TEMPERATURE = 200;
+    static final int VIRTUAL_LOSS = 1;
+    static final double REUSE_LIMIT = 0.5; // start over rather than reuse a pool fuller than this
+    private static final long VALUE_SCALE = 1 << 16; // fixed point for the atomic value sums
+
+    // Node states
+    private static final int LEAF = 0;
+    private static final int EXPANDING = 1;
+    private static final int EXPANDED = 2;
+
+    private final int capacity;
+    private final int threads;
+    private final boolean priors;
+    private final int[] moves;
+    private final int[] firstChild;
+    private final int[] childCount;
+    private final float[] prior;
+    private final AtomicIntegerArray state;
+    private final AtomicIntegerArray visits;
+    private final AtomicIntegerArray virtualLoss;
+    private final AtomicLongArray value;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong playouts = new AtomicLong();
+    private ExecutorService pool;
+
+    private Position rootPosition;
+    private int root;
+    private int reusedVisits;
+    private volatile boolean stopped;
+    private long deadline;
+    private long maxPlayouts;
+    private long elapsed;
+
+    /**
+     * Constructor for a MonteCarloSearch
+     *
+     * @param threads how many threads grow the tree (1 runs on the caller only)
+     * @param capacity the most nodes the tree can hold
+     * @param priors whether to favor captures and promotions (PUCT) or treat
+     *               every move alike (plain UCT)
+     */
+    public MonteCarloSearch(int threads, int capacity, boolean priors) {
+        this.threads = Math.max(threads, 1);
+        this.capacity = capacity;
+        this.priors = priors;
+        moves = new int[capacity];
+        firstChild = new int[capacity];
+        childCount = new int[capacity];
+        prior = new float[capacity];
+        state = new AtomicIntegerArray(capacity);
+        visits = new AtomicIntegerArray(capacity);
+        virtualLoss = new AtomicIntegerArray(capacity);
+        value = new AtomicLongArray(capacity);
+    }
+
+    /**
+     * Grows the tree for a position and picks the most tried move
+     *
+     * @param pos the position (left as it was found)
+     * @param millis the time budget in milliseconds
+     * @param maxPlayouts the most playouts to run
+     * @return the best move, or Move.NONE if there are no legal moves
+     */
+    public int think(Position pos, long millis, long maxPlayouts) {
+        long start = System.currentTimeMillis();
+        deadline = start + millis;
+        this.maxPlayouts = maxPlayouts;
+        stopped = false;
+        playouts.set(0);
+        reuseOrReset(pos);
+        reusedVisits = visits.get(root);
+
+        ArrayList<Future<?>> helpers = new ArrayList<Future<?>>();
+        if (threads > 1) {
+            if (pool == null) {
+                pool = Executors.newFixedThreadPool(threads - 1, new ThreadFactory() {
+                    private int count;
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "mcts-" + ++count);
+                        thread.setDaemon(true); //Never keeps the app alive
+                        return thread;
+                    }
+                });
+            }
+            for (int i = 1; i < threads; i++) {
+                final Position copy = new Position(rootPosition);
+                helpers.add(pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        work(copy);
+                    }
+                }));
+            }
+        }
+        work(new Position(rootPosition));
+        stopped = true;
+        for (Future<?> helper : helpers) {
+            try {
+                helper.get();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException ee) {
+                throw new RuntimeException(ee.getCause());
+            }
+        }
+        elapsed = System.currentTimeMillis() - start;
+        return bestChild() < 0 ? Move.NONE : moves[bestChild()];
+    }
+
+    /**
+     * Moves the root down to the position reached if the old tree holds it
+     * (after our move, or after our move and the reply), otherwise starts a
+     * new tree
+     *
+     * @param pos the position to search
+     */
+    private void reuseOrReset(Position pos) {
+        int found = rootPosition == null ? -1 : find(pos.getKey());
+        if (found >= 0 && size.get() <= capacity * REUSE_LIMIT) {
+            root = found;
+        } else {
+            size.set(0);
+            root = allocate(1);
+            initNode(root, Move.NONE, 1);
+        }
+        rootPosition = new Position(pos);
+    }
+
+    /**
+     * Looks for a position up to two plies below the root
+     *
+     * @param key the position's Zobrist key
+     * @return its node, or -1 if the tree doesn't hold it
+     */
+    private int find(long key) {
+        if (rootPosition.getKey() == key) {
+            return root;
+        }
+        if (state.get(root) != EXPANDED) {
+            return -1;
+        }
+        for (int c = firstChild[root]; c < firstChild[root] + childCount[root]; c++) {
+            rootPosition.makeMove(moves[c]);
+            int found = -1;
+            if (rootPosition.getKey() == key) {
+                found = c;
+            } else if (state.get(c) == EXPANDED) {
+                for (int g = firstChild[c]; g < firstChild[c] + childCount[c] && found < 0; g++) {
+                    rootPosition.makeMove(moves[g]);
+                    if (rootPosition.getKey() == key) {
+                        found = g;
+                    }
+                    rootPosition.unmakeMove();
+                }
+            }
+            rootPosition.unmakeMove();
+            if (found >= 0) {
+                return found;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reserves a block of nodes
+     *
+     * @param n how many nodes
+     * @return the first node of the block, or -1 if the pool is full
+     */
+    private int allocate(int n) {
+        while (true) {
+            int first = size.get();
+            if (first + n > capacity) {
+                return -1;
+            }
+            if (size.compareAndSet(first, first + n)) {
+                return first;
+            }
+        }
+    }
+
+    /**
+     * Resets a node for a new move
+     *
+     * @param node the node
+     * @param move the move leading to it
+     * @param p its prior
+     */
+    private void initNode(int node, int move, float p) {
+        moves[node] = move;
+        firstChild[node] = -1;
+        childCount[node] = 0;
+        prior[node] = p;
+        visits.set(node, 0);
+        virtualLoss.set(node, 0);
+        value.set(node, 0);
+        state.set(node, LEAF);
+    }
+
+    /**
+     * Runs playouts on one thread until time, the playout budget or the
+     * other threads say stop
+     *
+     * @param pos this thread's copy of the root position
+     */
+    private void work(Position pos) {
+        MoveGenerator generator = new MoveGenerator();
+        int[] list = new int[MoveGenerator.MAX_MOVES];
+        int[] path = new int[MAX_DEPTH + 1];
+        while (!stopped) {
+            if (playouts.incrementAndGet() > maxPlayouts) {
+                break;
+            }
+            playout(pos, generator, list, path);
+            if ((playouts.get() & 15) == 0 && System.currentTimeMillis() >= deadline) {
+                break;
+            }
+        }
+        stopped = true;
+    }
+
+    /**
+     * Runs one playout: select, expand, simulate and back up
+     *
+     * @param pos the root position (left as it was found)
+     * @param generator this thread's move generator
+     * @param list scratch space for move lists
+     * @param path scratch space for the nodes walked through
+     */
+    private void playout(Position pos, MoveGenerator generator, int[] list, int[] path) {
+        int node = root;
+        int depth = 0;
+        path[0] = node;
+        double result; // for the side to move at the end of the path
+
+        while (true) {
+            int st = state.get(node);
+            if (st == EXPANDED && childCount[node] == 0) {
+                result = 0; //No legal moves: the side to move has lost
+                break;
+            }
+            if (st != EXPANDED || depth == MAX_DEPTH) {
+                if (st == LEAF && depth < MAX_DEPTH
+                        && (node == root || visits.get(node) >= EXPAND_VISITS)
+                        && state.compareAndSet(node, LEAF, EXPANDING)) {
+                    expand(node, pos, generator, list);
+                }
+                result = simulate(pos, generator, list);
+                break;
+            }
+            node = select(node);
+            virtualLoss.addAndGet(node, VIRTUAL_LOSS);
+            pos.makeMove(moves[node]);
+            path[++depth] = node;
+        }
+
+        // Each node's value is from the view of the side that moved into it
+        for (int i = depth; i >= 0; i--) {
+            result = 1 - result;
+            visits.incrementAndGet(path[i]);
+            value.addAndGet(path[i], Math.round(result * VALUE_SCALE));
+            if (i > 0) {
+                virtualLoss.addAndGet(path[i], -VIRTUAL_LOSS);
+                pos.unmakeMove();
+            }
+        }
+    }
+
+    /**
+     * Picks the child with the best upper confidence bound
+     *
+     * @param node an expanded node with children
+     * @return the child
+     */
+    private int select(int node) {
+        int first = firstChild[node];
+        int parentVisits = visits.get(node) + virtualLoss.get(node);
+        double explore = priors ? PUCT_C * Math.sqrt(Math.max(parentVisits, 1))
+                : UCT_C * Math.sqrt(Math.log(Math.max(parentVisits, 1)));
+        int best = first;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int c = first; c < first + childCount[node]; c++) {
+            int n = visits.get(c) + virtualLoss.get(c); //Virtual losses count as visits worth nothing
+            double score;
+            if (priors) {
+                double q = n == 0 ? FIRST_PLAY : (double) value.get(c) / VALUE_SCALE / n;
+                score = q + explore * prior[c] / (1 + n);
+            } else if (n == 0) {
+                return c; //Try everything once first
+            } else {
+                score = (double) value.get(c) / VALUE_SCALE / n + explore / Math.sqrt(n);
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Adds a node's children, unless the pool is full
+     *
+     * @param node the node, claimed by this thread
+     * @param pos its position
+     * @param generator this thread's move generator
+     * @param list scratch space for the move list
+     */
+    private void expand(int node, Position pos, MoveGenerator generator, int[] list) {
+        int n = generator.generateLegal(pos, list);
+        int first = n == 0 ? 0 : allocate(n);
+        if (first < 0) {
+            state.set(node, LEAF); //Out of room: it stays a leaf
+            return;
+        }
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            double p = priors ? Math.exp(moveScore(pos, list[i]) / PRIOR_TEMPERATURE) : 1;
+            initNode(first + i, list[i], (float) p);
+            total += p;
+        }
+        for (int i = 0; i < n; i++) {
+            prior[first + i] /= total;
+        }
+        firstChild[node] = first;
+        childCount[node] = n;
+        state.set(node, EXPANDED); //Publishes the children to the other threads
+    }
+
+    /**
+     * Guesses how good a move is before trying it, from what it captures and
+     * whether it promotes
+     *
+     * @param pos the position
+     * @param move the move
+     * @return the guess, in centipawns
+     */
+    private static int moveScore(Position pos, int move) {
+        int score = 0;
+        if (!Move.isDrop(move)) {
+            int victim = pos.board[Move.to(move)];
+            if (victim != Pieces.EMPTY) {
+                score += Evaluation.VALUE[Pieces.type(victim)];
+            }
+            if (Move.isPromote(move)) {
+                int type = Move.type(move);
+                score += Evaluation.VALUE[Pieces.promote(type)] - Evaluation.VALUE[type];
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Plays a few random moves and scores where they lead
+     *
+     * @param pos the position (left as it was found)
+     * @param generator this thread's move generator
+     * @param list scratch space for move lists
+     * @return the chance of winning for the side to move in pos, 0 to 1
+     */
+    private double simulate(Position pos, MoveGenerator generator, int[] list) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int played = 0;
+        double result = -1;
+        while (played < PLAYOUT_PLIES) {
+            int n = generator.generateLegal(pos, list);
+            if (n == 0) {
+                result = 0; //The side to move here has lost
+                break;
+            }
+            pos.makeMove(list[random.nextInt(n)]);
+            played++;
+        }
+        if (result < 0) {
+            result = 1 / (1 + Math.exp(-Evaluation.evaluate(pos) / WIN_SCALE));
+        }
+        for (int i = 0; i < played; i++) {
+            pos.unmakeMove();
+        }
+        return played % 2 == 0 ? result : 1 - result;
+    }
+
+    /**
+     * Finds the root's most tried child
+     *
+     * @return the child, or -1 if the root has none
+     */
+    private int bestChild() {
+        if (state.get(root) != EXPANDED) {
+            return -1;
+        }
+        int best = -1;
+        for (int c = firstChild[root]; c < firstChild[root] + childCount[root]; c++) {
+            if (best < 0 || visits.get(c) > visits.get(best)
+                    || (visits.get(c) == visits.get(best) && value.get(c) > value.get(best))) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Stops the helper threads for good, once the player is done with the search
+     */
+    public void shutdown() {
+        stopped = true;
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Playouts run in the last search (not counting those kept from earlier moves)
+     *
+     * @return the playout count
+     */
+    public long getPlayouts() {
+        return Math.min(playouts.get(), visits.get(root) - reusedVisits);
+    }
+
+    /**
+     * Playouts that had already been run below the root before the last
+     * search started, thanks to tree reuse
+     *
+     * @return the reused visit count
+     */
+    public int getReusedVisits() {
+        return reusedVisits;
+    }
+
+    public int getRootVisits() {
+        return visits.get(root);
+    }
+
+    public int getNodes() {
+        return size.get();
+    }
+
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * The chance of winning the search gives its best move
+     *
+     * @return the best move's average result, 0 to 1
+     */
+    public double getWinRate() {
+        int best = bestChild();
+        if (best < 0 || visits.get(best) == 0) {
+            return 0;
+        }
+        return (double) value.get(best) / VALUE_SCALE / visits.get(best);
+    }
+
+    /**
+     * Playouts run per second in the last search
+     *
+     * @return the rate
+     */
+    public long playoutsPerSecond() {
+        return getPlayouts() * 1000 / Math.max(elapsed, 1);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.alpharelease.Shogi.Engine;
+
+/**
+ * Packs and unpacks moves stored as plain ints.
+ *
+ * Layout (low bit first):
+ *      bits 0 - 6   destination square
+ *      bits 7 - 13  origin square (unused for drops)
+ *      bits 14 - 17 type of the moving (or dropped) piece before promotion
+ *      bit 18       promote flag
+ *      bit 19       drop flag
+ */
+
+public final class Move {
+
+    public static final int NONE = 0;
+
+    private static final int FROM_SHIFT = 7;
+    private static final int TYPE_SHIFT = 14;
+    private static final int PROMOTE_FLAG = 1 << 18;
+    private static final int DROP_FLAG = 1 << 19;
+
+    private Move() {
+    }
+
+    /**
+     * Encodes a move of a piece already on the board
+     *
+     * @param from the origin square
+     * @param to the destination square
+     * @param type the type of the moving piece
+     * @param promote whether the piece promotes on arrival
+     * @return the packed move
+     */
+    public static int make(int from, int to, int type, boolean promote) {
+        return to | (from << FROM_SHIFT) | (type << TYPE_SHIFT) | (promote ? PROMOTE_FLAG : 0);
+    }
+
+    /**
+     * Encodes a drop of a piece from the hand
+     *
+     * @param to the square the piece is dropped on
+     * @param type the type being dropped
+     * @return the packed move
+     */
+    public static int makeDrop(int to, int type) {
+        return to | (type << TYPE_SHIFT) | DROP_FLAG;
+    }
+
+    public static int to(int move) {
+        return move & 0x7F;
+    }
+
+    public static int from(int move) {
+        return (move >>> FROM_SHIFT) & 0x7F;
+    }
+
+    public static int type(int move) {
+        return (move >>> TYPE_SHIFT) & 0xF;
+    }
+
+    public static boolean isPromote(int move) {
+        return (move & PROMOTE_FLAG) != 0;
+    }
+
+    public static boolean isDrop(int move) {
+        return (move & DROP_FLAG) != 0;
+    }
+
+    /**
+     * Writes a move in USI notation (files 9 - 1 left to right, ranks a - i top
+     * to bottom), e.g. "7g7f", "2b8h+" or "P*5e"
+     *
+     * @param move the packed move
+     * @return the move as text
+     */
+    public static String toString(int move) {
+        if (move == NONE) {
+            return "none";
+        }
+        if (isDrop(move)) {
+            return "PLNSBRG".charAt(type(move) - 1) + "*" + square(to(move));
+        }
+        return square(from(move)) + square(to(move)) + (isPromote(move) ? "+" : "");
+    }
+
+    /**
+     * Writes a square in USI notation
+     *
+     * @param sq the square index
+     * @return the file digit followed by the rank letter
+     */
+    public static String square(int sq) {
+        return "" + (Bitboards.SIZE - Bitboards.colOf(sq)) + (char) ('a' + Bitboards.rowOf(sq));
+    }
+}
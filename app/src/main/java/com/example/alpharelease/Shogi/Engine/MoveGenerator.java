@@ -0,0 +1,742 @@
+package com.example.alpharelease.Shogi.Engine;
+
+import java.util.SplittableRandom;
+
+/**
+ * Generates moves for the side to move of a Position as packed ints
+ * (see {@link Move}).
+ *
+ * The generator only reads the position and writes into the buffer the caller
+ * hands it, so any number of generators (one per thread) can share a position.
+ * An instance keeps its own scratch bitboards, so nothing is allocated per call.
+ *
+ * {@link #generate} produces pseudo-legal moves: pieces follow their movement
+ * rules, pawns, lances and knights are never left (or dropped) where they could
+ * not move again, and pawns are not dropped on a column that has one already.
+ * {@link #generateLegal} also removes moves that leave the mover's king in check
+ * and pawn drops that give checkmate. Captures and quiet moves (everything
+ * else, drops included) can also be generated on their own, so a search can
+ * try the captures before paying for the rest (see {@link MovePicker}).
+ * {@link #randomLegal} picks a single legal move at random for playouts (see
+ * {@link Playout}).
+ */
+
+public class MoveGenerator {
+
+    // The most legal moves any shogi position is known to have is 593
+    public static final int MAX_MOVES = 600;
+
+    // Draws randomLegal makes before falling back to trying every move
+    private static final int RANDOM_TRIES = 8;
+
+    private final long[] bb = new long[2];
+    private final long[] tmp = new long[2];
+    private int[] replies;
+    private final int[] dropCounts = new int[Pieces.GOLD + 1];
+
+    // Attack information about the king of the side being checked, set by prepare()
+    private int king;
+    private int checkCount;
+    private int checker;
+    private long pinnedLo, pinnedHi;
+
+    /**
+     * Writes every pseudo-legal move of the side to move into the buffer
+     *
+     * @param pos the position to generate moves for (not modified)
+     * @param moves the buffer receiving the moves, at least MAX_MOVES long
+     * @return the number of moves written
+     */
+    public int generate(Position pos, int[] moves) {
+        return generateDrops(pos, pos.sideToMove, moves, generateBoard(pos, moves));
+    }
+
+    /**
+     * Writes the pseudo-legal moves of the pieces on the board, leaving out drops
+     *
+     * @param pos the position (not modified)
+     * @param moves the buffer receiving the moves
+     * @return the number of moves written
+     */
+    private int generateBoard(Position pos, int[] moves) {
+        int side = pos.sideToMove;
+        int n = 0;
+
+        long lo = pos.occLo[side];
+        long hi = pos.occHi[side];
+        while ((lo | hi) != 0) {
+            int from;
+            if (lo != 0) {
+                from = Long.numberOfTrailingZeros(lo);
+                lo &= lo - 1;
+            } else {
+                from = Bitboards.SPLIT + Long.numberOfTrailingZeros(hi);
+                hi &= hi - 1;
+            }
+            n = generateFrom(pos, from, moves, n);
+        }
+        return n;
+    }
+
+    /**
+     * Writes every legal move of the side to move into the buffer
+     *
+     * @param pos the position to generate moves for (not modified)
+     * @param moves the buffer receiving the moves, at least MAX_MOVES long
+     * @return the number of moves written
+     */
+    public int generateLegal(Position pos, int[] moves) {
+        int side = pos.sideToMove;
+        int count = generate(pos, moves);
+        prepare(pos, side);
+
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (legal(pos, moves[i], side)) {
+                moves[n++] = moves[i];
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Picks one legal move of the side to move uniformly at random, for playouts.
+     * Out of check it lists only the board moves and just counts the drops
+     * (there are often a hundred or more of them), then draws from the lot until
+     * a draw is legal; since every pseudo-legal move is equally likely on each
+     * draw, the legal ones are too. In check, or when the draws keep missing, it
+     * falls back to trying the full list in random order without repeats.
+     *
+     * @param pos the position (not modified)
+     * @param moves scratch buffer, at least MAX_MOVES long
+     * @param random the random numbers to pick with
+     * @return a legal move, or Move.NONE if there are none
+     */
+    public int randomLegal(Position pos, int[] moves, SplittableRandom random) {
+        int side = pos.sideToMove;
+        prepare(pos, side);
+        if (checkCount == 0) {
+            int boardMoves = generateBoard(pos, moves);
+            int total = boardMoves;
+            for (int type = Pieces.PAWN; type <= Pieces.GOLD; type++) {
+                dropCounts[type] = 0;
+                if (pos.hand[side][type] != 0) {
+                    pos.dropTargets(side, type, bb);
+                    dropCounts[type] = Bitboards.count(bb[0], bb[1]);
+                    total += dropCounts[type];
+                }
+            }
+            for (int tries = 0; tries < RANDOM_TRIES && total > 0; tries++) {
+                int i = random.nextInt(total);
+                int move = i < boardMoves ? moves[i] : nthDrop(pos, side, i - boardMoves);
+                if (legal(pos, move, side)) {
+                    return move;
+                }
+            }
+        }
+
+        int count = generate(pos, moves);
+        while (count > 0) {
+            int i = random.nextInt(count);
+            int move = moves[i];
+            if (legal(pos, move, side)) {
+                return move;
+            }
+            moves[i] = moves[--count]; //Never try it again
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * Finds a drop by its place in the order generateDrops would list it,
+     * using the counts randomLegal left in dropCounts
+     *
+     * @param pos the position (not modified)
+     * @param side the side dropping
+     * @param index which drop, counting from 0
+     * @return the drop
+     */
+    private int nthDrop(Position pos, int side, int index) {
+        int type = Pieces.PAWN;
+        while (index >= dropCounts[type]) {
+            index -= dropCounts[type++];
+        }
+        pos.dropTargets(side, type, bb);
+        long bits = bb[0];
+        int base = 0;
+        int loCount = Long.bitCount(bits);
+        if (index >= loCount) {
+            index -= loCount;
+            bits = bb[1];
+            base = Bitboards.SPLIT;
+        }
+        while (index-- > 0) {
+            bits &= bits - 1;
+        }
+        return Move.makeDrop(base + Long.numberOfTrailingZeros(bits), type);
+    }
+
+    /**
+     * Writes the pseudo-legal moves of the piece on one square into the buffer
+     *
+     * @param pos the position (not modified)
+     * @param from the square holding the piece
+     * @param moves the buffer receiving the moves
+     * @param n the index to start writing at
+     * @return the index after the last move written
+     */
+    public int generateFrom(Position pos, int from, int[] moves, int n) {
+        return generateFrom(pos, from, -1L, -1L, moves, n);
+    }
+
+    /**
+     * Writes the pseudo-legal moves of the piece on one square that land on
+     * the given squares into the buffer
+     *
+     * @param pos the position (not modified)
+     * @param from the square holding the piece
+     * @param maskLo lo word of the squares the moves may land on
+     * @param maskHi hi word of the squares the moves may land on
+     * @param moves the buffer receiving the moves
+     * @param n the index to start writing at
+     * @return the index after the last move written
+     */
+    private int generateFrom(Position pos, int from, long maskLo, long maskHi, int[] moves, int n) {
+        int code = pos.board[from];
+        int type = Pieces.type(code);
+        int side = Pieces.side(code);
+        boolean promotable = Pieces.isPromotable(type);
+        boolean fromZone = Bitboards.test(Bitboards.ZONE_LO[side], Bitboards.ZONE_HI[side], from);
+
+        pos.targets(from, bb);
+        long lo = bb[0] & maskLo;
+        long hi = bb[1] & maskHi;
+        while ((lo | hi) != 0) {
+            int to;
+            if (lo != 0) {
+                to = Long.numberOfTrailingZeros(lo);
+                lo &= lo - 1;
+            } else {
+                to = Bitboards.SPLIT + Long.numberOfTrailingZeros(hi);
+                hi &= hi - 1;
+            }
+            if (promotable && (fromZone
+                    || Bitboards.test(Bitboards.ZONE_LO[side], Bitboards.ZONE_HI[side], to))) {
+                moves[n++] = Move.make(from, to, type, true);
+            }
+            if (Bitboards.test(Bitboards.ALIVE_LO[code], Bitboards.ALIVE_HI[code], to)) {
+                moves[n++] = Move.make(from, to, type, false);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Writes the legal moves of the side to move that capture a piece into the
+     * buffer
+     *
+     * @param pos the position (not modified)
+     * @param moves the buffer receiving the moves
+     * @param n the index to start writing at
+     * @return the index after the last move written
+     */
+    public int generateLegalCaptures(Position pos, int[] moves, int n) {
+        int side = pos.sideToMove;
+        int end = generateTo(pos, pos.occLo[1 - side], pos.occHi[1 - side], moves, n);
+        return filterLegal(pos, side, moves, n, end);
+    }
+
+    /**
+     * Writes the legal moves of the side to move that don't capture anything
+     * (drops included) into the buffer
+     *
+     * @param pos the position (not modified)
+     * @param moves the buffer receiving the moves
+     * @param n the index to start writing at
+     * @return the index after the last move written
+     */
+    public int generateLegalQuiets(Position pos, int[] moves, int n) {
+        int side = pos.sideToMove;
+        int end = generateTo(pos, ~pos.occupiedLo(), ~pos.occupiedHi(), moves, n);
+        end = generateDrops(pos, side, moves, end);
+        return filterLegal(pos, side, moves, n, end);
+    }
+
+    /**
+     * Writes the legal moves of the side to move's pieces on the board (no
+     * drops) into the buffer
+     *
+     * @param pos the position (not modified)
+     * @param moves the buffer receiving the moves
+     * @param n the index to start writing at
+     * @return the index after the last move written
+     */
+    public int generateLegalBoardMoves(Position pos, int[] moves, int n) {
+        int end = generateTo(pos, -1L, -1L, moves, n);
+        return filterLegal(pos, pos.sideToMove, moves, n, end);
+    }
+
+    /**
+     * Writes the legal moves of the side to move that promote without
+     * capturing into the buffer
+     *
+     * @param pos the position (not modified)
+     * @param moves the buffer receiving the moves
+     * @param n the index to start writing at
+     * @return the index after the last move written
+     */
+    public int generateLegalPromotions(Position pos, int[] moves, int n) {
+        int side = pos.sideToMove;
+        int end = generateTo(pos, ~pos.occupiedLo(), ~pos.occupiedHi(), moves, n);
+        int kept = n;
+        for (int i = n; i < end; i++) {
+            if (Move.isPromote(moves[i])) {
+                moves[kept++] = moves[i];
+            }
+        }
+        return filterLegal(pos, side, moves, n, kept);
+    }
+
+    /**
+     * Writes the legal drops of the side to move that give check into the
+     * buffer. A piece dropped on a square attacks the enemy king exactly when
+     * the same piece of the enemy's colour on the king's square would attack
+     * that square, so the checking squares come straight from one attack
+     * lookup per type.
+     *
+     * @param pos the position (not modified)
+     * @param moves the buffer receiving the moves
+     * @param n the index to start writing at
+     * @return the index after the last move written
+     */
+    public int generateLegalCheckingDrops(Position pos, int[] moves, int n) {
+        int side = pos.sideToMove;
+        int enemyKing = pos.kingSquare[1 - side];
+        if (enemyKing < 0) {
+            return n;
+        }
+        int end = n;
+        for (int type = Pieces.PAWN; type <= Pieces.GOLD; type++) {
+            if (pos.hand[side][type] == 0) {
+                continue;
+            }
+            pos.dropTargets(side, type, bb);
+            long dropLo = bb[0];
+            long dropHi = bb[1];
+            pos.attacks(Pieces.code(1 - side, type), enemyKing, bb);
+            long lo = dropLo & bb[0];
+            long hi = dropHi & bb[1];
+            while (lo != 0) {
+                moves[end++] = Move.makeDrop(Long.numberOfTrailingZeros(lo), type);
+                lo &= lo - 1;
+            }
+            while (hi != 0) {
+                moves[end++] = Move.makeDrop(Bitboards.SPLIT + Long.numberOfTrailingZeros(hi), type);
+                hi &= hi - 1;
+            }
+        }
+        return filterLegal(pos, side, moves, n, end);
+    }
+
+    /**
+     * Writes the pseudo-legal board moves of the side to move landing on the
+     * given squares into the buffer
+     *
+     * @param pos the position (not modified)
+     * @param maskLo lo word of the squares the moves may land on
+     * @param maskHi hi word of the squares the moves may land on
+     * @param moves the buffer receiving the moves
+     * @param n the index to start writing at
+     * @return the index after the last move written
+     */
+    private int generateTo(Position pos, long maskLo, long maskHi, int[] moves, int n) {
+        int side = pos.sideToMove;
+        long lo = pos.occLo[side];
+        long hi = pos.occHi[side];
+        while ((lo | hi) != 0) {
+            int from;
+            if (lo != 0) {
+                from = Long.numberOfTrailingZeros(lo);
+                lo &= lo - 1;
+            } else {
+                from = Bitboards.SPLIT + Long.numberOfTrailingZeros(hi);
+                hi &= hi - 1;
+            }
+            n = generateFrom(pos, from, maskLo, maskHi, moves, n);
+        }
+        return n;
+    }
+
+    /**
+     * Drops the illegal moves from part of a buffer, packing the rest down
+     *
+     * @param pos the position
+     * @param side the player making the moves
+     * @param moves the buffer
+     * @param start the first move to check
+     * @param end the index after the last move to check
+     * @return the index after the last legal move
+     */
+    private int filterLegal(Position pos, int side, int[] moves, int start, int end) {
+        prepare(pos, side);
+        int n = start;
+        for (int i = start; i < end; i++) {
+            if (legal(pos, moves[i], side)) {
+                moves[n++] = moves[i];
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Writes the legal moves of the piece on one square into the buffer
+     *
+     * @param pos the position (not modified)
+     * @param from the square holding the piece
+     * @param moves the buffer receiving the moves
+     * @param n the index to start writing at
+     * @return the index after the last move written
+     */
+    public int generateLegalFrom(Position pos, int from, int[] moves, int n) {
+        int side = Pieces.side(pos.board[from]);
+        int end = generateFrom(pos, from, moves, n);
+        prepare(pos, side);
+        for (int i = n; i < end; i++) {
+            if (legal(pos, moves[i], side)) {
+                moves[n++] = moves[i];
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Writes every pseudo-legal drop of a player into the buffer
+     *
+     * @param pos the position (not modified)
+     * @param side the player dropping
+     * @param moves the buffer receiving the moves
+     * @param n the index to start writing at
+     * @return the index after the last move written
+     */
+    public int generateDrops(Position pos, int side, int[] moves, int n) {
+        for (int type = Pieces.PAWN; type <= Pieces.GOLD; type++) {
+            n = generateDrops(pos, side, type, moves, n);
+        }
+        return n;
+    }
+
+    /**
+     * Writes every pseudo-legal drop of one piece type into the buffer
+     *
+     * @param pos the position (not modified)
+     * @param side the player dropping
+     * @param type the type being dropped
+     * @param moves the buffer receiving the moves
+     * @param n the index to start writing at
+     * @return the index after the last move written
+     */
+    public int generateDrops(Position pos, int side, int type, int[] moves, int n) {
+        if (pos.hand[side][type] == 0) {
+            return n;
+        }
+        pos.dropTargets(side, type, bb);
+        long lo = bb[0];
+        long hi = bb[1];
+        while (lo != 0) {
+            moves[n++] = Move.makeDrop(Long.numberOfTrailingZeros(lo), type);
+            lo &= lo - 1;
+        }
+        while (hi != 0) {
+            moves[n++] = Move.makeDrop(Bitboards.SPLIT + Long.numberOfTrailingZeros(hi), type);
+            hi &= hi - 1;
+        }
+        return n;
+    }
+
+    /**
+     * Writes the legal drops of one piece type into the buffer
+     *
+     * @param pos the position (not modified)
+     * @param side the player dropping
+     * @param type the type being dropped
+     * @param moves the buffer receiving the moves
+     * @param n the index to start writing at
+     * @return the index after the last move written
+     */
+    public int generateLegalDrops(Position pos, int side, int type, int[] moves, int n) {
+        int end = generateDrops(pos, side, type, moves, n);
+        prepare(pos, side);
+        for (int i = n; i < end; i++) {
+            if (legal(pos, moves[i], side)) {
+                moves[n++] = moves[i];
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Checks whether a pseudo-legal move is legal
+     *
+     * @param pos the position (not modified)
+     * @param move the move, as generated by this class
+     * @param side the player making the move
+     * @return true if the move doesn't leave the mover in check and isn't a
+     *          checkmating pawn drop
+     */
+    public boolean isLegal(Position pos, int move, int side) {
+        prepare(pos, side);
+        return legal(pos, move, side);
+    }
+
+    /**
+     * Checks whether a move could have been generated in a position, i.e. the
+     * piece is there (or in hand) and may go where the move says. Moves
+     * remembered from other positions (killers, countermoves, table moves
+     * from a colliding key) must pass this before they are played.
+     *
+     * @param pos the position (not modified)
+     * @param move the move to check
+     * @return true if the move is pseudo-legal for the side to move
+     */
+    public boolean isPseudoLegal(Position pos, int move) {
+        int side = pos.sideToMove;
+        int to = Move.to(move);
+        int type = Move.type(move);
+        if (move == Move.NONE || to >= Bitboards.SQUARES) {
+            return false;
+        }
+        if (Move.isDrop(move)) {
+            if (type < Pieces.PAWN || type > Pieces.GOLD || Move.isPromote(move)
+                    || pos.hand[side][type] == 0) {
+                return false;
+            }
+            pos.dropTargets(side, type, bb);
+            return Bitboards.test(bb[0], bb[1], to);
+        }
+        int from = Move.from(move);
+        if (from >= Bitboards.SQUARES || pos.board[from] != Pieces.code(side, type)) {
+            return false;
+        }
+        pos.targets(from, bb);
+        if (!Bitboards.test(bb[0], bb[1], to)) {
+            return false;
+        }
+        return Move.isPromote(move) ? pos.canPromote(from, to) : !pos.mustPromote(from, to);
+    }
+
+    /**
+     * Checks whether a player's king is attacked
+     *
+     * @param pos the position (not modified)
+     * @param side the player whose king is checked
+     * @return true if that player is in check
+     */
+    public boolean inCheck(Position pos, int side) {
+        return pos.inCheck(side, tmp);
+    }
+
+    /**
+     * Checks whether the side to move is checkmated, i.e. is in check and has
+     * no legal way out of it
+     *
+     * @param pos the position (not modified)
+     * @return true if the side to move has lost
+     */
+    public boolean isCheckmate(Position pos) {
+        int side = pos.sideToMove;
+        prepare(pos, side);
+        if (checkCount == 0) {
+            return false;
+        }
+        if (replies == null) {
+            replies = new int[MAX_MOVES];
+        }
+        int count = generate(pos, replies);
+        for (int i = 0; i < count; i++) {
+            if (legal(pos, replies[i], side)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the king, the pieces checking it and the pieces pinned to it
+     *
+     * @param pos the position
+     * @param side the player whose king is looked at
+     */
+    private void prepare(Position pos, int side) {
+        king = pos.kingSquare[side];
+        checkCount = 0;
+        pinnedLo = pinnedHi = 0;
+        if (king < 0) {
+            return;
+        }
+        int enemy = 1 - side;
+
+        pos.attackersTo(king, enemy, pos.occupiedLo(), pos.occupiedHi(), tmp);
+        checkCount = Bitboards.count(tmp[0], tmp[1]);
+        if (checkCount != 0) {
+            checker = Bitboards.first(tmp[0], tmp[1]);
+        }
+
+        // Walk out from the king; an own piece followed by an enemy slider
+        // moving back along the same line is pinned
+        for (int dir = 0; dir < 8; dir++) {
+            int dCol = Bitboards.DIR_COL[dir];
+            int dRow = Bitboards.DIR_ROW[dir];
+            int blocker = -1;
+            int sq = Bitboards.offset(king, dCol, dRow);
+            while (sq >= 0) {
+                int code = pos.board[sq];
+                if (code != Pieces.EMPTY) {
+                    if (Pieces.side(code) == side) {
+                        if (blocker != -1) {
+                            break; //Two own pieces in the way
+                        }
+                        blocker = sq;
+                    } else {
+                        if (blocker != -1 && slidesToward(code, dCol, dRow)) {
+                            pinnedLo |= Bitboards.lo(blocker);
+                            pinnedHi |= Bitboards.hi(blocker);
+                        }
+                        break;
+                    }
+                }
+                sq = Bitboards.offset(sq, dCol, dRow);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a piece slides back along a direction (toward the square
+     * the direction started from)
+     *
+     * @param code the piece code
+     * @param dCol column step of the direction
+     * @param dRow row step of the direction
+     * @return true if the piece slides the opposite way
+     */
+    private static boolean slidesToward(int code, int dCol, int dRow) {
+        switch (Pieces.type(code)) {
+            case Pieces.ROOK: case Pieces.DRAGON:
+                return dCol == 0 || dRow == 0;
+            case Pieces.BISHOP: case Pieces.HORSE:
+                return dCol != 0 && dRow != 0;
+            case Pieces.LANCE:
+                return dCol == 0 && dRow == -Bitboards.forward(Pieces.side(code));
+        }
+        return false;
+    }
+
+    /**
+     * Checks a pseudo-legal move against the information from prepare()
+     *
+     * @param pos the position
+     * @param move the move
+     * @param side the player making the move
+     * @return true if the move is legal
+     */
+    private boolean legal(Position pos, int move, int side) {
+        int to = Move.to(move);
+
+        if (Move.isDrop(move)) {
+            if (checkCount > 1 || (checkCount == 1 && !blocksCheck(to))) {
+                return false;
+            }
+            return Move.type(move) != Pieces.PAWN || !pawnDropMates(pos, to, side);
+        }
+        if (king < 0) {
+            return true;
+        }
+
+        int from = Move.from(move);
+        if (from == king) { //The king can't step onto an attacked square
+            pos.attackersTo(to, 1 - side, pos.occupiedLo() & ~Bitboards.lo(king),
+                    pos.occupiedHi() & ~Bitboards.hi(king), tmp);
+            return (tmp[0] | tmp[1]) == 0;
+        }
+        if (checkCount > 1) {
+            return false; //Only the king can escape a double check
+        }
+        if (checkCount == 1 && to != checker && !blocksCheck(to)) {
+            return false;
+        }
+        return !Bitboards.test(pinnedLo, pinnedHi, from)
+                || Bitboards.direction(king, from) == Bitboards.direction(king, to);
+    }
+
+    /**
+     * Checks whether a square lies between the king and a sliding checker
+     *
+     * @param sq the square
+     * @return true if a piece placed there would block the check
+     */
+    private boolean blocksCheck(int sq) {
+        int dir = Bitboards.direction(king, checker);
+        return dir != -1 && Bitboards.direction(king, sq) == dir
+                && Bitboards.distance(king, sq) < Bitboards.distance(king, checker);
+    }
+
+    /**
+     * Checks whether dropping a pawn checkmates the opponent (uchifuzume),
+     * which is against the rules
+     *
+     * @param pos the position
+     * @param to the square the pawn is dropped on
+     * @param side the player dropping the pawn
+     * @return true if the drop would be checkmate
+     */
+    private boolean pawnDropMates(Position pos, int to, int side) {
+        int enemy = 1 - side;
+        int enemyKing = pos.kingSquare[enemy];
+        if (enemyKing < 0 || to + Bitboards.forward(side) * Bitboards.SIZE != enemyKing) {
+            return false; //Doesn't give check
+        }
+        long allLo = pos.occupiedLo() | Bitboards.lo(to);
+        long allHi = pos.occupiedHi() | Bitboards.hi(to);
+
+        // Can something other than the king take the pawn without exposing the king?
+        pos.attackersTo(to, enemy, allLo, allHi, bb);
+        long lo = bb[0] & ~Bitboards.lo(enemyKing);
+        long hi = bb[1] & ~Bitboards.hi(enemyKing);
+        while ((lo | hi) != 0) {
+            int from;
+            if (lo != 0) {
+                from = Long.numberOfTrailingZeros(lo);
+                lo &= lo - 1;
+            } else {
+                from = Bitboards.SPLIT + Long.numberOfTrailingZeros(hi);
+                hi &= hi - 1;
+            }
+            pos.attackersTo(enemyKing, side, allLo & ~Bitboards.lo(from),
+                    allHi & ~Bitboards.hi(from), tmp);
+            if ((tmp[0] | tmp[1]) == 0) {
+                return false;
+            }
+        }
+
+        // Can the king take the pawn or step somewhere safe?
+        int kingCode = Pieces.code(enemy, Pieces.KING);
+        lo = Bitboards.STEP_LO[kingCode][enemyKing] & ~pos.occLo[enemy];
+        hi = Bitboards.STEP_HI[kingCode][enemyKing] & ~pos.occHi[enemy];
+        allLo &= ~Bitboards.lo(enemyKing);
+        allHi &= ~Bitboards.hi(enemyKing);
+        while ((lo | hi) != 0) {
+            int sq;
+            if (lo != 0) {
+                sq = Long.numberOfTrailingZeros(lo);
+                lo &= lo - 1;
+            } else {
+                sq = Bitboards.SPLIT + Long.numberOfTrailingZeros(hi);
+                hi &= hi - 1;
+            }
+            pos.attackersTo(sq, side, allLo, allHi, tmp);
+            if ((tmp[0] | tmp[1]) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
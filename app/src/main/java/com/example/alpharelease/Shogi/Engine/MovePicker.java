@@ -0,0 +1,286 @@
+package com.example.alpharelease.Shogi.Engine;
+
+/**
+ * Hands a search node its moves one at a time, best guesses first, and only
+ * generates each group of moves when the ones before it have all been tried.
+ *
+ * The stages are:
+ *  - the move stored in the transposition table for this position
+ *  - captures, most valuable victim first and, among those, least valuable
+ *    attacker first (MVV-LVA); taking with a promotion also counts the gain
+ *  - the two killer moves: quiet moves that caused a cutoff at the same
+ *    ply elsewhere in the tree
+ *  - the countermove: the quiet move that last refuted the opponent's
+ *    previous move
+ *  - every other quiet move and drop, by history score (how often the move
+ *    has caused cutoffs, weighted by depth)
+ *
+ * Most nodes that fail high do so on the first or second move, so a node cut
+ * off by the table move or a capture never pays to generate its quiet moves
+ * and drops, which are by far the bulk of the list in shogi. Moves remembered
+ * from other positions (table move, killers, countermove) are checked before
+ * they are handed out and skipped when they turn up again in a later stage.
+ *
+ * For the quiescence search (see Search) the picker can instead hand out only
+ * the captures, then the promotions that don't capture and, if asked for,
+ * the drops that give check.
+ */
+
+public class MovePicker {
+
+    // Stages, in the order they are gone through
+    public static final int TABLE = 0;
+    public static final int GENERATE_CAPTURES = 1;
+    public static final int CAPTURES = 2;
+    public static final int KILLER_1 = 3;
+    public static final int KILLER_2 = 4;
+    public static final int COUNTER = 5;
+    public static final int GENERATE_QUIETS = 6;
+    public static final int QUIETS = 7;
+    public static final int DONE = 8;
+    public static final int GENERATE_TACTICAL = 9; // quiescence only
+    public static final int TACTICAL = 10;
+
+    // Size of a history or countermove table for one side: moving type
+    // (drops offset by 16) times destination square
+    public static final int HISTORY_SIZE = 32 * Bitboards.SQUARES;
+
+    private final MoveGenerator generator;
+    private final int[][] history;
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private final int[] scores = new int[MoveGenerator.MAX_MOVES];
+
+    private Position pos;
+    private boolean quiescence;
+    private boolean checks;
+    private int stage;
+    private int count;
+    private int next;
+    private int tableMove;
+    private int killer1;
+    private int killer2;
+    private int counter;
+
+    /**
+     * Constructor for a MovePicker
+     *
+     * @param generator the generator used to make and check moves
+     * @param history the history scores, indexed by side and historyIndex()
+     */
+    public MovePicker(MoveGenerator generator, int[][] history) {
+        this.generator = generator;
+        this.history = history;
+    }
+
+    /**
+     * Gets ready to hand out the moves of a new position
+     *
+     * @param pos the position (must not change until the picker is done with it,
+     *            apart from moves that are made and unmade again)
+     * @param tableMove the transposition table's move, or Move.NONE
+     * @param killer1 the first killer move for this ply, or Move.NONE
+     * @param killer2 the second killer move for this ply, or Move.NONE
+     * @param counter the countermove to the previous move, or Move.NONE
+     */
+    public void init(Position pos, int tableMove, int killer1, int killer2, int counter) {
+        this.pos = pos;
+        this.tableMove = tableMove;
+        this.killer1 = killer1 != tableMove ? killer1 : Move.NONE;
+        this.killer2 = killer2 != tableMove && killer2 != killer1 ? killer2 : Move.NONE;
+        this.counter = counter != tableMove && counter != killer1 && counter != killer2
+                ? counter : Move.NONE;
+        quiescence = false;
+        stage = TABLE;
+        count = 0;
+        next = 0;
+    }
+
+    /**
+     * Gets ready to hand out the moves a quiescence search looks at in a
+     * position: captures, best first, then promotions and possibly checking
+     * drops
+     *
+     * @param pos the position
+     * @param checks whether to hand out drops that give check as well
+     */
+    public void initQuiescence(Position pos, boolean checks) {
+        this.pos = pos;
+        this.checks = checks;
+        tableMove = killer1 = killer2 = counter = Move.NONE;
+        quiescence = true;
+        stage = GENERATE_CAPTURES;
+        count = 0;
+        next = 0;
+    }
+
+    /**
+     * Returns the next move to try
+     *
+     * @return a legal move, or Move.NONE once every move has been handed out
+     */
+    public int next() {
+        while (true) {
+            switch (stage) {
+                case TABLE:
+                    stage++;
+                    if (playable(tableMove)) {
+                        return tableMove;
+                    }
+                    tableMove = Move.NONE;
+                    break;
+
+                case GENERATE_CAPTURES:
+                    count = generator.generateLegalCaptures(pos, moves, 0);
+                    next = 0;
+                    for (int i = 0; i < count; i++) {
+                        scores[i] = captureScore(moves[i]);
+                    }
+                    stage++;
+                    break;
+
+                case CAPTURES:
+                    while (next < count) {
+                        int move = pickBest();
+                        if (move != tableMove) {
+                            return move;
+                        }
+                    }
+                    stage = quiescence ? GENERATE_TACTICAL : KILLER_1;
+                    break;
+
+                case KILLER_1:
+                    stage++;
+                    if (playableQuiet(killer1)) {
+                        return killer1;
+                    }
+                    killer1 = Move.NONE;
+                    break;
+
+                case KILLER_2:
+                    stage++;
+                    if (playableQuiet(killer2)) {
+                        return killer2;
+                    }
+                    killer2 = Move.NONE;
+                    break;
+
+                case COUNTER:
+                    stage++;
+                    if (playableQuiet(counter)) {
+                        return counter;
+                    }
+                    counter = Move.NONE;
+                    break;
+
+                case GENERATE_QUIETS:
+                    count = generator.generateLegalQuiets(pos, moves, 0);
+                    next = 0;
+                    int[] scoresForSide = history[pos.sideToMove];
+                    for (int i = 0; i < count; i++) {
+                        scores[i] = scoresForSide[historyIndex(moves[i])];
+                    }
+                    stage++;
+                    break;
+
+                case QUIETS:
+                    while (next < count) {
+                        int move = pickBest();
+                        if (move != tableMove && move != killer1 && move != killer2
+                                && move != counter) {
+                            return move;
+                        }
+                    }
+                    stage++;
+                    break;
+
+                case GENERATE_TACTICAL:
+                    count = generator.generateLegalPromotions(pos, moves, 0);
+                    if (checks) {
+                        count = generator.generateLegalCheckingDrops(pos, moves, count);
+                    }
+                    next = 0;
+                    stage++;
+                    break;
+
+                case TACTICAL:
+                    if (next < count) {
+                        return moves[next++];
+                    }
+                    stage = DONE;
+                    break;
+
+                default:
+                    return Move.NONE;
+            }
+        }
+    }
+
+    /**
+     * Moves the best scoring move left to the front of what's left and hands
+     * it out (a selection sort done one step at a time, so moves that are
+     * never asked for are never sorted)
+     *
+     * @return the best remaining move
+     */
+    private int pickBest() {
+        int best = next;
+        for (int i = next + 1; i < count; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        int move = moves[best];
+        moves[best] = moves[next];
+        scores[best] = scores[next];
+        next++;
+        return move;
+    }
+
+    /**
+     * Scores a capture by what it takes first and what it takes with second
+     *
+     * @param move the capture
+     * @return the score, higher for better captures
+     */
+    private int captureScore(int move) {
+        int victim = Pieces.type(pos.board[Move.to(move)]);
+        int attacker = Move.type(move);
+        int score = Evaluation.VALUE[victim] * 16 - Evaluation.VALUE[attacker] / 16;
+        if (Move.isPromote(move)) {
+            score += (Evaluation.VALUE[Pieces.promote(attacker)] - Evaluation.VALUE[attacker]) * 16;
+        }
+        return score;
+    }
+
+    /**
+     * Checks that a move remembered from elsewhere is legal here
+     *
+     * @param move the move
+     * @return true if it may be played
+     */
+    private boolean playable(int move) {
+        return move != Move.NONE && generator.isPseudoLegal(pos, move)
+                && generator.isLegal(pos, move, pos.sideToMove);
+    }
+
+    /**
+     * Checks that a move remembered from elsewhere is legal here and doesn't
+     * capture (a capture would have been handed out already)
+     *
+     * @param move the move
+     * @return true if it may be played as a quiet move
+     */
+    private boolean playableQuiet(int move) {
+        return move != Move.NONE && pos.board[Move.to(move)] == Pieces.EMPTY && playable(move);
+    }
+
+    /**
+     * Finds the slot a move uses in the history and countermove tables
+     *
+     * @param move the move
+     * @return the moving type (plus 16 for drops) times 81 plus the destination
+     */
+    public static int historyIndex(int move) {
+        return ((Move.isDrop(move) ? 16 : 0) + Move.type(move)) * Bitboards.SQUARES + Move.to(move);
+    }
+}
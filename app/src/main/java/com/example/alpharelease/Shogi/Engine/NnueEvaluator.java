@@ -0,0 +1,464 @@
+package com.example.alpharelease.Shogi.Engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Efficiently updatable neural network evaluation (NNUE), in plain Java with
+ * integer weights.
+ *
+ * The inputs are king-relative piece squares: for each side's point of view,
+ * one feature for every (own king square, piece, square) and one for every
+ * (own king square, hand piece, how many of it), with the board turned around
+ * for side 1 so both halves share the same weights. Only a few dozen of the
+ * ~177,000 features are on at a time, and a move changes only two or three,
+ * so the first layer (int16 weights) is kept as a running sum per position
+ * (see {@link Accumulator}) instead of being multiplied out at every leaf.
+ *
+ * The rest of the network is small: both halves, side to move first, are
+ * clipped to 0..127 and fed through a hidden layer of L1_SIZE int8 weights,
+ * clipped again and summed by int8 output weights into the score. The hidden
+ * weights are stored input by input, so the inputs clipped to zero (usually
+ * most of them) are skipped.
+ *
+ * A network file is big-endian:
+ *      long magic "SHOGINN1", int version, int hidden size, int L1_SIZE
+ *      short feature biases[hidden], short feature weights[FEATURES][hidden]
+ *      int hidden biases[L1_SIZE], byte hidden weights[2 * hidden][L1_SIZE]
+ *      int output bias, byte output weights[L1_SIZE]
+ * Time evaluations per second against the hand-written evaluation with
+ *      NnueEvaluator [hidden size | network file] [positions]
+ */
+
+public class NnueEvaluator implements Evaluator {
+
+    public static final long MAGIC = 0x53484F47494E4E31L; // "SHOGINN1"
+    public static final int VERSION = 1;
+    public static final int L1_SIZE = 32;
+
+    // Biggest first layer half a network file may have: at 128 the feature
+    // weights already take about 42 MB, more than that doesn't fit on a phone
+    public static final int MAX_HIDDEN = 128;
+    static final int HEADER_BYTES = 8 + 4 + 4 + 4;
+
+    // Feature layout for one king square: every piece type but the king, for
+    // both sides, on every square, then both sides' hand counts
+    static final int BOARD_TYPES = Pieces.TYPES - 2;
+    static final int BOARD_FEATURES = 2 * BOARD_TYPES * Bitboards.SQUARES;
+    static final int[] HAND_MAX = {0, 18, 4, 4, 4, 2, 2, 4}; // indexed by type
+    static final int[] HAND_OFFSET = new int[Pieces.HAND_TYPES];
+    static final int HAND_SLOTS;
+    public static final int PIECE_FEATURES;
+    public static final int FEATURES;
+
+    static {
+        int slots = 0;
+        for (int type = Pieces.PAWN; type < Pieces.HAND_TYPES; type++) {
+            HAND_OFFSET[type] = slots;
+            slots += HAND_MAX[type];
+        }
+        HAND_SLOTS = slots;
+        PIECE_FEATURES = BOARD_FEATURES + 2 * HAND_SLOTS;
+        FEATURES = Bitboards.SQUARES * PIECE_FEATURES;
+    }
+
+    static final int ACTIVATION_MAX = 127;
+    static final int L1_SHIFT = 6;
+    static final int OUTPUT_SCALE = 16;
+    static final int MAX_SCORE = Search.MATE / 2; // never confused with a mate score
+
+    private final int hidden;
+    private final short[] featureBias;
+    private final short[] featureWeights;
+    private final int[] l1Bias = new int[L1_SIZE];
+    private final byte[] l1Weights;
+    private int outputBias;
+    private final byte[] outputWeights = new byte[L1_SIZE];
+
+    /**
+     * Constructor for a network with every weight zero
+     *
+     * @param hidden the size of each half of the first layer
+     */
+    private NnueEvaluator(int hidden) {
+        this.hidden = hidden;
+        featureBias = new short[hidden];
+        featureWeights = new short[FEATURES * hidden];
+        l1Weights = new byte[L1_SIZE * 2 * hidden];
+    }
+
+    /**
+     * Works out how long a network file with the given hidden size is
+     *
+     * @param hidden the size of each half of the first layer
+     * @return the file size in bytes
+     */
+    public static long fileSize(int hidden) {
+        return HEADER_BYTES + 2L * hidden + 2L * FEATURES * hidden
+                + 4L * L1_SIZE + 2L * hidden * L1_SIZE + 4 + L1_SIZE;
+    }
+
+    /**
+     * Reads a network file, checking its size against its header first
+     *
+     * @param file the network file
+     * @return the network
+     * @throws IOException if the file can't be read, isn't a network or is
+     *                     too big to load
+     */
+    public static NnueEvaluator load(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return load(in, file.length());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads a network
+     *
+     * @param in the network file (not closed)
+     * @return the network
+     * @throws IOException if the stream can't be read, isn't a network or is
+     *                     too big to load
+     */
+    public static NnueEvaluator load(InputStream in) throws IOException {
+        return load(in, -1);
+    }
+
+    /**
+     * Reads a network, turning down any that won't fit in memory before
+     * allocating its weights
+     *
+     * @param in the network file (not closed)
+     * @param length the length of the file, or -1 if it isn't known
+     * @return the network
+     * @throws IOException if the stream can't be read, isn't a network or is
+     *                     too big to load
+     */
+    public static NnueEvaluator load(InputStream in, long length) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readLong() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Not a shogi network");
+        }
+        int hidden = data.readInt();
+        if (hidden <= 0 || hidden > MAX_HIDDEN || data.readInt() != L1_SIZE) {
+            throw new IOException("Unsupported network shape");
+        }
+        if (length >= 0 && length != fileSize(hidden)) {
+            throw new IOException("Network file is " + length + " bytes, its header says "
+                    + fileSize(hidden));
+        }
+        if (fileSize(hidden) > Runtime.getRuntime().maxMemory() / 4) {
+            throw new IOException("Network too big for this device");
+        }
+        NnueEvaluator net = new NnueEvaluator(hidden);
+        readShorts(data, net.featureBias);
+        readShorts(data, net.featureWeights);
+        for (int i = 0; i < L1_SIZE; i++) {
+            net.l1Bias[i] = data.readInt();
+        }
+        data.readFully(net.l1Weights);
+        net.outputBias = data.readInt();
+        data.readFully(net.outputWeights);
+        return net;
+    }
+
+    /**
+     * Reads a whole array of big-endian shorts, a block at a time
+     *
+     * @param data the stream
+     * @param out the array to fill
+     * @throws IOException if the stream ends early
+     */
+    private static void readShorts(DataInputStream data, short[] out) throws IOException {
+        byte[] block = new byte[1 << 16];
+        for (int i = 0; i < out.length; ) {
+            int n = Math.min(block.length / 2, out.length - i);
+            data.readFully(block, 0, 2 * n);
+            ByteBuffer.wrap(block, 0, 2 * n).asShortBuffer().get(out, i, n);
+            i += n;
+        }
+    }
+
+    /**
+     * Writes the network out in the format load() reads
+     *
+     * @param out where to write (not closed)
+     * @throws IOException if writing fails
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeLong(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(hidden);
+        data.writeInt(L1_SIZE);
+        for (short weight : featureBias) {
+            data.writeShort(weight);
+        }
+        for (short weight : featureWeights) {
+            data.writeShort(weight);
+        }
+        for (int bias : l1Bias) {
+            data.writeInt(bias);
+        }
+        data.write(l1Weights);
+        data.writeInt(outputBias);
+        data.write(outputWeights);
+        data.flush();
+    }
+
+    /**
+     * Makes a network of small random weights, for benchmarks and tests (it
+     * plays no better than chance)
+     *
+     * @param hidden the size of each half of the first layer
+     * @param seed the random seed
+     * @return the network
+     */
+    public static NnueEvaluator random(int hidden, long seed) {
+        Random random = new Random(seed);
+        NnueEvaluator net = new NnueEvaluator(hidden);
+        for (int i = 0; i < hidden; i++) {
+            net.featureBias[i] = (short) random.nextInt(64);
+        }
+        for (int i = 0; i < net.featureWeights.length; i++) {
+            net.featureWeights[i] = (short) (random.nextInt(17) - 8);
+        }
+        for (int i = 0; i < L1_SIZE; i++) {
+            net.l1Bias[i] = random.nextInt(256) - 128;
+            net.outputWeights[i] = (byte) (random.nextInt(129) - 64);
+        }
+        random.nextBytes(net.l1Weights);
+        net.outputBias = 0;
+        return net;
+    }
+
+    public int getHidden() {
+        return hidden;
+    }
+
+    /**
+     * Finds the feature of a piece on the board
+     *
+     * @param perspective the side whose half of the first layer it's for
+     * @param king that side's king square
+     * @param code the piece code (not a king)
+     * @param sq the piece's square
+     * @return the feature number
+     */
+    static int boardFeature(int perspective, int king, int code, int sq) {
+        int type = Pieces.type(code);
+        int relative = Pieces.side(code) == perspective ? 0 : 1;
+        if (perspective == 1) {
+            king = Bitboards.SQUARES - 1 - king;
+            sq = Bitboards.SQUARES - 1 - sq;
+        }
+        int index = type < Pieces.KING ? type - 1 : type - 2;
+        return king * PIECE_FEATURES + (relative * BOARD_TYPES + index) * Bitboards.SQUARES + sq;
+    }
+
+    /**
+     * Finds the feature of a piece in hand
+     *
+     * @param perspective the side whose half of the first layer it's for
+     * @param king that side's king square
+     * @param side whose hand the piece is in
+     * @param type the piece type
+     * @param count which of the pieces of that type it is (0 for the first)
+     * @return the feature number, or -1 if there is none for that many pieces
+     */
+    static int handFeature(int perspective, int king, int side, int type, int count) {
+        if (count >= HAND_MAX[type]) {
+            return -1;
+        }
+        if (perspective == 1) {
+            king = Bitboards.SQUARES - 1 - king;
+        }
+        int relative = side == perspective ? 0 : 1;
+        return king * PIECE_FEATURES + BOARD_FEATURES + relative * HAND_SLOTS
+                + HAND_OFFSET[type] + count;
+    }
+
+    /**
+     * Adds a feature's weights to half of the first layer, or takes them away
+     *
+     * @param values the half
+     * @param feature the feature number
+     * @param sign 1 to add, -1 to take away
+     */
+    void add(short[] values, int feature, int sign) {
+        int offset = feature * hidden;
+        if (sign > 0) {
+            for (int i = 0; i < hidden; i++) {
+                values[i] += featureWeights[offset + i];
+            }
+        } else {
+            for (int i = 0; i < hidden; i++) {
+                values[i] -= featureWeights[offset + i];
+            }
+        }
+    }
+
+    /**
+     * Works out half of the first layer from scratch
+     *
+     * @param pos the position (the perspective's king must be on the board)
+     * @param perspective the side whose half it is
+     * @param values where to put it
+     */
+    void refresh(Position pos, int perspective, short[] values) {
+        System.arraycopy(featureBias, 0, values, 0, hidden);
+        int king = pos.kingSquare[perspective];
+        for (int sq = 0; sq < Bitboards.SQUARES; sq++) {
+            int code = pos.board[sq];
+            if (code != Pieces.EMPTY && Pieces.type(code) != Pieces.KING) {
+                add(values, boardFeature(perspective, king, code, sq), 1);
+            }
+        }
+        for (int side = 0; side < 2; side++) {
+            for (int type = Pieces.PAWN; type < Pieces.HAND_TYPES; type++) {
+                int count = Math.min(pos.hand[side][type], HAND_MAX[type]);
+                for (int i = 0; i < count; i++) {
+                    add(values, handFeature(perspective, king, side, type, i), 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Attaches a fresh accumulator to the root, so the search's moves keep
+     * it up to date
+     *
+     * @param pos the root of a search
+     */
+    @Override
+    public void prepare(Position pos) {
+        if (pos.accumulator == null || pos.accumulator.net != this) {
+            pos.accumulator = new Accumulator(this);
+        }
+    }
+
+    /**
+     * Scores a position for the side to move
+     *
+     * @param pos the position
+     * @return the score, positive when the side to move is ahead
+     */
+    @Override
+    public int evaluate(Position pos) {
+        if (pos.kingSquare[0] < 0 || pos.kingSquare[1] < 0) {
+            return Evaluation.evaluate(pos); //The features are counted from the kings
+        }
+        prepare(pos);
+        Accumulator accumulator = pos.accumulator;
+        accumulator.refresh(pos);
+
+        // Side to move's half first, clipped to 0..127
+        int[] sums = accumulator.sums;
+        System.arraycopy(l1Bias, 0, sums, 0, L1_SIZE);
+        hiddenLayer(accumulator.values[pos.sideToMove], 0, sums);
+        hiddenLayer(accumulator.values[1 - pos.sideToMove], hidden, sums);
+
+        int output = outputBias;
+        for (int j = 0; j < L1_SIZE; j++) {
+            output += outputWeights[j] * Math.max(0, Math.min(ACTIVATION_MAX, sums[j] >> L1_SHIFT));
+        }
+        return Math.max(-MAX_SCORE, Math.min(MAX_SCORE, output / OUTPUT_SCALE));
+    }
+
+    /**
+     * Adds one half of the first layer, clipped, into the hidden layer
+     *
+     * @param values the half
+     * @param first the number of its first input
+     * @param sums the hidden layer's running sums
+     */
+    private void hiddenLayer(short[] values, int first, int[] sums) {
+        for (int i = 0; i < hidden; i++) {
+            int input = Math.min(ACTIVATION_MAX, values[i]);
+            if (input > 0) {
+                int row = (first + i) * L1_SIZE;
+                for (int j = 0; j < L1_SIZE; j++) {
+                    sums[j] += l1Weights[row + j] * input;
+                }
+            }
+        }
+    }
+
+    /**
+     * Times an evaluator the way a search uses it: walking random games and
+     * scoring every position one move away with makeMove and unmakeMove
+     *
+     * @param evaluator the evaluator
+     * @param positions how many evaluations to time
+     * @param seed the seed for the random games
+     * @return evaluations per second
+     */
+    public static long benchmark(Evaluator evaluator, int positions, long seed) {
+        Random random = new Random(seed);
+        MoveGenerator generator = new MoveGenerator();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        Position pos = Sfen.parse(Sfen.START);
+        evaluator.prepare(pos);
+        long checksum = 0;
+        int done = 0;
+        long start = System.nanoTime();
+        while (done < positions) {
+            int n = generator.generateLegal(pos, moves);
+            if (n == 0 || pos.undoDepth() >= 200) {
+                pos = Sfen.parse(Sfen.START);
+                evaluator.prepare(pos);
+                continue;
+            }
+            for (int i = 0; i < n && done < positions; i++, done++) {
+                pos.makeMove(moves[i]);
+                checksum += evaluator.evaluate(pos);
+                pos.unmakeMove();
+            }
+            pos.makeMove(moves[random.nextInt(n)]);
+        }
+        long nanos = Math.max(System.nanoTime() - start, 1);
+        if (checksum == Long.MIN_VALUE) {
+            System.out.println(); //Keeps the scores from being optimized away
+        }
+        return positions * 1000000000L / nanos;
+    }
+
+    /**
+     * Command line entry point for the evaluation benchmark
+     *
+     * @param args a hidden size for a random network (64 by default) or a
+     *             network file, then optionally how many evaluations to time
+     * @throws IOException if the network file can't be read
+     */
+    public static void main(String[] args) throws IOException {
+        NnueEvaluator net;
+        if (args.length > 0 && !args[0].matches("\\d+")) {
+            net = load(new File(args[0]));
+        } else {
+            net = random(args.length > 0 ? Integer.parseInt(args[0]) : 64, 1);
+        }
+        int positions = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+        PrintStream out = System.out;
+        for (int round = 0; round < 2; round++) { //The first round warms up the JIT
+            long classical = benchmark(Evaluator.CLASSICAL, positions, 7);
+            long nnue = benchmark(net, positions, 7);
+            if (round == 1) {
+                out.println("classical       " + classical + " evals/s");
+                out.println("nnue (" + net.getHidden() + "x2-" + L1_SIZE + "-1) " + nnue + " evals/s");
+            }
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.example.alpharelease.Shogi.Engine;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Opening book: a sorted binary file of (position key, move, weight, count)
+ * records, read straight out of a memory-mapped buffer.
+ *
+ * The file is a 16 byte header ("SHOGIBK1", a version int and the record
+ * count) followed by 16 byte records, big-endian:
+ *      long key     Zobrist key of the position (see {@link Zobrist})
+ *      int move     the move (see {@link Move})
+ *      short weight how often to pick the move, relative to the others
+ *      short count  how many games in the source played it
+ * sorted by key, so all the moves of a position sit together and are found
+ * by a binary search. Mapping the file means only the pages a lookup touches
+ * are ever read in, and a lookup allocates nothing.
+ *
+ * Keys depend on the fixed Zobrist seed, so a book has to be rebuilt if the
+ * keys ever change. Books are built from text files of USI move lines with
+ *      OpeningBook build lines.txt book.bin
+ * and looked into with
+ *      OpeningBook probe book.bin [sfen]
+ */
+
+public final class OpeningBook {
+
+    public static final long MAGIC = 0x53484F4749424B31L; // "SHOGIBK1"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+    public static final int RECORD_BYTES = 16;
+
+    private final ByteBuffer buffer;
+    private final int size;
+
+    /**
+     * Constructor for a book read from a buffer holding a whole book file
+     *
+     * @param buffer the book (read with absolute gets only, never changed)
+     * @throws IOException if the buffer doesn't hold a book
+     */
+    public OpeningBook(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getLong(0) != MAGIC
+                || buffer.getInt(8) != VERSION) {
+            throw new IOException("Not an opening book");
+        }
+        size = buffer.getInt(12);
+        if (size < 0 || (long) HEADER_BYTES + (long) size * RECORD_BYTES > buffer.capacity()) {
+            throw new IOException("Opening book is cut short");
+        }
+        this.buffer = buffer;
+    }
+
+    /**
+     * Memory-maps a book file
+     *
+     * @param file the book file
+     * @return the book
+     * @throws IOException if the file can't be read or isn't a book
+     */
+    public static OpeningBook open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            // The mapping stays valid after the file is closed
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long keyAt(int index) {
+        return buffer.getLong(HEADER_BYTES + index * RECORD_BYTES);
+    }
+
+    public int moveAt(int index) {
+        return buffer.getInt(HEADER_BYTES + index * RECORD_BYTES + 8);
+    }
+
+    public int weightAt(int index) {
+        return buffer.getShort(HEADER_BYTES + index * RECORD_BYTES + 12) & 0xFFFF;
+    }
+
+    public int countAt(int index) {
+        return buffer.getShort(HEADER_BYTES + index * RECORD_BYTES + 14) & 0xFFFF;
+    }
+
+    /**
+     * Finds the first record of a position
+     *
+     * @param key the position's Zobrist key
+     * @return the index of its first record, or -1 if the book doesn't have it
+     */
+    public int find(long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keyAt(mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < size && keyAt(low) == key ? low : -1;
+    }
+
+    /**
+     * Picks a book move for a position at random, each move as likely as its
+     * weight says
+     *
+     * @param key the position's Zobrist key
+     * @param random the random numbers to pick with
+     * @return the move, or Move.NONE if the position isn't in the book
+     */
+    public int choose(long key, Random random) {
+        int first = find(key);
+        if (first < 0) {
+            return Move.NONE;
+        }
+        int total = 0;
+        int end = first;
+        while (end < size && keyAt(end) == key) {
+            total += weightAt(end++);
+        }
+        if (total == 0) {
+            return Move.NONE;
+        }
+        int roll = random.nextInt(total);
+        for (int i = first; i < end; i++) {
+            roll -= weightAt(i);
+            if (roll < 0) {
+                return moveAt(i);
+            }
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * Collects book records in memory and writes them out as a sorted book
+     * file. Records for the same position and move are merged.
+     */
+    public static class Builder {
+
+        private final Map<Long, Map<Integer, int[]>> entries = new HashMap<Long, Map<Integer, int[]>>();
+        private final MoveGenerator generator = new MoveGenerator();
+        private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+        /**
+         * Adds a move to the book
+         *
+         * @param key the Zobrist key of the position it is played in
+         * @param move the move
+         * @param weight the weight to add to the move
+         */
+        public void add(long key, int move, int weight) {
+            Map<Integer, int[]> position = entries.get(key);
+            if (position == null) {
+                position = new HashMap<Integer, int[]>();
+                entries.put(key, position);
+            }
+            int[] record = position.get(move);
+            if (record == null) {
+                record = new int[2];
+                position.put(move, record);
+            }
+            record[0] = Math.min(record[0] + weight, 0xFFFF);
+            record[1] = Math.min(record[1] + 1, 0xFFFF);
+        }
+
+        /**
+         * Adds every move of a line of play from the starting position. The
+         * first player is picked at random in this game, so the line is
+         * also added turned around, for side 1 moving first.
+         *
+         * @param line USI moves separated by spaces, optionally after a
+         *             number giving the line's weight (1 if left out)
+         */
+        public void addLine(String line) {
+            String[] tokens = line.trim().split("\\s+");
+            int weight = 1;
+            int start = 0;
+            if (tokens.length > 0 && tokens[0].matches("\\d+")) {
+                weight = Integer.parseInt(tokens[0]);
+                start = 1;
+            }
+            for (int side = 0; side < 2; side++) {
+                Position pos = Sfen.parse(Sfen.START);
+                pos.setSideToMove(side);
+                for (int i = start; i < tokens.length; i++) {
+                    int move = parse(pos, tokens[i], side == 1);
+                    if (move == Move.NONE) {
+                        throw new IllegalArgumentException("Illegal move " + tokens[i] + " in: " + line);
+                    }
+                    add(pos.getKey(), move, weight);
+                    pos.makeMove(move);
+                }
+            }
+        }
+
+        /**
+         * Finds the legal move a USI string names
+         *
+         * @param pos the position the move is played in
+         * @param usi the move in USI notation, as seen by the side moving first
+         * @param flipped whether to turn the move around for side 1 moving first
+         * @return the move, or Move.NONE if no legal move matches
+         */
+        private int parse(Position pos, String usi, boolean flipped) {
+            int n = generator.generateLegal(pos, moves);
+            for (int i = 0; i < n; i++) {
+                if (Move.toString(flipped ? flip(moves[i]) : moves[i]).equals(usi)) {
+                    return moves[i];
+                }
+            }
+            return Move.NONE;
+        }
+
+        /**
+         * Turns a move around to the other end of the board
+         *
+         * @param move the move
+         * @return the same move played by the other side from the other end
+         */
+        private static int flip(int move) {
+            int last = Bitboards.SQUARES - 1;
+            if (Move.isDrop(move)) {
+                return Move.makeDrop(last - Move.to(move), Move.type(move));
+            }
+            return Move.make(last - Move.from(move), last - Move.to(move), Move.type(move),
+                    Move.isPromote(move));
+        }
+
+        /**
+         * Writes the book out, sorted by key and, within a position, by weight
+         *
+         * @param out where to write the book (not closed)
+         * @throws IOException if writing fails
+         */
+        public void write(OutputStream out) throws IOException {
+            ArrayList<Long> keys = new ArrayList<Long>(entries.keySet());
+            Collections.sort(keys);
+            int count = 0;
+            for (Long key : keys) {
+                count += entries.get(key).size();
+            }
+
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeLong(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(count);
+            for (Long key : keys) {
+                ArrayList<Map.Entry<Integer, int[]>> records =
+                        new ArrayList<Map.Entry<Integer, int[]>>(entries.get(key).entrySet());
+                Collections.sort(records, (a, b) -> b.getValue()[0] - a.getValue()[0]);
+                for (Map.Entry<Integer, int[]> record : records) {
+                    data.writeLong(key);
+                    data.writeInt(record.getKey());
+                    data.writeShort(record.getValue()[0]);
+                    data.writeShort(record.getValue()[1]);
+                }
+            }
+            data.flush();
+        }
+    }
+
+    /**
+     * Command line entry point for building a book or looking into one
+     *
+     * @param args "build lines.txt book.bin" or "probe book.bin [sfen]"
+     * @throws IOException if a file can't be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("build")) {
+            Builder builder = new Builder();
+            BufferedReader in = new BufferedReader(new FileReader(args[1]));
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (!line.trim().isEmpty() && !line.trim().startsWith("#")) {
+                        builder.addLine(line);
+                    }
+                }
+            } finally {
+                in.close();
+            }
+            OutputStream out = new FileOutputStream(args[2]);
+            try {
+                builder.write(out);
+            } finally {
+                out.close();
+            }
+            System.out.println("Wrote " + open(new File(args[2])).size() + " records");
+        } else if (args.length >= 2 && args[0].equals("probe")) {
+            OpeningBook book = open(new File(args[1]));
+            StringBuilder sfen = new StringBuilder();
+            for (int i = 2; i < args.length; i++) {
+                sfen.append(args[i]).append(' ');
+            }
+            Position pos = Sfen.parse(sfen.length() == 0 ? Sfen.START : sfen.toString());
+            int first = book.find(pos.getKey());
+            if (first < 0) {
+                System.out.println("Not in book");
+            }
+            for (int i = first; i >= 0 && i < book.size() && book.keyAt(i) == pos.getKey(); i++) {
+                System.out.println(Move.toString(book.moveAt(i)) + " weight " + book.weightAt(i)
+                        + " count " + book.countAt(i));
+            }
+        } else {
+            System.out.println("usage: OpeningBook build lines.txt book.bin | probe book.bin [sfen]");
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.example.alpharelease.Shogi.Engine;
+
+import java.io.PrintStream;
+
+/**
+ * Lazy SMP: several threads search the same root at once, sharing one
+ * {@link TranspositionTable}.
+ *
+ * The threads don't split up the tree or talk to each other. Each one runs
+ * its own iterative deepening search on its own copy of the position; what
+ * one thread stores in the table (scores, cutoffs and best moves) is found by
+ * the others and saves them the work. The helpers are nudged onto different
+ * move orders and depths (see Search.search) so they keep filling the table
+ * with positions the main thread is about to need. When the main thread
+ * finishes, the helpers are stopped and the main thread's move is played.
+ *
+ * The table is read and written without locks; see TranspositionTable for
+ * why torn entries are harmless.
+ *
+ * While the opponent thinks, the search can ponder: it guesses the reply
+ * from the table and searches the position after it in the background, with
+ * no time limit of its own. If the guess is played, the running search is
+ * simply given its usual time from then on (a ponder hit); if not, it is
+ * stopped and the real search starts with the table already warm. When there
+ * is no guess, the position after our own move is searched instead, which
+ * warms the table for every reply.
+ *
+ * Run the time to depth benchmark from the command line with
+ *      ParallelSearch depth [maxThreads] [sfen]
+ */
+
+public class ParallelSearch {
+
+    private final Search[] searches;
+    private final MoveGenerator generator = new MoveGenerator();
+    private long elapsed;
+
+    private Thread ponderThread;
+    private volatile int ponderMove;
+    private long ponderKey;
+
+    /**
+     * Constructor for a parallel search
+     *
+     * @param threads how many threads search at once (1 runs on the caller only)
+     * @param table the table shared by all the threads
+     */
+    public ParallelSearch(int threads, TranspositionTable table) {
+        this(threads, table, Evaluator.CLASSICAL);
+    }
+
+    /**
+     * Constructor for a parallel search with its own evaluation
+     *
+     * @param threads how many threads search at once (1 runs on the caller only)
+     * @param table the table shared by all the threads
+     * @param evaluator scores the positions at the leaves (shared by all the
+     *                  threads, so it must not keep state of its own)
+     */
+    public ParallelSearch(int threads, TranspositionTable table, Evaluator evaluator) {
+        searches = new Search[Math.max(threads, 1)];
+        for (int i = 0; i < searches.length; i++) {
+            searches[i] = new Search(table, evaluator);
+        }
+    }
+
+    /**
+     * Searches a position with all the threads and picks the best move for
+     * the side to move. The main search runs on the calling thread.
+     *
+     * @param root the position (left as it was found)
+     * @param millis the time budget in milliseconds
+     * @param maxDepth the deepest iteration to try
+     * @return the best move found, or Move.NONE if there are no legal moves
+     */
+    public int think(Position root, long millis, int maxDepth) {
+        prepare(millis);
+        return run(root, maxDepth);
+    }
+
+    /**
+     * Gets every thread ready for a new search
+     *
+     * @param millis the time budget in milliseconds
+     */
+    private void prepare(long millis) {
+        searches[0].getTable().newSearch();
+        for (Search search : searches) {
+            search.reset();
+            search.setTimeLimit(millis);
+        }
+    }
+
+    /**
+     * Runs a prepared search: the helpers on threads of their own and the
+     * main search on the calling thread
+     *
+     * @param root the position (left as it was found)
+     * @param maxDepth the deepest iteration to try
+     * @return the main search's best move
+     */
+    private int run(Position root, final int maxDepth) {
+        long start = System.currentTimeMillis();
+        Thread[] helpers = new Thread[searches.length - 1];
+        for (int i = 1; i < searches.length; i++) {
+            final Search helper = searches[i];
+            final Position copy = new Position(root);
+            final int number = i;
+            helpers[i - 1] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    helper.search(copy, maxDepth, number);
+                }
+            }, "search-helper-" + i);
+            helpers[i - 1].start();
+        }
+
+        int move = searches[0].search(root, maxDepth, 0);
+
+        for (int i = 1; i < searches.length; i++) {
+            searches[i].stop();
+        }
+        for (Thread helper : helpers) {
+            try {
+                helper.join();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        elapsed = System.currentTimeMillis() - start;
+        return move;
+    }
+
+    /**
+     * Starts pondering in the background after our own move, stopping any
+     * earlier ponder first
+     *
+     * @param pos the position after our move, with the opponent to move
+     * @param millis the longest time to ponder for, in case no move ever comes
+     * @param maxDepth the deepest iteration to try
+     */
+    public void ponder(Position pos, long millis, final int maxDepth) {
+        stopPondering();
+        final Position copy = new Position(pos);
+        int reply = TranspositionTable.move(searches[0].getTable().probe(pos.getKey()));
+        if (reply != Move.NONE && generator.isPseudoLegal(copy, reply)
+                && generator.isLegal(copy, reply, copy.getSideToMove())) {
+            copy.makeMove(reply);
+        }
+        ponderKey = copy.getKey();
+        ponderMove = Move.NONE;
+        prepare(millis);
+        ponderThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ponderMove = ParallelSearch.this.run(copy, maxDepth);
+            }
+        }, "search-ponder");
+        ponderThread.start();
+    }
+
+    /**
+     * Checks whether the search is pondering a position
+     *
+     * @param key the position's Zobrist key
+     * @return true if the position is the one being pondered
+     */
+    public boolean isPondering(long key) {
+        return ponderThread != null && ponderKey == key;
+    }
+
+    /**
+     * Turns the ponder into a normal search once the expected move has been
+     * played, and waits for it to finish
+     *
+     * @param millis the time budget in milliseconds, counted from now
+     * @return the best move found
+     */
+    public int ponderHit(long millis) {
+        searches[0].setTimeLimit(millis);
+        joinPonder();
+        return ponderMove;
+    }
+
+    /**
+     * Stops pondering, if the search is, and waits for its threads to finish
+     */
+    public void stopPondering() {
+        if (ponderThread != null) {
+            stop();
+            joinPonder();
+        }
+    }
+
+    /**
+     * Waits for the ponder thread to finish
+     */
+    private void joinPonder() {
+        try {
+            ponderThread.join();
+        } catch (InterruptedException ie) {
+            stop(); //Don't leave it running with nobody waiting for it
+            Thread.currentThread().interrupt();
+        }
+        ponderThread = null;
+    }
+
+    /**
+     * Asks a running search to finish as soon as possible (safe to call from
+     * another thread)
+     */
+    public void stop() {
+        for (Search search : searches) {
+            search.stop();
+        }
+    }
+
+    public int getThreads() {
+        return searches.length;
+    }
+
+    /**
+     * Total nodes searched by all the threads in the last search
+     *
+     * @return the node count
+     */
+    public long getNodes() {
+        long nodes = 0;
+        for (Search search : searches) {
+            nodes += search.getNodes();
+        }
+        return nodes;
+    }
+
+    /**
+     * Share of all the threads' cutoffs in the last search that came from
+     * the first move tried (see Search.firstMoveCutoffRate)
+     *
+     * @return the share, between 0 and 1
+     */
+    public double firstMoveCutoffRate() {
+        long cutoffs = 0;
+        long firstMoveCutoffs = 0;
+        for (Search search : searches) {
+            cutoffs += search.getCutoffs();
+            firstMoveCutoffs += search.getFirstMoveCutoffs();
+        }
+        return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    public int getDepth() {
+        return searches[0].getDepth();
+    }
+
+    public int getScore() {
+        return searches[0].getScore();
+    }
+
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * Combined speed of all the threads in the last search
+     *
+     * @return nodes searched per second
+     */
+    public long nodesPerSecond() {
+        return getNodes() * 1000 / Math.max(elapsed, 1);
+    }
+
+    /**
+     * Times a fixed depth search with 1, 2, 4, ... threads (each with a fresh
+     * table) and prints how much faster each reaches the depth than one thread
+     *
+     * @param pos the position to search
+     * @param depth the depth every run searches to
+     * @param maxThreads the most threads to try
+     * @param hashMb the size of each run's table
+     * @param out where to print the results
+     */
+    public static void benchmark(Position pos, int depth, int maxThreads, int hashMb,
+                                 PrintStream out) {
+        long single = 0;
+        out.println("threads  depth  move      nodes        ms    nodes/s  speedup  first cut");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ParallelSearch search = new ParallelSearch(threads, new TranspositionTable(hashMb));
+            int move = search.think(new Position(pos), Long.MAX_VALUE / 2, depth);
+            long ms = Math.max(search.getElapsed(), 1);
+            if (threads == 1) {
+                single = ms;
+            }
+            out.println(String.format("%7d  %5d  %-6s %10d %9d %10d  %6.2fx  %8.1f%%", threads,
+                    search.getDepth(), Move.toString(move), search.getNodes(), ms,
+                    search.nodesPerSecond(), (double) single / ms,
+                    100 * search.firstMoveCutoffRate()));
+        }
+    }
+
+    /**
+     * Command line entry point for the time to depth benchmark
+     *
+     * @param args the depth, optionally the most threads to try (all the
+     *             cores by default) and an SFEN to search
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("usage: ParallelSearch depth [maxThreads] [sfen]");
+            return;
+        }
+        int depth = Integer.parseInt(args[0]);
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        int first = 1;
+        if (args.length > 1 && args[1].matches("\\d+")) {
+            maxThreads = Integer.parseInt(args[1]);
+            first = 2;
+        }
+        StringBuilder sfen = new StringBuilder();
+        for (int i = first; i < args.length; i++) {
+            sfen.append(args[i]).append(' ');
+        }
+        Position pos = Sfen.parse(sfen.length() == 0 ? Sfen.START : sfen.toString());
+        benchmark(pos, depth, maxThreads, Search.DEFAULT_HASH_MB, System.out);
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.alpharelease.Shogi.Engine;
+
+import java.io.PrintStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Perft: counts the leaf nodes of the legal move tree to a fixed depth.
+ *
+ * The counts from the starting position are published (30, 900, 25470,
+ * 719731, 19861490, ...), so any change to move generation can be checked by
+ * running this and comparing. divide() prints the count under every root move
+ * so a wrong total can be chased down to the move that causes it, and the
+ * parallel mode hands each root move to a fork-join pool.
+ *
+ * Run from the command line with
+ *      Perft depth [-parallel] [sfen]
+ */
+
+public class Perft {
+
+    private final MoveGenerator generator = new MoveGenerator();
+    private int[][] moves = new int[0][];
+
+    /**
+     * Counts the leaf nodes below a position
+     *
+     * @param pos the position (played on and restored with make/unmake)
+     * @param depth how many plies to look ahead
+     * @return the number of legal move sequences of that length
+     */
+    public long perft(Position pos, int depth) {
+        if (moves.length < depth + 1) {
+            moves = new int[depth + 1][MoveGenerator.MAX_MOVES];
+        }
+        return count(pos, depth);
+    }
+
+    private long count(Position pos, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        int[] list = moves[depth];
+        int n = generator.generateLegal(pos, list);
+        if (depth == 1) {
+            return n; // bulk count the last ply
+        }
+        long nodes = 0;
+        for (int i = 0; i < n; i++) {
+            pos.makeMove(list[i]);
+            nodes += count(pos, depth - 1);
+            pos.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Counts the leaf nodes below each root move, printing one line per move
+     * followed by the total and the speed
+     *
+     * @param pos the position
+     * @param depth how many plies to look ahead (at least 1)
+     * @param parallel whether to split the root moves across a fork-join pool
+     * @param out where to print
+     * @return the total number of leaf nodes
+     */
+    public static long divide(Position pos, int depth, boolean parallel, PrintStream out) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("divide needs a depth of at least 1");
+        }
+        int[] root = new int[MoveGenerator.MAX_MOVES];
+        int n = new MoveGenerator().generateLegal(pos, root);
+        long[] counts = new long[n];
+        long start = System.nanoTime();
+
+        if (parallel) {
+            RootTask[] tasks = new RootTask[n];
+            for (int i = 0; i < n; i++) {
+                tasks[i] = new RootTask(pos, root[i], depth - 1);
+            }
+            ForkJoinPool pool = new ForkJoinPool();
+            try {
+                pool.invoke(new RecursiveTask<Void>() {
+                    @Override
+                    protected Void compute() {
+                        invokeAll(tasks);
+                        return null;
+                    }
+                });
+            } finally {
+                pool.shutdown();
+            }
+            for (int i = 0; i < n; i++) {
+                counts[i] = tasks[i].join();
+            }
+        } else {
+            Perft perft = new Perft();
+            Position copy = new Position(pos);
+            for (int i = 0; i < n; i++) {
+                copy.makeMove(root[i]);
+                counts[i] = perft.perft(copy, depth - 1);
+                copy.unmakeMove();
+            }
+        }
+
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            out.println(Move.toString(root[i]) + ": " + counts[i]);
+            total += counts[i];
+        }
+        long nanos = Math.max(System.nanoTime() - start, 1);
+        out.println();
+        out.println("Moves: " + n);
+        out.println("Nodes: " + total);
+        out.println("Time: " + nanos / 1000000 + " ms");
+        out.println("Nodes/second: " + total * 1000000000L / nanos);
+        return total;
+    }
+
+    /**
+     * Counts the nodes below one root move on its own copy of the position
+     */
+    private static class RootTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = -2150796634810473271L;
+
+        private final Position pos;
+        private final int depth;
+
+        RootTask(Position root, int move, int depth) {
+            this.pos = new Position(root);
+            this.pos.makeMove(move);
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            return new Perft().perft(pos, depth);
+        }
+    }
+
+    /**
+     * Command line entry point: Perft depth [-parallel] [sfen]
+     *
+     * @param args the depth, an optional -parallel flag and an optional SFEN
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("usage: Perft depth [-parallel] [sfen]");
+            return;
+        }
+        int depth = Integer.parseInt(args[0]);
+        boolean parallel = false;
+        StringBuilder sfen = new StringBuilder();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("-parallel")) {
+                parallel = true;
+            } else {
+                sfen.append(args[i]).append(' ');
+            }
+        }
+        Position pos = Sfen.parse(sfen.length() == 0 ? Sfen.START : sfen.toString());
+        divide(pos, depth, parallel, System.out);
+    }
+}
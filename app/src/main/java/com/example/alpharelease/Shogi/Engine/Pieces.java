@@ -0,0 +1,83 @@
+package com.example.alpharelease.Shogi.Engine;
+
+/**
+ * Piece type and piece code constants shared by the bitboard engine.
+ *
+ * A piece code packs the owning side into bit 4 and the piece type into the low
+ * four bits, so every (side, type) pair fits in a single byte of the mailbox and
+ * can index the per-piece bitboard arrays in {@link Position} directly.
+ */
+
+public final class Pieces {
+
+    public static final int EMPTY = 0;
+
+    // Unpromoted types (1 - 7 are also the types that can be held in hand)
+    public static final int PAWN = 1;
+    public static final int LANCE = 2;
+    public static final int KNIGHT = 3;
+    public static final int SILVER = 4;
+    public static final int BISHOP = 5;
+    public static final int ROOK = 6;
+    public static final int GOLD = 7;
+    public static final int KING = 8;
+
+    // Promoted types (unpromoted type + PROMOTE)
+    public static final int PRO_PAWN = 9;
+    public static final int PRO_LANCE = 10;
+    public static final int PRO_KNIGHT = 11;
+    public static final int PRO_SILVER = 12;
+    public static final int HORSE = 13; // promoted bishop
+    public static final int DRAGON = 14; // promoted rook
+
+    public static final int PROMOTE = 8;
+    public static final int TYPES = 15;
+    public static final int CODES = 32;
+    public static final int HAND_TYPES = 8;
+
+    private Pieces() {
+    }
+
+    /**
+     * Packs a side and a piece type into a piece code
+     *
+     * @param side the owning player (0 or 1)
+     * @param type the piece type (PAWN through DRAGON)
+     * @return the piece code
+     */
+    public static int code(int side, int type) {
+        return (side << 4) | type;
+    }
+
+    public static int side(int code) {
+        return code >>> 4;
+    }
+
+    public static int type(int code) {
+        return code & 15;
+    }
+
+    /**
+     * Checks whether a piece type has a promoted form
+     *
+     * @param type the piece type
+     * @return true for pawns, lances, knights, silvers, bishops and rooks
+     */
+    public static boolean isPromotable(int type) {
+        return type >= PAWN && type <= ROOK;
+    }
+
+    public static int promote(int type) {
+        return type + PROMOTE;
+    }
+
+    /**
+     * Returns the type a piece reverts to when it is captured
+     *
+     * @param type the piece type
+     * @return the unpromoted form of the type
+     */
+    public static int unpromote(int type) {
+        return type > KING ? type - PROMOTE : type;
+    }
+}
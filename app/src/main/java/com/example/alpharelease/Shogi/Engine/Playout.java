@@ -0,0 +1,132 @@
+package com.example.alpharelease.Shogi.Engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.SplittableRandom;
+
+/**
+ * Plays random games: a uniformly random legal move at a time (see
+ * {@link MoveGenerator#randomLegal}) on one mutable Position, taken back again
+ * at the end, so a playout allocates nothing. Used by the Dumb computer player
+ * to pick its moves, and handy for rollouts and for fuzzing the move
+ * generator with millions of odd positions.
+ *
+ * Each Playout has its own generator, move buffer and random numbers, so use
+ * one per thread. Time it from the command line with
+ *      Playout [playouts] [maxPlies] [sfen]
+ */
+
+public class Playout {
+
+    // Result of a playout that hit its ply limit before anyone was mated
+    public static final int UNFINISHED = -1;
+
+    private final MoveGenerator generator = new MoveGenerator();
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private final SplittableRandom random;
+    private long plies;
+
+    /**
+     * Constructor for a Playout with unpredictable random numbers
+     */
+    public Playout() {
+        random = new SplittableRandom();
+    }
+
+    /**
+     * Constructor for a Playout that plays the same games every time
+     *
+     * @param seed the random seed
+     */
+    public Playout(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Picks a uniformly random legal move
+     *
+     * @param pos the position (not modified)
+     * @return the move, or Move.NONE if the side to move has none (and so has lost)
+     */
+    public int randomMove(Position pos) {
+        return generator.randomLegal(pos, moves, random);
+    }
+
+    /**
+     * Plays random moves until one side can't move or the ply limit is
+     * reached, then takes them all back
+     *
+     * @param pos the position to start from (left as it was found)
+     * @param maxPlies the most moves to play
+     * @return the side that won, or UNFINISHED
+     */
+    public int play(Position pos, int maxPlies) {
+        int played = 0;
+        int winner = UNFINISHED;
+        while (played < maxPlies) {
+            int move = generator.randomLegal(pos, moves, random);
+            if (move == Move.NONE) {
+                winner = 1 - pos.sideToMove;
+                break;
+            }
+            pos.makeMove(move);
+            played++;
+        }
+        plies += played;
+        while (played-- > 0) {
+            pos.unmakeMove();
+        }
+        return winner;
+    }
+
+    /**
+     * Random moves played by this Playout so far
+     *
+     * @return the ply count
+     */
+    public long getPlies() {
+        return plies;
+    }
+
+    /**
+     * Runs playouts from a position and prints how fast they went and how
+     * they ended
+     *
+     * @param pos the position to start from
+     * @param playouts how many games to play
+     * @param maxPlies the longest a game may go
+     * @param out where to print the results
+     */
+    public static void benchmark(Position pos, int playouts, int maxPlies, PrintStream out) {
+        Playout playout = new Playout(1);
+        int[] results = new int[3];
+        long start = System.nanoTime();
+        for (int i = 0; i < playouts; i++) {
+            results[playout.play(pos, maxPlies) + 1]++;
+        }
+        long nanos = Math.max(System.nanoTime() - start, 1);
+        out.println(String.format("%d playouts of up to %d plies in %d ms", playouts, maxPlies,
+                nanos / 1000000));
+        out.println(String.format("%d playouts/s, %d plies/s", playouts * 1000000000L / nanos,
+                playout.getPlies() * 1000000000L / nanos));
+        out.println(String.format("side 0 won %d, side 1 won %d, unfinished %d", results[1],
+                results[2], results[0]));
+    }
+
+    /**
+     * Command line entry point for the playout benchmark
+     *
+     * @param args optionally the number of playouts, the ply limit and an SFEN
+     */
+    public static void main(String[] args) {
+        int playouts = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int maxPlies = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        StringBuilder sfen = new StringBuilder();
+        for (int i = 2; i < args.length; i++) {
+            sfen.append(args[i]).append(' ');
+        }
+        Position pos = Sfen.parse(sfen.length() == 0 ? Sfen.START : sfen.toString());
+        benchmark(pos, playouts / 10, maxPlies, new PrintStream(new ByteArrayOutputStream())); //JIT warm-up
+        benchmark(pos, playouts, maxPlies, System.out);
+    }
+}
@@ -0,0 +1,492 @@
+package com.example.alpharelease.Shogi.Engine;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Bitboard representation of a shogi position.
+ *
+ * Holds one 81 bit occupancy set per piece code (both sides, every type), an
+ * occupancy set per side, a byte mailbox for "what is on this square" questions
+ * and the hand counts of both players. Board keeps one of these in step with its
+ * tiles so move queries can be answered with mask operations.
+ *
+ * Every change also updates a Zobrist key (see {@link Zobrist}) and the
+ * material and piece-square score (see {@link Evaluation}), so neither has to
+ * be worked out again by rescanning the board. A neural evaluator can attach
+ * its first layer (see {@link Accumulator}) to be kept up to date the same way.
+ *
+ * makeMove and unmakeMove let a search walk the game tree on one Position: each
+ * move pushes a single int (the move and whatever it captured) onto an undo
+ * stack, and unmaking pops it and puts everything back.
+ */
+
+public class Position implements Serializable {
+
+    private static final long serialVersionUID = 7413562051863912204L;
+
+    final long[] pieceLo = new long[Pieces.CODES];
+    final long[] pieceHi = new long[Pieces.CODES];
+    final long[] occLo = new long[2];
+    final long[] occHi = new long[2];
+    final byte[] board = new byte[Bitboards.SQUARES];
+    final int[][] hand = new int[2][Pieces.HAND_TYPES];
+    final int[] kingSquare = {-1, -1};
+    final int[] pawnFiles = new int[2]; // columns holding an unpromoted pawn, per side
+    final int[] handTotal = new int[2]; // pieces held in hand, per side
+    int sideToMove;
+    long key;
+    transient Accumulator accumulator; // attached by NnueEvaluator, never copied
+    int material; // material and piece-square score from side 0's view
+
+    // Undo records: the move in the low 20 bits, the captured piece code above
+    private transient int[] undo;
+    private transient int undoCount;
+    private static final int CAPTURE_SHIFT = 20;
+    private static final int MOVE_MASK = (1 << CAPTURE_SHIFT) - 1;
+
+    /**
+     * Constructor for an empty Position
+     */
+    public Position() {
+    }
+
+    /**
+     * Deep copy constructor for Position
+     *
+     * @param orig the position to copy
+     */
+    public Position(Position orig) {
+        System.arraycopy(orig.pieceLo, 0, pieceLo, 0, pieceLo.length);
+        System.arraycopy(orig.pieceHi, 0, pieceHi, 0, pieceHi.length);
+        System.arraycopy(orig.occLo, 0, occLo, 0, 2);
+        System.arraycopy(orig.occHi, 0, occHi, 0, 2);
+        System.arraycopy(orig.board, 0, board, 0, board.length);
+        for (int side = 0; side < 2; side++) {
+            System.arraycopy(orig.hand[side], 0, hand[side], 0, Pieces.HAND_TYPES);
+        }
+        kingSquare[0] = orig.kingSquare[0];
+        kingSquare[1] = orig.kingSquare[1];
+        pawnFiles[0] = orig.pawnFiles[0];
+        pawnFiles[1] = orig.pawnFiles[1];
+        handTotal[0] = orig.handTotal[0];
+        handTotal[1] = orig.handTotal[1];
+        sideToMove = orig.sideToMove;
+        key = orig.key;
+        material = orig.material;
+    }
+
+    /**
+     * Removes every piece from the board and both hands
+     */
+    public void clear() {
+        Arrays.fill(pieceLo, 0);
+        Arrays.fill(pieceHi, 0);
+        Arrays.fill(occLo, 0);
+        Arrays.fill(occHi, 0);
+        Arrays.fill(board, (byte) 0);
+        Arrays.fill(hand[0], 0);
+        Arrays.fill(hand[1], 0);
+        kingSquare[0] = kingSquare[1] = -1;
+        pawnFiles[0] = pawnFiles[1] = 0;
+        handTotal[0] = handTotal[1] = 0;
+        sideToMove = 0;
+        key = 0;
+        material = 0;
+        undoCount = 0;
+        accumulator = null;
+    }
+
+    /**
+     * Places a piece on an empty square
+     *
+     * @param sq the square to place the piece on
+     * @param code the piece code (see {@link Pieces#code})
+     */
+    public void put(int sq, int code) {
+        int side = Pieces.side(code);
+        long lo = Bitboards.lo(sq);
+        long hi = Bitboards.hi(sq);
+        board[sq] = (byte) code;
+        pieceLo[code] |= lo;
+        pieceHi[code] |= hi;
+        occLo[side] |= lo;
+        occHi[side] |= hi;
+        key ^= Zobrist.PIECE[code][sq];
+        material += Evaluation.PIECE_SCORE[code][sq];
+        if (Pieces.type(code) == Pieces.KING) {
+            kingSquare[side] = sq;
+        } else if (Pieces.type(code) == Pieces.PAWN) {
+            pawnFiles[side] |= 1 << Bitboards.colOf(sq);
+        }
+        if (accumulator != null) {
+            accumulator.board(this, code, sq, 1);
+        }
+    }
+
+    /**
+     * Takes whatever piece is on a square off the board
+     *
+     * @param sq the square to empty
+     * @return the code of the removed piece, or EMPTY
+     */
+    public int remove(int sq) {
+        int code = board[sq];
+        if (code == Pieces.EMPTY) {
+            return Pieces.EMPTY;
+        }
+        int side = Pieces.side(code);
+        long lo = ~Bitboards.lo(sq);
+        long hi = ~Bitboards.hi(sq);
+        board[sq] = Pieces.EMPTY;
+        pieceLo[code] &= lo;
+        pieceHi[code] &= hi;
+        occLo[side] &= lo;
+        occHi[side] &= hi;
+        key ^= Zobrist.PIECE[code][sq];
+        material -= Evaluation.PIECE_SCORE[code][sq];
+        if (Pieces.type(code) == Pieces.KING) {
+            kingSquare[side] = -1;
+        } else if (Pieces.type(code) == Pieces.PAWN) {
+            int col = Bitboards.colOf(sq);
+            if ((pieceLo[code] & Bitboards.FILE_LO[col]) == 0
+                    && (pieceHi[code] & Bitboards.FILE_HI[col]) == 0) {
+                pawnFiles[side] &= ~(1 << col); // unless a second pawn was set up there
+            }
+        }
+        if (accumulator != null) {
+            accumulator.board(this, code, sq, -1);
+        }
+        return code;
+    }
+
+    public int pieceAt(int sq) {
+        return board[sq];
+    }
+
+    public boolean isEmpty(int sq) {
+        return board[sq] == Pieces.EMPTY;
+    }
+
+    public boolean isOccupiedBy(int side, int sq) {
+        return Bitboards.test(occLo[side], occHi[side], sq);
+    }
+
+    public void addToHand(int side, int type) {
+        key ^= Zobrist.HAND[side][type][hand[side][type]++];
+        material += Evaluation.HAND_SCORE[side][type];
+        handTotal[side]++;
+        if (accumulator != null) {
+            accumulator.hand(this, side, type, hand[side][type] - 1, 1);
+        }
+    }
+
+    public void removeFromHand(int side, int type) {
+        key ^= Zobrist.HAND[side][type][--hand[side][type]];
+        material -= Evaluation.HAND_SCORE[side][type];
+        handTotal[side]--;
+        if (accumulator != null) {
+            accumulator.hand(this, side, type, hand[side][type], -1);
+        }
+    }
+
+    public int handCount(int side, int type) {
+        return hand[side][type];
+    }
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public void setSideToMove(int side) {
+        if (side != sideToMove) {
+            key ^= Zobrist.SIDE;
+        }
+        sideToMove = side;
+    }
+
+    public long getKey() {
+        return key;
+    }
+
+    /**
+     * Rebuilds the Zobrist key from scratch, for checking the incrementally
+     * kept one (they should always match)
+     *
+     * @return the key of the current position
+     */
+    public long computeKey() {
+        long k = sideToMove == 1 ? Zobrist.SIDE : 0;
+        for (int sq = 0; sq < Bitboards.SQUARES; sq++) {
+            if (board[sq] != Pieces.EMPTY) {
+                k ^= Zobrist.PIECE[board[sq]][sq];
+            }
+        }
+        for (int side = 0; side < 2; side++) {
+            for (int type = Pieces.PAWN; type < Pieces.HAND_TYPES; type++) {
+                for (int count = 0; count < hand[side][type]; count++) {
+                    k ^= Zobrist.HAND[side][type][count];
+                }
+            }
+        }
+        return k;
+    }
+
+    /**
+     * Returns the running material and piece-square score
+     *
+     * @return the score from side 0's view
+     */
+    public int getMaterial() {
+        return material;
+    }
+
+    public int kingSquare(int side) {
+        return kingSquare[side];
+    }
+
+    public long occupiedLo() {
+        return occLo[0] | occLo[1];
+    }
+
+    public long occupiedHi() {
+        return occHi[0] | occHi[1];
+    }
+
+    /**
+     * Plays a move for the side to move, remembering how to take it back
+     *
+     * @param move a legal move for the side to move (see {@link Move})
+     */
+    public void makeMove(int move) {
+        int side = sideToMove;
+        int to = Move.to(move);
+        int captured = Pieces.EMPTY;
+
+        if (Move.isDrop(move)) {
+            removeFromHand(side, Move.type(move));
+            put(to, Pieces.code(side, Move.type(move)));
+        } else {
+            int code = remove(Move.from(move));
+            captured = remove(to);
+            if (captured != Pieces.EMPTY) {
+                addToHand(side, Pieces.unpromote(Pieces.type(captured)));
+            }
+            put(to, Move.isPromote(move) ? code + Pieces.PROMOTE : code);
+        }
+        setSideToMove(1 - side);
+
+        if (undo == null) {
+            undo = new int[64];
+        } else if (undoCount == undo.length) {
+            undo = Arrays.copyOf(undo, undoCount * 2);
+        }
+        undo[undoCount++] = move | (captured << CAPTURE_SHIFT);
+    }
+
+    /**
+     * Takes back the last move played with makeMove
+     */
+    public void unmakeMove() {
+        int record = undo[--undoCount];
+        int move = record & MOVE_MASK;
+        int captured = record >>> CAPTURE_SHIFT;
+        int side = 1 - sideToMove;
+        int to = Move.to(move);
+
+        setSideToMove(side);
+        int code = remove(to);
+        if (Move.isDrop(move)) {
+            addToHand(side, Move.type(move));
+        } else {
+            put(Move.from(move), Move.isPromote(move) ? code - Pieces.PROMOTE : code);
+            if (captured != Pieces.EMPTY) {
+                removeFromHand(side, Pieces.unpromote(Pieces.type(captured)));
+                put(to, captured);
+            }
+        }
+    }
+
+    /**
+     * Returns the move that led to this position
+     *
+     * @return the last move played with makeMove, or Move.NONE
+     */
+    public int lastMove() {
+        return undoCount == 0 ? Move.NONE : undo[undoCount - 1] & MOVE_MASK;
+    }
+
+    /**
+     * Returns how many moves can currently be taken back
+     *
+     * @return the depth of the undo stack
+     */
+    public int undoDepth() {
+        return undoCount;
+    }
+
+    /**
+     * Computes every square a piece attacks from the given square
+     *
+     * @param code the piece code
+     * @param sq the square the piece stands on
+     * @param out two element buffer receiving the lo and hi words
+     */
+    public void attacks(int code, int sq, long[] out) {
+        attacks(code, sq, occupiedLo(), occupiedHi(), out);
+    }
+
+    /**
+     * Computes every square a piece attacks from the given square, with sliders
+     * blocked by the given occupancy rather than the current one
+     *
+     * @param code the piece code
+     * @param sq the square the piece stands on
+     * @param allLo lo word of the occupancy to slide through
+     * @param allHi hi word of the occupancy to slide through
+     * @param out two element buffer receiving the lo and hi words
+     */
+    public static void attacks(int code, int sq, long allLo, long allHi, long[] out) {
+        out[0] = Bitboards.STEP_LO[code][sq];
+        out[1] = Bitboards.STEP_HI[code][sq];
+        Sliders.attacks(code, sq, allLo, allHi, out);
+    }
+
+    /**
+     * Finds every piece of one side attacking a square, given an occupancy
+     *
+     * A piece of side s on square f attacks sq exactly when the same piece type
+     * of the other side standing on sq would attack f, so each type needs one
+     * attack set computed from sq.
+     *
+     * @param sq the square being attacked
+     * @param bySide the attacking player
+     * @param allLo lo word of the occupancy to slide through
+     * @param allHi hi word of the occupancy to slide through
+     * @param out two element buffer receiving the attackers
+     */
+    public void attackersTo(int sq, int bySide, long allLo, long allHi, long[] out) {
+        long lo = 0;
+        long hi = 0;
+        for (int type = Pieces.PAWN; type < Pieces.TYPES; type++) {
+            int code = Pieces.code(bySide, type);
+            if ((pieceLo[code] | pieceHi[code]) == 0) {
+                continue;
+            }
+            attacks(Pieces.code(1 - bySide, type), sq, allLo, allHi, out);
+            lo |= out[0] & pieceLo[code];
+            hi |= out[1] & pieceHi[code];
+        }
+        out[0] = lo;
+        out[1] = hi;
+    }
+
+    /**
+     * Checks whether a player's king is attacked
+     *
+     * @param side the player whose king is checked
+     * @param tmp two element scratch buffer
+     * @return true if the king is in check
+     */
+    public boolean inCheck(int side, long[] tmp) {
+        int king = kingSquare[side];
+        if (king < 0) {
+            return false;
+        }
+        attackersTo(king, 1 - side, occupiedLo(), occupiedHi(), tmp);
+        return (tmp[0] | tmp[1]) != 0;
+    }
+
+    /**
+     * Computes every square the piece on a square could move to (attacked
+     * squares not holding a piece of its own side)
+     *
+     * @param sq the square holding the piece
+     * @param out two element buffer receiving the lo and hi words
+     */
+    public void targets(int sq, long[] out) {
+        int code = board[sq];
+        int side = Pieces.side(code);
+        attacks(code, sq, out);
+        out[0] &= ~occLo[side];
+        out[1] &= ~occHi[side];
+    }
+
+    /**
+     * Computes every square a piece held in hand could be dropped on, leaving
+     * out columns that already have a pawn (for pawns) and squares the piece
+     * could never move from
+     *
+     * @param side the player dropping the piece
+     * @param type the unpromoted type being dropped
+     * @param out two element buffer receiving the lo and hi words
+     */
+    public void dropTargets(int side, int type, long[] out) {
+        int code = Pieces.code(side, type);
+        long lo = ~occupiedLo() & Bitboards.ALIVE_LO[code];
+        long hi = ~occupiedHi() & Bitboards.ALIVE_HI[code];
+        if (type == Pieces.PAWN) {
+            lo &= ~Bitboards.FILES_LO[pawnFiles[side]];
+            hi &= ~Bitboards.FILES_HI[pawnFiles[side]];
+        }
+        out[0] = lo;
+        out[1] = hi;
+    }
+
+    /**
+     * Finds which columns already hold an unpromoted pawn of the given side
+     *
+     * @param side the player
+     * @return a 9 bit mask with bit n set if column n holds one of their pawns
+     */
+    public int pawnFiles(int side) {
+        return pawnFiles[side];
+    }
+
+    /**
+     * Checks whether the piece on a square is promotable and inside its
+     * owner's promotion zone
+     *
+     * @param sq the square holding the piece
+     * @return true if the piece could be promoted there
+     */
+    public boolean canPromote(int sq) {
+        int code = board[sq];
+        if (!Pieces.isPromotable(Pieces.type(code))) {
+            return false;
+        }
+        int side = Pieces.side(code);
+        return Bitboards.test(Bitboards.ZONE_LO[side], Bitboards.ZONE_HI[side], sq);
+    }
+
+    /**
+     * Checks whether the piece on a square may promote moving to another
+     * square (the start or the end must be in the owner's promotion zone)
+     *
+     * @param from the square holding the piece
+     * @param to the square it moves to
+     * @return true if the move may promote
+     */
+    public boolean canPromote(int from, int to) {
+        int code = board[from];
+        if (!Pieces.isPromotable(Pieces.type(code))) {
+            return false;
+        }
+        int side = Pieces.side(code);
+        return Bitboards.test(Bitboards.ZONE_LO[side], Bitboards.ZONE_HI[side], from)
+                || Bitboards.test(Bitboards.ZONE_LO[side], Bitboards.ZONE_HI[side], to);
+    }
+
+    /**
+     * Checks whether the piece on a square would be stuck on another square
+     * unless it promotes there
+     *
+     * @param from the square holding the piece
+     * @param to the square it moves to
+     * @return true if the move must promote
+     */
+    public boolean mustPromote(int from, int to) {
+        int code = board[from];
+        return !Bitboards.test(Bitboards.ALIVE_LO[code], Bitboards.ALIVE_HI[code], to);
+    }
+}
@@ -0,0 +1,567 @@
+package com.example.alpharelease.Shogi.Engine;
+
+/**
+ * Game tree search: negamax with alpha-beta pruning, deepened one ply at a
+ * time until the time budget for the move runs out.
+ *
+ * The search plays moves on a single Position with make/unmake. Each finished
+ * iteration leaves its best move at the front of the root list, so the next,
+ * deeper iteration searches it first and cuts the rest off sooner. If time runs
+ * out partway through an iteration, whatever it found is still used: the
+ * previous choice was searched first, so anything that beat it is better.
+ *
+ * Results are kept in a {@link TranspositionTable}: a position reached again
+ * (by another move order or in a later iteration) can return its stored score
+ * straight away, and otherwise its stored best move is searched first.
+ *
+ * Below the root, moves come from a {@link MovePicker}: table move, captures,
+ * killers, countermove, then the rest by history score. The killer,
+ * countermove and history tables are filled in here whenever a quiet move
+ * causes a cutoff. How often a cutoff comes from the first move tried is
+ * counted, as a measure of how good the ordering is.
+ *
+ * When the depth runs out the search doesn't stop at whatever the position
+ * looks like: a quiescence search keeps playing captures and promotions (and,
+ * on its first ply, drops that give check) until nothing is left hanging, so
+ * a leaf is never scored halfway through an exchange. The side to move may
+ * always "stand pat" on the static score instead of capturing, and captures
+ * that couldn't lift the score up to alpha even with a margin to spare are
+ * skipped (delta pruning), which keeps the extra nodes few.
+ */
+
+public class Search {
+
+    public static final int MAX_PLY = 64;
+    public static final int INFINITE = 32000;
+    public static final int MATE = 30000; // score for mating now; mate in n plies is MATE - n
+    public static final int DEFAULT_HASH_MB = 16;
+
+    // How many nodes go by between looks at the clock
+    private static final int CHECK_INTERVAL = 1024;
+
+    // History scores are kept within this bound
+    private static final int HISTORY_MAX = 1 << 14;
+
+    // Slack given to a capture's material gain before delta pruning skips it
+    private static final int DELTA_MARGIN = 200;
+
+    // Most a single move can gain: taking a dragon (board and hand value) and promoting a rook
+    private static final int DELTA_MAX = Evaluation.VALUE[Pieces.DRAGON]
+            + Evaluation.HAND_VALUE[Pieces.ROOK] + Evaluation.VALUE[Pieces.DRAGON]
+            - Evaluation.VALUE[Pieces.ROOK];
+
+    private final MoveGenerator generator = new MoveGenerator();
+    private final int[] rootMoves = new int[MoveGenerator.MAX_MOVES];
+    private final MovePicker[] pickers = new MovePicker[MAX_PLY];
+    private final int[][] quietsTried = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[][] history = new int[2][MovePicker.HISTORY_SIZE];
+    private final int[][] counterMoves = new int[2][MovePicker.HISTORY_SIZE];
+    private final TranspositionTable table;
+    private final Evaluator evaluator;
+
+    private volatile boolean stopped;
+    private volatile long deadline; //Stop searching here
+    private volatile long softDeadline; //Don't start another iteration after this
+    private long nodes;
+    private long quiescenceNodes;
+    private long elapsed;
+    private int depthReached;
+    private int bestScore;
+    private long cutoffs;
+    private long firstMoveCutoffs;
+
+    /**
+     * Constructor for a search with its own transposition table of the
+     * default size
+     */
+    public Search() {
+        this(new TranspositionTable(DEFAULT_HASH_MB));
+    }
+
+    /**
+     * Constructor for a search using the given transposition table
+     *
+     * @param table the table to read and store results in
+     */
+    public Search(TranspositionTable table) {
+        this(table, Evaluator.CLASSICAL);
+    }
+
+    /**
+     * Constructor for a search using the given transposition table and
+     * evaluation
+     *
+     * @param table the table to read and store results in
+     * @param evaluator scores the positions at the leaves
+     */
+    public Search(TranspositionTable table, Evaluator evaluator) {
+        this.table = table;
+        this.evaluator = evaluator;
+        for (int ply = 0; ply < MAX_PLY; ply++) {
+            pickers[ply] = new MovePicker(generator, history);
+        }
+    }
+
+    /**
+     * Searches a position and picks the best move for the side to move
+     *
+     * @param root the position (played on, and left as it was found)
+     * @param millis the time budget in milliseconds
+     * @param maxDepth the deepest iteration to try
+     * @return the best move found, or Move.NONE if there are no legal moves
+     */
+    public int think(Position root, long millis, int maxDepth) {
+        stopped = false;
+        table.newSearch();
+        setTimeLimit(millis);
+        return search(root, maxDepth, 0);
+    }
+
+    /**
+     * Sets how much longer the search may run, counted from now. It may be
+     * called from another thread while the search is running, which is how a
+     * search started without a real limit (pondering, see ParallelSearch) is
+     * given one once the expected move is played.
+     *
+     * @param millis the time budget in milliseconds
+     */
+    void setTimeLimit(long millis) {
+        long now = System.currentTimeMillis();
+        softDeadline = now + millis / 2;
+        deadline = now + millis;
+    }
+
+    /**
+     * Runs the iterative deepening loop for one thread of a search. Helper
+     * threads (see {@link ParallelSearch}) start from a rotated root move list
+     * and odd helpers search one ply deeper than the iteration number, so
+     * they fill the shared table with different parts of the tree than the
+     * main thread instead of repeating its work. Helpers also don't give up
+     * on an iteration early; they run until they are stopped. The time limit
+     * must have been set (see setTimeLimit) before this is called.
+     *
+     * @param root the position (played on, and left as it was found)
+     * @param maxDepth the deepest iteration to try
+     * @param helper 0 for the main thread, otherwise the helper's number
+     * @return the best move found, or Move.NONE if there are no legal moves
+     */
+    int search(Position root, int maxDepth, int helper) {
+        long start = System.currentTimeMillis();
+        nodes = 0;
+        quiescenceNodes = 0;
+        depthReached = 0;
+        bestScore = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+        for (int[] killer : killers) {
+            killer[0] = killer[1] = Move.NONE;
+        }
+        for (int side = 0; side < 2; side++) {
+            for (int i = 0; i < MovePicker.HISTORY_SIZE; i++) {
+                history[side][i] /= 2; //Older results count for less
+            }
+        }
+
+        evaluator.prepare(root);
+        int n = generator.generateLegal(root, rootMoves);
+        if (n == 0) {
+            bestScore = -MATE;
+            elapsed = System.currentTimeMillis() - start;
+            return Move.NONE;
+        }
+        if (helper > 0) {
+            rotate(rootMoves, n, helper % n);
+        }
+        int bestMove = rootMoves[0];
+
+        for (int iteration = 1; iteration <= maxDepth && iteration < MAX_PLY; iteration++) {
+            int depth = Math.min(iteration + (helper & 1), maxDepth);
+            int alpha = -INFINITE;
+            int best = -INFINITE;
+            int bestIndex = -1;
+
+            for (int i = 0; i < n; i++) {
+                root.makeMove(rootMoves[i]);
+                int score = -negamax(root, depth - 1, -INFINITE, -alpha, 1);
+                root.unmakeMove();
+                if (stopped) {
+                    break;
+                }
+                if (score > best) {
+                    best = score;
+                    bestIndex = i;
+                    alpha = Math.max(alpha, score);
+                }
+            }
+
+            if (bestIndex < 0) {
+                break; //Ran out of time before the first move was searched
+            }
+
+            // Keep the best move first for the next iteration
+            bestMove = rootMoves[bestIndex];
+            System.arraycopy(rootMoves, 0, rootMoves, 1, bestIndex);
+            rootMoves[0] = bestMove;
+            bestScore = best;
+
+            if (stopped) {
+                break;
+            }
+            depthReached = depth;
+            if (Math.abs(best) >= MATE - MAX_PLY) {
+                break; //Found a forced mate (or can't avoid one), no need to look deeper
+            }
+            if (helper == 0 && System.currentTimeMillis() > softDeadline) {
+                break; //The next iteration wouldn't finish in time
+            }
+        }
+        elapsed = System.currentTimeMillis() - start;
+        return bestMove;
+    }
+
+    /**
+     * Rotates the first n entries of a move list to the left
+     *
+     * @param list the move list
+     * @param n how many moves are in the list
+     * @param by how many places to rotate
+     */
+    private static void rotate(int[] list, int n, int by) {
+        int[] front = new int[by];
+        System.arraycopy(list, 0, front, 0, by);
+        System.arraycopy(list, by, list, 0, n - by);
+        System.arraycopy(front, 0, list, n - by, by);
+    }
+
+    /**
+     * Scores a position by searching it to the given depth
+     *
+     * @param pos the position
+     * @param depth the plies left to search
+     * @param alpha the score the side to move is already sure of
+     * @param beta the score the opponent is already sure of
+     * @param ply how far from the root this node is
+     * @return the score for the side to move
+     */
+    private int negamax(Position pos, int depth, int alpha, int beta, int ply) {
+        if (++nodes % CHECK_INTERVAL == 0 && System.currentTimeMillis() >= deadline) {
+            stopped = true;
+        }
+        if (stopped) {
+            return 0;
+        }
+        if (depth <= 0 || ply >= MAX_PLY - 1) {
+            nodes--; //Counted again by the quiescence search
+            return quiesce(pos, alpha, beta, ply, 0);
+        }
+
+        long key = pos.getKey();
+        int ttMove = Move.NONE;
+        long entry = table.probe(key);
+        if (entry != 0) {
+            ttMove = TranspositionTable.move(entry);
+            if (TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int side = pos.sideToMove;
+        int lastMove = pos.lastMove();
+        int counterIndex = lastMove == Move.NONE ? -1 : MovePicker.historyIndex(lastMove);
+        MovePicker picker = pickers[ply];
+        picker.init(pos, ttMove, killers[ply][0], killers[ply][1],
+                counterIndex < 0 ? Move.NONE : counterMoves[1 - side][counterIndex]);
+
+        int[] quiets = quietsTried[ply];
+        int quietCount = 0;
+        int searched = 0;
+        int alphaStart = alpha;
+        int best = -INFINITE;
+        int bestMove = Move.NONE;
+        int move;
+        while ((move = picker.next()) != Move.NONE) {
+            boolean quiet = pos.board[Move.to(move)] == Pieces.EMPTY;
+            pos.makeMove(move);
+            int score = -negamax(pos, depth - 1, -beta, -alpha, ply + 1);
+            pos.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+            searched++;
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        cutoffs++;
+                        if (searched == 1) {
+                            firstMoveCutoffs++;
+                        }
+                        if (quiet) {
+                            rememberCutoff(move, side, depth, ply, counterIndex, quiets, quietCount);
+                        }
+                        break; //The opponent won't allow this line
+                    }
+                }
+            }
+            if (quiet) {
+                quiets[quietCount++] = move;
+            }
+        }
+        if (searched == 0) {
+            return -MATE + ply; //No legal moves loses in shogi
+        }
+
+        int bound = best >= beta ? TranspositionTable.LOWER
+                : best > alphaStart ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(key, bound == TranspositionTable.UPPER ? Move.NONE : bestMove,
+                toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    /**
+     * Scores a position by playing out the captures (and other forcing
+     * moves) until it is quiet
+     *
+     * @param pos the position
+     * @param alpha the score the side to move is already sure of
+     * @param beta the score the opponent is already sure of
+     * @param ply how far from the root this node is
+     * @param qply how far into the quiescence search this node is
+     * @return the score for the side to move
+     */
+    private int quiesce(Position pos, int alpha, int beta, int ply, int qply) {
+        if (++nodes % CHECK_INTERVAL == 0 && System.currentTimeMillis() >= deadline) {
+            stopped = true;
+        }
+        quiescenceNodes++;
+        if (stopped) {
+            return 0;
+        }
+        int side = pos.sideToMove;
+        boolean inCheck = generator.inCheck(pos, side);
+        if (ply >= MAX_PLY - 1) {
+            return evaluator.evaluate(pos);
+        }
+
+        MovePicker picker = pickers[ply];
+        int best = -INFINITE;
+        int standPat = 0;
+        if (inCheck) {
+            picker.init(pos, Move.NONE, Move.NONE, Move.NONE, Move.NONE); //Every evasion
+        } else {
+            standPat = evaluator.evaluate(pos);
+            if (standPat >= beta) {
+                return standPat;
+            }
+            if (standPat + DELTA_MAX < alpha) {
+                return standPat; //Nothing could catch up
+            }
+            best = standPat;
+            alpha = Math.max(alpha, standPat);
+            picker.initQuiescence(pos, qply == 0);
+        }
+
+        int move;
+        while ((move = picker.next()) != Move.NONE) {
+            if (!inCheck && !Move.isDrop(move)
+                    && standPat + gain(pos, move) + DELTA_MARGIN <= alpha) {
+                continue; //Can't raise alpha even if it wins what it's after
+            }
+            pos.makeMove(move);
+            int score = -quiesce(pos, -beta, -alpha, ply + 1, qply + 1);
+            pos.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        if (inCheck && best == -INFINITE) {
+            return -MATE + ply; //No way out of check
+        }
+        return best;
+    }
+
+    /**
+     * Works out how much material a move wins on the spot: what it captures
+     * (off the board and into the hand) plus what promoting adds
+     *
+     * @param pos the position before the move
+     * @param move the move
+     * @return the material gain
+     */
+    private static int gain(Position pos, int move) {
+        int gain = 0;
+        int victim = pos.board[Move.to(move)];
+        if (victim != Pieces.EMPTY) {
+            int type = Pieces.type(victim);
+            gain += Evaluation.VALUE[type] + Evaluation.HAND_VALUE[Pieces.unpromote(type)];
+        }
+        if (Move.isPromote(move)) {
+            int type = Move.type(move);
+            gain += Evaluation.VALUE[Pieces.promote(type)] - Evaluation.VALUE[type];
+        }
+        return gain;
+    }
+
+    /**
+     * Records a quiet move that caused a cutoff: it becomes the first killer
+     * at its ply and the countermove to the previous move, its history score
+     * goes up and the quiet moves tried before it (which didn't cut off) go
+     * down
+     *
+     * @param move the move that cut off
+     * @param side the side that played it
+     * @param depth the depth it was searched at
+     * @param ply the ply it was played at
+     * @param counterIndex the history index of the previous move, or -1
+     * @param quiets the quiet moves tried before it
+     * @param quietCount how many quiet moves were tried before it
+     */
+    private void rememberCutoff(int move, int side, int depth, int ply, int counterIndex,
+                                int[] quiets, int quietCount) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        if (counterIndex >= 0) {
+            counterMoves[1 - side][counterIndex] = move;
+        }
+        int bonus = Math.min(depth * depth, HISTORY_MAX);
+        updateHistory(side, move, bonus);
+        for (int i = 0; i < quietCount; i++) {
+            updateHistory(side, quiets[i], -bonus);
+        }
+    }
+
+    /**
+     * Moves a history score by a bonus, by less the nearer the score already
+     * is to HISTORY_MAX in that direction, so scores never leave the bound
+     *
+     * @param side the side that played the move
+     * @param move the move
+     * @param bonus how much to add (negative to take away)
+     */
+    private void updateHistory(int side, int move, int bonus) {
+        int index = MovePicker.historyIndex(move);
+        int value = history[side][index];
+        history[side][index] = value + bonus - value * Math.abs(bonus) / HISTORY_MAX;
+    }
+
+    /**
+     * Converts a mate score from "mate n plies from the root" to "mate n plies
+     * from this position" so it stays right wherever the entry is found again
+     *
+     * @param score the score as seen from the root
+     * @param ply how far from the root the position is
+     * @return the score to store
+     */
+    private static int toTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    /**
+     * Undoes toTable for an entry found at the given ply
+     *
+     * @param score the stored score
+     * @param ply how far from the root the position is
+     * @return the score as seen from the root
+     */
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * Asks a running search to finish as soon as possible (safe to call from
+     * another thread)
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Clears the stop flag ahead of a search started with search(), so a stop
+     * sent before the thread gets going isn't lost
+     */
+    void reset() {
+        stopped = false;
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getQuiescenceNodes() {
+        return quiescenceNodes;
+    }
+
+    public int getDepth() {
+        return depthReached;
+    }
+
+    public int getScore() {
+        return bestScore;
+    }
+
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    /**
+     * Share of the last search's cutoffs that came from the first move tried
+     *
+     * @return the share, between 0 and 1
+     */
+    public double firstMoveCutoffRate() {
+        return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    /**
+     * Speed of the last search
+     *
+     * @return nodes searched per second
+     */
+    public long nodesPerSecond() {
+        return nodes * 1000 / Math.max(elapsed, 1);
+    }
+}
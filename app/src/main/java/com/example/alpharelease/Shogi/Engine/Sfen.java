@@ -0,0 +1,174 @@
+package com.example.alpharelease.Shogi.Engine;
+
+/**
+ * Reads and writes positions in SFEN, the standard one-line text form of a
+ * shogi position (the board rank by rank from the top, whose turn, the pieces
+ * in hand and the move number), e.g. the starting position
+ * "lnsgkgsnl/1r5b1/ppppppppp/9/9/9/PPPPPPPPP/1B5R1/LNSGKGSNL b - 1".
+ *
+ * Uppercase pieces belong to side 0 (the player at the bottom, "b"), lowercase
+ * ones to side 1 ("w"), and a leading '+' marks a promoted piece.
+ */
+
+public final class Sfen {
+
+    public static final String START = "lnsgkgsnl/1r5b1/ppppppppp/9/9/9/PPPPPPPPP/1B5R1/LNSGKGSNL b - 1";
+
+    // Letters indexed by unpromoted piece type
+    private static final String LETTERS = " PLNSBRGK";
+
+    // Order pieces in hand are written in
+    private static final int[] HAND_ORDER = {Pieces.ROOK, Pieces.BISHOP, Pieces.GOLD,
+            Pieces.SILVER, Pieces.KNIGHT, Pieces.LANCE, Pieces.PAWN};
+
+    private Sfen() {
+    }
+
+    /**
+     * Builds a position from SFEN text
+     *
+     * @param sfen the position, with or without the trailing move number
+     * @return the new position
+     * @throws IllegalArgumentException if the text isn't a valid SFEN
+     */
+    public static Position parse(String sfen) {
+        String[] fields = sfen.trim().split("\\s+");
+        if (fields.length < 3) {
+            throw new IllegalArgumentException("SFEN needs a board, a side and a hand: " + sfen);
+        }
+        Position pos = new Position();
+
+        String[] ranks = fields[0].split("/");
+        if (ranks.length != Bitboards.SIZE) {
+            throw new IllegalArgumentException("SFEN board needs 9 ranks: " + fields[0]);
+        }
+        for (int row = 0; row < Bitboards.SIZE; row++) {
+            int col = 0;
+            boolean promoted = false;
+            for (char c : ranks[row].toCharArray()) {
+                if (c == '+') {
+                    promoted = true;
+                } else if (Character.isDigit(c)) {
+                    col += c - '0';
+                } else {
+                    if (col >= Bitboards.SIZE) {
+                        throw new IllegalArgumentException("SFEN rank too long: " + ranks[row]);
+                    }
+                    int type = typeOf(c);
+                    pos.put(row * Bitboards.SIZE + col, Pieces.code(sideOf(c),
+                            promoted ? Pieces.promote(type) : type));
+                    promoted = false;
+                    col++;
+                }
+            }
+            if (col != Bitboards.SIZE) {
+                throw new IllegalArgumentException("SFEN rank isn't 9 squares: " + ranks[row]);
+            }
+        }
+
+        if (!fields[1].equals("b") && !fields[1].equals("w")) {
+            throw new IllegalArgumentException("SFEN side must be b or w: " + fields[1]);
+        }
+        pos.setSideToMove(fields[1].equals("b") ? 0 : 1);
+
+        if (!fields[2].equals("-")) {
+            int count = 0;
+            for (char c : fields[2].toCharArray()) {
+                if (Character.isDigit(c)) {
+                    count = count * 10 + (c - '0');
+                } else {
+                    int side = sideOf(c);
+                    int type = typeOf(c);
+                    if (type >= Pieces.KING) {
+                        throw new IllegalArgumentException("Not a piece that can be in hand: " + c);
+                    }
+                    if (pos.handCount(side, type) + Math.max(count, 1) >= Zobrist.MAX_HAND) {
+                        throw new IllegalArgumentException("Too many pieces in hand: " + fields[2]);
+                    }
+                    for (int i = 0; i < Math.max(count, 1); i++) {
+                        pos.addToHand(side, type);
+                    }
+                    count = 0;
+                }
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Writes a position as SFEN text (move number 1)
+     *
+     * @param pos the position
+     * @return the SFEN text
+     */
+    public static String toString(Position pos) {
+        StringBuilder sb = new StringBuilder();
+        for (int row = 0; row < Bitboards.SIZE; row++) {
+            int empty = 0;
+            for (int col = 0; col < Bitboards.SIZE; col++) {
+                int code = pos.pieceAt(row * Bitboards.SIZE + col);
+                if (code == Pieces.EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty != 0) {
+                    sb.append(empty);
+                    empty = 0;
+                }
+                sb.append(letterOf(code));
+            }
+            if (empty != 0) {
+                sb.append(empty);
+            }
+            if (row != Bitboards.SIZE - 1) {
+                sb.append('/');
+            }
+        }
+
+        sb.append(pos.getSideToMove() == 0 ? " b " : " w ");
+        int handLength = sb.length();
+        for (int side = 0; side < 2; side++) {
+            for (int type : HAND_ORDER) {
+                int count = pos.handCount(side, type);
+                if (count > 1) {
+                    sb.append(count);
+                }
+                if (count > 0) {
+                    char c = LETTERS.charAt(type);
+                    sb.append(side == 0 ? c : Character.toLowerCase(c));
+                }
+            }
+        }
+        if (sb.length() == handLength) {
+            sb.append('-');
+        }
+        return sb.append(" 1").toString();
+    }
+
+    /**
+     * Writes the SFEN letter(s) for a piece code
+     *
+     * @param code the piece code
+     * @return the letter, with a '+' in front for promoted pieces
+     */
+    static String letterOf(int code) {
+        int type = Pieces.type(code);
+        char c = LETTERS.charAt(Pieces.unpromote(type));
+        if (Pieces.side(code) == 1) {
+            c = Character.toLowerCase(c);
+        }
+        return type > Pieces.KING ? "+" + c : String.valueOf(c);
+    }
+
+    private static int typeOf(char c) {
+        int type = LETTERS.indexOf(Character.toUpperCase(c));
+        if (type < 1) {
+            throw new IllegalArgumentException("Not a SFEN piece letter: " + c);
+        }
+        return type;
+    }
+
+    private static int sideOf(char c) {
+        return Character.isUpperCase(c) ? 0 : 1;
+    }
+}
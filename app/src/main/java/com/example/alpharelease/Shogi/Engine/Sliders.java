@@ -0,0 +1,202 @@
+package com.example.alpharelease.Shogi.Engine;
+
+/**
+ * Precomputed attack tables for the sliding pieces (lance, bishop, rook and
+ * their promotions).
+ *
+ * Every square sits on four lines: its row, its column and its two diagonals.
+ * The occupancy of a line is gathered out of the two bitboard words with one
+ * mask, shift and multiply per word (the line's squares are evenly spaced in a
+ * word, so a single multiplier stacks them into the top bits without carries),
+ * and the inner squares of that occupancy index a table holding the squares a
+ * slider reaches along the line. A rook or bishop therefore costs two lookups
+ * and a lance one, whatever the board looks like.
+ */
+
+public final class Sliders {
+
+    // Line kinds, with the square step between neighbours on the line
+    private static final int RANK = 0; // left to right, step 1
+    private static final int FILE = 1; // top to bottom, step 9
+    private static final int DIAGONAL = 2; // down and right, step 10
+    private static final int ANTI_DIAGONAL = 3; // down and left, step 8
+    private static final int KINDS = 4;
+    private static final int[] STEP = {1, 9, 10, 8};
+    private static final int[] STEP_COL = {1, 0, 1, -1};
+    private static final int[] STEP_ROW = {0, 1, 1, 1};
+
+    // 9 ranks, 9 files, 17 diagonals and 17 anti-diagonals
+    private static final int LINES = 52;
+    private static final int GATHER_SHIFT = 55; // line bits are stacked into bits 55 - 63
+    private static final int INNER_BITS = 7;
+
+    // Per line: mask, shift and multiplier gathering its squares out of each word
+    private static final long[] MASK_LO = new long[LINES];
+    private static final long[] MASK_HI = new long[LINES];
+    private static final int[] SHIFT_LO = new int[LINES];
+    private static final int[] SHIFT_HI = new int[LINES];
+    private static final long[] MAGIC_LO = new long[LINES];
+    private static final long[] MAGIC_HI = new long[LINES];
+    private static final int[] BITS_LO = new int[LINES];
+    private static final int[] INNER_MASK = new int[LINES];
+
+    // Line each square sits on, indexed by kind and square
+    private static final int[][] LINE = new int[KINDS][Bitboards.SQUARES];
+
+    // Attacks along a line, indexed by kind and (square << 7 | inner occupancy)
+    private static final long[][] ATTACK_LO = new long[KINDS][Bitboards.SQUARES << INNER_BITS];
+    private static final long[][] ATTACK_HI = new long[KINDS][Bitboards.SQUARES << INNER_BITS];
+
+    // Squares in front of a square for each side (where a lance may look)
+    private static final long[][] AHEAD_LO = new long[2][Bitboards.SQUARES];
+    private static final long[][] AHEAD_HI = new long[2][Bitboards.SQUARES];
+
+    static {
+        int[] lineStart = new int[LINES];
+        int[] lineLength = new int[LINES];
+        for (int sq = 0; sq < Bitboards.SQUARES; sq++) {
+            int row = Bitboards.rowOf(sq);
+            int col = Bitboards.colOf(sq);
+            LINE[RANK][sq] = row;
+            LINE[FILE][sq] = 9 + col;
+            LINE[DIAGONAL][sq] = 18 + col - row + 8;
+            LINE[ANTI_DIAGONAL][sq] = 35 + col + row;
+        }
+
+        for (int kind = 0; kind < KINDS; kind++) {
+            for (int sq = 0; sq < Bitboards.SQUARES; sq++) {
+                int line = LINE[kind][sq];
+                if (lineLength[line]++ == 0) {
+                    lineStart[line] = sq; // squares are visited in increasing order
+                }
+                MASK_LO[line] |= Bitboards.lo(sq);
+                MASK_HI[line] |= Bitboards.hi(sq);
+            }
+        }
+
+        for (int kind = 0; kind < KINDS; kind++) {
+            for (int sq = 0; sq < Bitboards.SQUARES; sq++) {
+                int line = LINE[kind][sq];
+                if (lineStart[line] != sq) {
+                    continue; // set each line up once, from its first square
+                }
+                BITS_LO[line] = Long.bitCount(MASK_LO[line]);
+                INNER_MASK[line] = lineLength[line] > 2 ? (1 << (lineLength[line] - 2)) - 1 : 0;
+                SHIFT_LO[line] = MASK_LO[line] == 0 ? 0 : Long.numberOfTrailingZeros(MASK_LO[line]);
+                SHIFT_HI[line] = MASK_HI[line] == 0 ? 0 : Long.numberOfTrailingZeros(MASK_HI[line]);
+                MAGIC_LO[line] = gatherMagic(STEP[kind], BITS_LO[line]);
+                MAGIC_HI[line] = gatherMagic(STEP[kind], Long.bitCount(MASK_HI[line]));
+            }
+
+            for (int sq = 0; sq < Bitboards.SQUARES; sq++) {
+                int line = LINE[kind][sq];
+                int length = lineLength[line];
+                int index = (sq - lineStart[line]) / STEP[kind];
+                for (int inner = 0; inner <= INNER_MASK[line]; inner++) {
+                    int occ = inner << 1;
+                    long lo = 0;
+                    long hi = 0;
+                    for (int dir = -1; dir <= 1; dir += 2) {
+                        for (int i = index + dir; i >= 0 && i < length; i += dir) {
+                            int to = lineStart[line] + i * STEP[kind];
+                            lo |= Bitboards.lo(to);
+                            hi |= Bitboards.hi(to);
+                            if ((occ & (1 << i)) != 0) {
+                                break; //Blocked, so look the other way
+                            }
+                        }
+                    }
+                    ATTACK_LO[kind][(sq << INNER_BITS) | inner] = lo;
+                    ATTACK_HI[kind][(sq << INNER_BITS) | inner] = hi;
+                }
+            }
+        }
+
+        for (int side = 0; side < 2; side++) {
+            for (int sq = 0; sq < Bitboards.SQUARES; sq++) {
+                int to = Bitboards.offset(sq, 0, Bitboards.forward(side));
+                while (to >= 0) {
+                    AHEAD_LO[side][sq] |= Bitboards.lo(to);
+                    AHEAD_HI[side][sq] |= Bitboards.hi(to);
+                    to = Bitboards.offset(to, 0, Bitboards.forward(side));
+                }
+            }
+        }
+    }
+
+    private Sliders() {
+    }
+
+    /**
+     * Builds the multiplier moving bit step * k of a word to bit 55 + k.
+     * Every partial product lands on its own bit (step and step - 1 share no
+     * factor and a word never holds more than 9 squares of a line), so nothing
+     * carries into the gathered bits.
+     *
+     * @param step the square distance between neighbours on the line
+     * @param count how many of the line's squares the word holds
+     * @return the multiplier
+     */
+    private static long gatherMagic(int step, int count) {
+        if (step == 1) {
+            return count == 0 ? 0 : 1L << GATHER_SHIFT; // already next to each other
+        }
+        long magic = 0;
+        for (int k = 0; k < count; k++) {
+            magic |= 1L << (GATHER_SHIFT - (step - 1) * k);
+        }
+        return magic;
+    }
+
+    /**
+     * Looks up the squares a slider reaches along one line
+     *
+     * @param kind the line kind
+     * @param sq the square the slider stands on
+     * @param allLo lo word of the occupancy
+     * @param allHi hi word of the occupancy
+     * @param out two element buffer; the attacks are OR'd into it
+     */
+    private static void lineAttacks(int kind, int sq, long allLo, long allHi, long[] out) {
+        int line = LINE[kind][sq];
+        int occ = (int) ((((allLo & MASK_LO[line]) >>> SHIFT_LO[line]) * MAGIC_LO[line])
+                >>> GATHER_SHIFT) & ((1 << BITS_LO[line]) - 1);
+        occ |= (int) ((((allHi & MASK_HI[line]) >>> SHIFT_HI[line]) * MAGIC_HI[line])
+                >>> GATHER_SHIFT) << BITS_LO[line];
+        int index = (sq << INNER_BITS) | ((occ >>> 1) & INNER_MASK[line]);
+        out[0] |= ATTACK_LO[kind][index];
+        out[1] |= ATTACK_HI[kind][index];
+    }
+
+    /**
+     * Adds the sliding part of a piece's attacks to a buffer (nothing for
+     * pieces that only step)
+     *
+     * @param code the piece code
+     * @param sq the square the piece stands on
+     * @param allLo lo word of the occupancy
+     * @param allHi hi word of the occupancy
+     * @param out two element buffer; the attacks are OR'd into it
+     */
+    public static void attacks(int code, int sq, long allLo, long allHi, long[] out) {
+        switch (Pieces.type(code)) {
+            case Pieces.LANCE:
+                long lo = out[0];
+                long hi = out[1];
+                out[0] = out[1] = 0;
+                lineAttacks(FILE, sq, allLo, allHi, out);
+                int side = Pieces.side(code);
+                out[0] = lo | (out[0] & AHEAD_LO[side][sq]);
+                out[1] = hi | (out[1] & AHEAD_HI[side][sq]);
+                break;
+            case Pieces.BISHOP: case Pieces.HORSE:
+                lineAttacks(DIAGONAL, sq, allLo, allHi, out);
+                lineAttacks(ANTI_DIAGONAL, sq, allLo, allHi, out);
+                break;
+            case Pieces.ROOK: case Pieces.DRAGON:
+                lineAttacks(RANK, sq, allLo, allHi, out);
+                lineAttacks(FILE, sq, allLo, allHi, out);
+                break;
+        }
+    }
+}
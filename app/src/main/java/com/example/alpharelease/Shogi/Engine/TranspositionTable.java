@@ -0,0 +1,170 @@
+package com.example.alpharelease.Shogi.Engine;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size hash table of search results, keyed on the Zobrist key of the
+ * position they were found for.
+ *
+ * Entries live in two parallel long arrays (no objects), grouped into buckets of
+ * four that share one index. Each entry's data word packs the best move, score,
+ * depth, bound type and the age of the search that wrote it; the other word
+ * holds the key XOR'd with the data. Several search threads may read and write
+ * at once without locking: a torn entry (key from one write, data from another)
+ * no longer XORs back to the key being probed, so it simply reads as a miss.
+ */
+
+public class TranspositionTable {
+
+    // Bound types: the stored score is exact, an upper bound or a lower bound
+    public static final int UPPER = 1;
+    public static final int LOWER = 2;
+    public static final int EXACT = 3;
+
+    public static final int BUCKET_SIZE = 4;
+    private static final int ENTRY_BYTES = 16;
+
+    // Data word layout (low bit first)
+    private static final int SCORE_SHIFT = 20; // bits 0 - 19 hold the move
+    private static final int DEPTH_SHIFT = 36;
+    private static final int BOUND_SHIFT = 44;
+    private static final int AGE_SHIFT = 46;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int bucketMask;
+    private int age;
+
+    /**
+     * Constructor for a table using about the given amount of memory
+     *
+     * @param megabytes the size of the table in MB (rounded down to a power of two)
+     */
+    public TranspositionTable(int megabytes) {
+        long entries = Math.max((long) megabytes << 20, ENTRY_BYTES * BUCKET_SIZE) / ENTRY_BYTES;
+        int buckets = Integer.highestOneBit((int) Math.min(entries / BUCKET_SIZE, 1 << 26));
+        bucketMask = buckets - 1;
+        keys = new long[buckets * BUCKET_SIZE];
+        data = new long[buckets * BUCKET_SIZE];
+    }
+
+    /**
+     * Marks the start of a new search, so entries from older searches are
+     * the first to be replaced
+     */
+    public void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    /**
+     * Empties the table
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+        age = 0;
+    }
+
+    /**
+     * Looks a position up
+     *
+     * @param key the position's Zobrist key
+     * @return the entry's data word (read it with move(), score() etc.), or 0 if
+     *         the position isn't in the table
+     */
+    public long probe(long key) {
+        int base = ((int) key & bucketMask) * BUCKET_SIZE;
+        for (int i = base; i < base + BUCKET_SIZE; i++) {
+            long d = data[i];
+            if ((keys[i] ^ d) == key && d != 0) {
+                return d;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Stores a search result, replacing an entry for the same position or
+     * else the least useful entry in the bucket (the oldest, then the
+     * shallowest)
+     *
+     * @param key the position's Zobrist key
+     * @param move the best move found (Move.NONE if none)
+     * @param score the score, already adjusted for mate distance
+     * @param depth the depth searched
+     * @param bound EXACT, LOWER or UPPER
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int base = ((int) key & bucketMask) * BUCKET_SIZE;
+        int victim = base;
+        int worst = Integer.MAX_VALUE;
+
+        for (int i = base; i < base + BUCKET_SIZE; i++) {
+            long d = data[i];
+            if ((keys[i] ^ d) == key) {
+                if (move == Move.NONE) {
+                    move = move(d); // keep the old best move rather than lose it
+                }
+                if (bound != EXACT && depth < depth(d) - 2 && ageOf(d) == age) {
+                    return; // a much deeper result from this search is worth more
+                }
+                victim = i;
+                break;
+            }
+            // Older entries count for less; empty slots (d == 0) go first
+            int value = d == 0 ? Integer.MIN_VALUE : depth(d) - 8 * ((age - ageOf(d)) & 0xFF);
+            if (value < worst) {
+                worst = value;
+                victim = i;
+            }
+        }
+
+        long d = (move & 0xFFFFFL)
+                | ((long) (score & 0xFFFF) << SCORE_SHIFT)
+                | ((long) (depth & 0xFF) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) age << AGE_SHIFT);
+        keys[victim] = key ^ d;
+        data[victim] = d;
+    }
+
+    /**
+     * Estimates how full the table is from its first thousand entries
+     *
+     * @return the fill in permille
+     */
+    public int hashfull() {
+        int used = 0;
+        int sample = Math.min(1000, data.length);
+        for (int i = 0; i < sample; i++) {
+            if (data[i] != 0 && ageOf(data[i]) == age) {
+                used++;
+            }
+        }
+        return used * 1000 / sample;
+    }
+
+    public int capacity() {
+        return data.length;
+    }
+
+    public static int move(long d) {
+        return (int) (d & 0xFFFFF);
+    }
+
+    public static int score(long d) {
+        return (short) (d >>> SCORE_SHIFT);
+    }
+
+    public static int depth(long d) {
+        return (int) (d >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    public static int bound(long d) {
+        return (int) (d >>> BOUND_SHIFT) & 3;
+    }
+
+    private static int ageOf(long d) {
+        return (int) (d >>> AGE_SHIFT) & 0xFF;
+    }
+}
@@ -0,0 +1,473 @@
+package com.example.alpharelease.Shogi.Engine;
+
+import java.util.Arrays;
+
+/**
+ * Tsume (forced checkmate) solver using depth-first proof-number search
+ * (df-pn).
+ *
+ * The attacker is the side to move at the root and must give check with
+ * every move, board moves and drops from hand alike; the defender may answer
+ * with any legal move. Each position carries a proof number (how many more
+ * positions at least must be shown mated to prove a mate) and a disproof
+ * number (the same for showing there is none). At an attacker node the
+ * proof number is the smallest of the children's and the disproof number
+ * their sum; at a defender node it is the other way around. The search always
+ * goes down the child that looks cheapest to settle, and only comes back up
+ * when the numbers there grow past thresholds handed down from the parent, so
+ * it needs memory for the table only, not for the tree.
+ *
+ * Results live in this solver's own table, two entries per index, so runs on
+ * nearby positions (one per move of a game) reuse each other's work. Mate
+ * lengths are kept for proven positions so a mate sequence can be read back
+ * out of the table (a mate, not always the shortest one). A line that comes back to a position already on the path
+ * counts as no mate (perpetual check loses in shogi).
+ *
+ * A "no mate" that only came from the line repeating, or from running into
+ * MAX_DEPTH, depends on how the position was reached, so it is kept for the
+ * solve that found it and looked at as unknown by later ones.
+ *
+ * The node budget bounds the work, so the solver can run ahead of a timed
+ * search or as an analysis call on its own. From the command line:
+ *      TsumeSolver maxNodes [sfen]
+ */
+
+public class TsumeSolver {
+
+    // Results of solve()
+    public static final int MATE = 1;
+    public static final int NO_MATE = 2;
+    public static final int UNKNOWN = 3; // ran out of nodes first
+
+    // Longest line looked at, in plies
+    public static final int MAX_DEPTH = 64;
+    public static final int DEFAULT_HASH_MB = 16;
+
+    // Proof and disproof numbers are capped here; INFINITE means settled
+    private static final int INFINITE = 1 << 29;
+    private static final int ENTRY_BYTES = 22;
+
+    private final MoveGenerator generator = new MoveGenerator();
+    private final int[][] moves = new int[MAX_DEPTH][MoveGenerator.MAX_MOVES];
+    private final long[][] childKeys = new long[MAX_DEPTH][MoveGenerator.MAX_MOVES];
+    private final long[] path = new long[MAX_DEPTH];
+
+    // The table: key, proof number, disproof number and mate length per entry
+    private final long[] keys;
+    private final int[] proof;
+    private final int[] disproof;
+    private final short[] length;
+    private final int[] scope; // for a disproof that depends on the path, the solve it holds for; 0 otherwise
+    private final int mask;
+    private int solves; // numbers each solve for scope, starting at 1
+
+    private int attacker;
+    private long nodes;
+    private long maxNodes;
+    private int[] mateSequence = new int[0];
+
+    // Set by lookup()
+    private int foundPn;
+    private int foundDn;
+    private int foundLength;
+    private boolean foundLimited; // the disproof only holds on this solve's lines
+
+    /**
+     * Constructor for a solver with a table of the default size
+     */
+    public TsumeSolver() {
+        this(DEFAULT_HASH_MB);
+    }
+
+    /**
+     * Constructor for a solver with a table using about the given memory
+     *
+     * @param megabytes the size of the table in MB (rounded down to a power of two)
+     */
+    public TsumeSolver(int megabytes) {
+        long entries = Math.max((long) megabytes << 20, 2 * ENTRY_BYTES) / ENTRY_BYTES;
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 26));
+        mask = size - 1;
+        keys = new long[size];
+        proof = new int[size];
+        disproof = new int[size];
+        length = new short[size];
+        scope = new int[size];
+    }
+
+    /**
+     * Empties the table
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(proof, 0);
+        Arrays.fill(disproof, 0);
+        Arrays.fill(length, (short) 0);
+        Arrays.fill(scope, 0);
+    }
+
+    /**
+     * Looks for a forced mate by the side to move
+     *
+     * @param root the position (played on, and left as it was found)
+     * @param maxNodes the most positions to expand before giving up
+     * @return MATE, NO_MATE, or UNKNOWN if the budget ran out first
+     */
+    public int solve(Position root, long maxNodes) {
+        this.maxNodes = maxNodes;
+        attacker = root.sideToMove;
+        nodes = 0;
+        mateSequence = new int[0];
+        solves = solves == Integer.MAX_VALUE ? 1 : solves + 1;
+
+        mid(root, INFINITE, INFINITE, 0);
+
+        lookup(root.getKey());
+        if (foundPn == 0) {
+            mateSequence = readSequence(root);
+            return MATE;
+        }
+        return foundDn == 0 ? NO_MATE : UNKNOWN;
+    }
+
+    /**
+     * Expands a position until its proof or disproof number reaches its
+     * threshold (or it is settled, or the node budget runs out)
+     *
+     * @param pos the position
+     * @param thPn the proof number threshold
+     * @param thDn the disproof number threshold
+     * @param ply how far from the root this position is
+     */
+    private void mid(Position pos, int thPn, int thDn, int ply) {
+        long key = pos.getKey();
+        boolean or = pos.sideToMove == attacker;
+        int[] list = moves[ply];
+        int n = or ? generateChecks(pos, list) : generator.generateLegal(pos, list);
+        nodes++;
+
+        if (n == 0) {
+            // No check to give is no mate; no way out of check is mate
+            store(key, or ? INFINITE : 0, or ? 0 : INFINITE, 0, false);
+            return;
+        }
+        if (ply >= MAX_DEPTH - 1) {
+            store(key, INFINITE, 0, 0, true); //Too long to look at, this time
+            return;
+        }
+        path[ply] = key;
+        long[] children = childKeys[ply];
+        for (int i = 0; i < n; i++) {
+            pos.makeMove(list[i]);
+            children[i] = pos.getKey();
+            initialize(pos, ply + 1);
+            pos.unmakeMove();
+        }
+
+        while (true) {
+            int pn = or ? INFINITE : 0;
+            int dn = or ? 0 : INFINITE;
+            int best = -1;
+            int bestPn = 0;
+            int bestDn = 0;
+            int second = INFINITE;
+            int mateLength = or ? Integer.MAX_VALUE : 0;
+            boolean limited = false; //An attacker's disproof needs every child's to hold
+            boolean lasting = false; //A defender's needs one child's that holds
+
+            for (int i = 0; i < n; i++) {
+                long childKey = children[i];
+                if (onPath(childKey, ply)) {
+                    foundPn = INFINITE; //Going round in circles proves nothing
+                    foundDn = 0;
+                    foundLength = 0;
+                    foundLimited = true; //but only on this line
+                } else {
+                    lookup(childKey);
+                }
+
+                // The number being minimised decides which child to go into
+                int value = or ? foundPn : foundDn;
+                if (best < 0 || value < (or ? bestPn : bestDn)) {
+                    if (best >= 0) {
+                        second = or ? bestPn : bestDn;
+                    }
+                    best = i;
+                    bestPn = foundPn;
+                    bestDn = foundDn;
+                } else if (value < second) {
+                    second = value;
+                }
+
+                if (or) {
+                    pn = Math.min(pn, foundPn);
+                    dn = Math.min(dn + foundDn, INFINITE);
+                    if (foundPn == 0) {
+                        mateLength = Math.min(mateLength, foundLength + 1);
+                    }
+                    limited |= foundLimited;
+                } else {
+                    pn = Math.min(pn + foundPn, INFINITE);
+                    dn = Math.min(dn, foundDn);
+                    mateLength = Math.max(mateLength, foundLength + 1);
+                    lasting |= foundDn == 0 && !foundLimited;
+                }
+            }
+
+            store(key, pn, dn, pn == 0 ? mateLength : 0, dn == 0 && (or ? limited : !lasting));
+            if (pn >= thPn || dn >= thDn || pn == 0 || dn == 0 || nodes >= maxNodes) {
+                return;
+            }
+
+            int childThPn;
+            int childThDn;
+            if (or) {
+                childThPn = Math.min(thPn, second == INFINITE ? INFINITE : second + 1);
+                childThDn = Math.min(thDn - dn + bestDn, INFINITE);
+            } else {
+                childThPn = Math.min(thPn - pn + bestPn, INFINITE);
+                childThDn = Math.min(thDn, second == INFINITE ? INFINITE : second + 1);
+            }
+            pos.makeMove(list[best]);
+            mid(pos, childThPn, childThDn, ply + 1);
+            pos.unmakeMove();
+        }
+    }
+
+    /**
+     * Gives a position not seen before starting numbers from a one ply look:
+     * a defender with few ways out of check is cheap to prove mated, and an
+     * attacker with few checks is cheap to disprove. A position with no way
+     * out (or no check) is settled on the spot.
+     *
+     * @param pos the position
+     * @param ply how far from the root it is (its move buffer is used as scratch)
+     */
+    private void initialize(Position pos, int ply) {
+        long key = pos.getKey();
+        lookup(key);
+        if (foundPn != 1 || foundDn != 1 || isStored(key)) {
+            return;
+        }
+        if (pos.sideToMove == attacker) {
+            int checks = generateChecks(pos, moves[ply]);
+            store(key, checks == 0 ? INFINITE : 1, checks, 0, false);
+        } else {
+            int evasions = generator.generateLegal(pos, moves[ply]);
+            store(key, evasions, evasions == 0 ? INFINITE : 1, 0, false);
+        }
+    }
+
+    /**
+     * Writes the legal moves of the side to move that give check into the
+     * buffer
+     *
+     * @param pos the position (played on and restored)
+     * @param list the buffer receiving the moves
+     * @return the number of moves written
+     */
+    private int generateChecks(Position pos, int[] list) {
+        int count = generator.generateLegalBoardMoves(pos, list, 0);
+        int enemy = 1 - pos.sideToMove;
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            pos.makeMove(list[i]);
+            boolean check = generator.inCheck(pos, enemy);
+            pos.unmakeMove();
+            if (check) {
+                list[n++] = list[i];
+            }
+        }
+        return generator.generateLegalCheckingDrops(pos, list, n);
+    }
+
+    /**
+     * Checks whether a position already appears on the current line
+     *
+     * @param key the position's key
+     * @param ply how many positions the line holds
+     * @return true if it does
+     */
+    private boolean onPath(long key, int ply) {
+        for (int i = 0; i <= ply; i++) {
+            if (path[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads a position's numbers out of the table into foundPn, foundDn,
+     * foundLength and foundLimited (1, 1, 0 and false if it isn't there)
+     *
+     * @param key the position's key
+     */
+    private void lookup(long key) {
+        int slot = find(key);
+        if (slot >= 0) {
+            foundPn = proof[slot];
+            foundDn = disproof[slot];
+            foundLength = length[slot];
+            foundLimited = scope[slot] != 0;
+            return;
+        }
+        foundPn = 1;
+        foundDn = 1;
+        foundLength = 0;
+        foundLimited = false;
+    }
+
+    private boolean isStored(long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Finds the slot holding a position, skipping a disproof left by an
+     * earlier solve that only held on that solve's lines
+     *
+     * @param key the position's key
+     * @return the slot, or -1 if the position isn't there
+     */
+    private int find(long key) {
+        int index = (int) key & mask & ~1;
+        for (int i = index; i <= index + 1; i++) {
+            if (keys[i] == key && !isEmpty(i) && (scope[i] == 0 || scope[i] == solves)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isEmpty(int slot) {
+        return (proof[slot] | disproof[slot]) == 0;
+    }
+
+    private boolean isSettled(int slot) {
+        return proof[slot] == 0 || disproof[slot] == 0;
+    }
+
+    /**
+     * Stores a position's numbers, replacing an unsettled entry ahead of a
+     * settled one when both slots are taken
+     *
+     * @param key the position's key
+     * @param pn the proof number
+     * @param dn the disproof number
+     * @param mateLength plies to mate, if proven
+     * @param limited true for a disproof that only holds on this solve's lines
+     */
+    private void store(long key, int pn, int dn, int mateLength, boolean limited) {
+        int index = (int) key & mask & ~1;
+        int slot = index;
+        if (keys[index + 1] == key) {
+            slot = index + 1;
+        } else if (keys[index] != key && !isEmpty(index)
+                && (isEmpty(index + 1) || (isSettled(index) && !isSettled(index + 1)))) {
+            slot = index + 1;
+        }
+        keys[slot] = key;
+        proof[slot] = pn;
+        disproof[slot] = dn;
+        length[slot] = (short) Math.min(mateLength, Short.MAX_VALUE);
+        scope[slot] = limited ? solves : 0;
+    }
+
+    /**
+     * Follows a proven mate through the table: the attacker takes the
+     * quickest mate and the defender holds out longest. Where the table has
+     * lost part of the proof (entries get replaced), that position is proven
+     * again on the spot.
+     *
+     * @param root the proven position (played on and restored)
+     * @return the moves of the mate, attacker's first
+     */
+    private int[] readSequence(Position root) {
+        int[] line = new int[MAX_DEPTH];
+        int[] list = new int[MoveGenerator.MAX_MOVES];
+        long budget = maxNodes;
+        int plies = 0;
+        while (plies < MAX_DEPTH - 1) {
+            boolean or = root.sideToMove == attacker;
+            int n = or ? generateChecks(root, list) : generator.generateLegal(root, list);
+            int choice = Move.NONE;
+            for (int attempt = 0; attempt < 2 && choice == Move.NONE && n > 0; attempt++) {
+                if (attempt > 0) {
+                    maxNodes = nodes + budget;
+                    mid(root, INFINITE, INFINITE, plies);
+                }
+                int choiceLength = or ? Integer.MAX_VALUE : -1;
+                for (int i = 0; i < n; i++) {
+                    root.makeMove(list[i]);
+                    lookup(root.getKey());
+                    root.unmakeMove();
+                    if (foundPn != 0) {
+                        continue;
+                    }
+                    if (or ? foundLength < choiceLength : foundLength > choiceLength) {
+                        choice = list[i];
+                        choiceLength = foundLength;
+                    }
+                }
+            }
+            if (choice == Move.NONE) {
+                break; //Mated
+            }
+            path[plies] = root.getKey();
+            line[plies++] = choice;
+            root.makeMove(choice);
+        }
+        for (int i = 0; i < plies; i++) {
+            root.unmakeMove();
+        }
+        return Arrays.copyOf(line, plies);
+    }
+
+    /**
+     * Returns the mate found by the last solve()
+     *
+     * @return the moves from the root, attacker's first (empty unless MATE)
+     */
+    public int[] getMateSequence() {
+        return mateSequence;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Command line entry point for solving a position
+     *
+     * @param args the node budget and an optional SFEN
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("usage: TsumeSolver maxNodes [sfen]");
+            return;
+        }
+        long maxNodes = Long.parseLong(args[0]);
+        StringBuilder sfen = new StringBuilder();
+        for (int i = 1; i < args.length; i++) {
+            sfen.append(args[i]).append(' ');
+        }
+        Position pos = Sfen.parse(sfen.length() == 0 ? Sfen.START : sfen.toString());
+        TsumeSolver solver = new TsumeSolver();
+        long start = System.currentTimeMillis();
+        int result = solver.solve(pos, maxNodes);
+        long ms = System.currentTimeMillis() - start;
+
+        if (result == MATE) {
+            StringBuilder line = new StringBuilder();
+            for (int move : solver.getMateSequence()) {
+                line.append(' ').append(Move.toString(move));
+            }
+            System.out.println("Mate in " + solver.getMateSequence().length + ":" + line);
+        } else if (result == NO_MATE) {
+            System.out.println("No mate");
+        } else {
+            System.out.println("No mate within " + maxNodes + " nodes");
+        }
+        System.out.println("Nodes: " + solver.getNodes() + " in " + ms + " ms");
+    }
+}
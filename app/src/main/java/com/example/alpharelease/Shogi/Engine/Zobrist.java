@@ -0,0 +1,44 @@
+package com.example.alpharelease.Shogi.Engine;
+
+import java.util.Random;
+
+/**
+ * Random keys for Zobrist hashing of a Position.
+ *
+ * A position's key is the XOR of one key per (piece code, square) on the board,
+ * one key per piece held in hand (the n-th pawn in a hand has its own key, so
+ * counts are hashed rather than just "has a pawn"), and the side key when side 1
+ * is to move. XOR undoes itself, so Position keeps the key current by folding a
+ * key in or out whenever a piece is placed, lifted, captured into or dropped from
+ * a hand. The seed is fixed so every device builds the same keys.
+ */
+
+public final class Zobrist {
+
+    // Most pieces of one type a hand can hold (all 18 pawns), plus one
+    public static final int MAX_HAND = 19;
+
+    static final long[][] PIECE = new long[Pieces.CODES][Bitboards.SQUARES];
+    static final long[][][] HAND = new long[2][Pieces.HAND_TYPES][MAX_HAND];
+    static final long SIDE;
+
+    static {
+        Random rand = new Random(0x5A0B157L);
+        for (int code = 0; code < Pieces.CODES; code++) {
+            for (int sq = 0; sq < Bitboards.SQUARES; sq++) {
+                PIECE[code][sq] = rand.nextLong();
+            }
+        }
+        for (int side = 0; side < 2; side++) {
+            for (int type = 0; type < Pieces.HAND_TYPES; type++) {
+                for (int count = 0; count < MAX_HAND; count++) {
+                    HAND[side][type][count] = rand.nextLong();
+                }
+            }
+        }
+        SIDE = rand.nextLong();
+    }
+
+    private Zobrist() {
+    }
+}
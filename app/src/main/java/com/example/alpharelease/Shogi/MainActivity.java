@@ -1,6 +1,7 @@
 package com.example.alpharelease.Shogi;
 
 import android.content.Intent;
+import android.content.pm.PackageManager;
 import android.view.View;
 import com.example.alpharelease.GameFramework.GameMainActivity;
 import com.example.alpharelease.GameFramework.LocalGame;
@@ -10,6 +11,14 @@ import com.example.alpharelease.GameFramework.infoMessage.GameState;
 import com.example.alpharelease.GameFramework.players.GamePlayer;
 import com.example.alpharelease.GameFramework.utilities.Logger;
 import com.example.alpharelease.GameFramework.utilities.Saving;
+import com.example.alpharelease.Shogi.Engine.Evaluator;
+import com.example.alpharelease.Shogi.Engine.NnueEvaluator;
+import com.example.alpharelease.Shogi.Engine.OpeningBook;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 
 /**
@@ -27,11 +36,21 @@ public class MainActivity extends GameMainActivity {
 
     private static final String TAG = "MainActivity";
 
+    // Where the opening book is copied to so it can be memory-mapped
+    private static final String BOOK_FILE = "book.bin";
+
+    // A neural network for the evaluation, used if one has been put in the app's files
+    private static final String NETWORK_FILE = "nnue.bin";
+
+    private OpeningBook book;
+    private volatile Evaluator evaluator = Evaluator.CLASSICAL;
+
     @Override
     public GameConfig createDefaultConfig() {
 
         // List of types of players
         ArrayList<GamePlayerType> playerTypes = new ArrayList<GamePlayerType>();
+        loadEvaluator();
 
         // Create default human player
         playerTypes.add(new GamePlayerType("Local Human Player") {
@@ -49,7 +68,26 @@ public class MainActivity extends GameMainActivity {
 
         // Create Smart Computer Player
         playerTypes.add(new GamePlayerType("Computer Player (Less Dumb)") {
-            public GamePlayer createPlayer(String name) { return new ShogiSmartCompPlayer(name); }
+            public GamePlayer createPlayer(String name) {
+                return new ShogiSmartCompPlayer(name, 1, getOpeningBook(), getEvaluator());
+            }
+        });
+
+        // Smart Computer Players that search with more than one core
+        for (final int threads : new int[]{2, 4, 8}) {
+            playerTypes.add(new GamePlayerType("Computer Player (Less Dumb, " + threads + " Threads)") {
+                public GamePlayer createPlayer(String name) {
+                    return new ShogiSmartCompPlayer(name, threads, getOpeningBook(),
+                            getEvaluator());
+                }
+            });
+        }
+
+        // Monte Carlo Computer Player, using every core
+        playerTypes.add(new GamePlayerType("Computer Player (Monte Carlo)") {
+            public GamePlayer createPlayer(String name) {
+                return new ShogiMonteCarloCompPlayer(name, Runtime.getRuntime().availableProcessors());
+            }
         });
 
         GameConfig defaultConfig = new GameConfig(playerTypes, 2,2, "Shogi", 2009);
@@ -107,6 +145,87 @@ public class MainActivity extends GameMainActivity {
     }
 
 
+    /**
+     * Opens the opening book, copying it out of the app's resources the first
+     * time and again after the app is updated (a resource packed inside the
+     * app can't be memory-mapped)
+     *
+     * @return the book, or null if it couldn't be opened
+     */
+    private OpeningBook getOpeningBook() {
+        if (book == null) {
+            File file = new File(getFilesDir(), BOOK_FILE);
+            try {
+                if (!file.exists() || file.lastModified() < installedAt()) {
+                    InputStream in = getResources().openRawResource(R.raw.book);
+                    OutputStream out = new FileOutputStream(file);
+                    try {
+                        byte[] buffer = new byte[8192];
+                        int read;
+                        while ((read = in.read(buffer)) > 0) {
+                            out.write(buffer, 0, read);
+                        }
+                    } finally {
+                        in.close();
+                        out.close();
+                    }
+                }
+                book = OpeningBook.open(file);
+            } catch (IOException ioe) {
+                Logger.log(TAG, "Couldn't open the opening book: " + ioe.getMessage());
+                file.delete(); //Copy it again next time rather than keep a broken file
+            }
+        }
+        return book;
+    }
+
+    /**
+     * Finds when this version of the app was installed, so a file copied out
+     * of an older version's resources can be told apart
+     *
+     * @return the install or update time in milliseconds
+     */
+    private long installedAt() {
+        try {
+            return getPackageManager().getPackageInfo(getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return Long.MAX_VALUE; //Can't tell, so copy it again
+        }
+    }
+
+    /**
+     * Starts loading the neural network evaluation, if there is one, off the
+     * UI thread; the computer players use the hand-written one until it's in
+     */
+    private void loadEvaluator() {
+        final File file = new File(getFilesDir(), NETWORK_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    evaluator = NnueEvaluator.load(file);
+                } catch (IOException ioe) {
+                    Logger.log(TAG, "Couldn't load the network: " + ioe.getMessage());
+                } catch (OutOfMemoryError oome) {
+                    Logger.log(TAG, "Not enough memory for the network");
+                }
+            }
+        }, "network loader").start();
+    }
+
+    /**
+     * Returns the evaluation for the computer players: the neural network
+     * once it has loaded, otherwise the hand-written one
+     *
+     * @return the evaluator for the computer players
+     */
+    private Evaluator getEvaluator() {
+        return evaluator;
+    }
+
     public void PlayBackgroundSound(View view) {
         Intent intent = new Intent(MainActivity.this, BackgroundMusic.class);
         startService(intent);
@@ -35,6 +35,7 @@ public class MainSurfaceView extends SurfaceView {
 
     private final Paint imgPaint;
     private final Paint paint;
+    private final Paint countPaint;
 
 
     private ShogiGameState state;
@@ -59,6 +60,9 @@ public class MainSurfaceView extends SurfaceView {
         paint.setARGB(255/2, 100, 155, 160);
         imgPaint = new Paint();
         imgPaint.setColor(Color.BLACK);
+        countPaint = new Paint();
+        countPaint.setColor(Color.BLACK);
+        countPaint.setTextSize(36);
     }
 
     // 4 tell the view what to draw/how to draw
@@ -99,7 +103,7 @@ public class MainSurfaceView extends SurfaceView {
                 image = Bitmap.createBitmap(image, 0, 0, image.getWidth(), image.getHeight(), matrix, true);
             }
             canvas.drawBitmap(image, t.getxCoord(), t.getyCoord() - 14, imgPaint);
-
+            drawHeldCount(canvas, t, board.heldCount(0, t.getTileIndex() - Board.GRAVE0_START + 1));
         }
         for (Tile t : Grave1) {
             piece = t.getPiece();
@@ -113,11 +117,25 @@ public class MainSurfaceView extends SurfaceView {
             image = Bitmap.createBitmap(image, 0, 0, image.getWidth(), image.getHeight(), matrix, true);
 
             canvas.drawBitmap(image, t.getxCoord(), t.getyCoord() - 14, imgPaint);
-
+            drawHeldCount(canvas, t, board.heldCount(1, t.getTileIndex() - Board.GRAVE1_START + 1));
         }
         board.drawBoard(canvas);
     }
 
+    /**
+     * Writes how many pieces a grave tile stands for in its corner, since
+     * only one of each kind is drawn
+     *
+     * @param canvas the main canvas
+     * @param t the grave tile
+     * @param count how many pieces of that kind the player holds
+     */
+    private void drawHeldCount(Canvas canvas, Tile t, int count) {
+        if (count > 1) {
+            canvas.drawText("x" + count, t.getxCoordEnd() - 48, t.getyCoordEnd() - 6, countPaint);
+        }
+    }
+
     public void setLocalGame(LocalGame g) {
         lg = g;
     }
@@ -1,6 +1,7 @@
 package com.example.alpharelease.Shogi;
 
 import com.example.alpharelease.R;
+import com.example.alpharelease.Shogi.Engine.Pieces;
 
 import java.io.Serializable;
 import java.util.Arrays;
@@ -28,32 +29,46 @@ public class Piece implements Serializable {
      */
 
     public enum GAME_PIECES {
-        KING(R.drawable.king, 1, 0), GOLD_GENERAL(R.drawable.gold_gen, 2, 0),
-        SILVER_GENERAL(R.drawable.silv_gen, 2, 0),
-        PROMOTED_SILVER_GENERAL(R.drawable.promoted_silv_gen, 2, 0),
-        BISHOP(R.drawable.bishop, 1, 0), PROMOTED_BISHOP(R.drawable.promoted_bishop, 1, 0),
-        ROOK(R.drawable.rook, 1, 0), PROMOTED_ROOK(R.drawable.promoted_rook, 1, 0),
-        LANCE(R.drawable.lance, 2, 0), PROMOTED_LANCE(R.drawable.promoted_lance, 2, 0),
-        KNIGHT(R.drawable.knight, 2, 0), PROMOTED_KNIGHT(R.drawable.promoted_knight, 2, 0),
-        PAWN(R.drawable.pawn, 9, 0), PROMOTED_PAWN(R.drawable.promoted_pawn, 9, 0),
-
-        OPP_KING(R.drawable.king, 1, 1), OPP_GOLD_GEN(R.drawable.gold_gen, 2, 1),
-        OPP_SILVER_GENERAL(R.drawable.silv_gen, 2, 1),
-        OPP_PROMOTED_SILVER_GENERAL(R.drawable.promoted_silv_gen, 2, 1),
-        OPP_BISHOP(R.drawable.bishop, 1, 1), OPP_PROMOTED_BISHOP(R.drawable.promoted_bishop, 1, 1),
-        OPP_ROOK(R.drawable.rook, 1, 1), OPP_PROMOTED_ROOK(R.drawable.promoted_rook, 1, 1),
-        OPP_LANCE(R.drawable.lance, 2, 1), OPP_PROMOTED_LANCE(R.drawable.promoted_lance, 2, 1),
-        OPP_KNIGHT(R.drawable.knight, 2, 1), OPP_PROMOTED_KNIGHT(R.drawable.promoted_knight, 2, 1),
-        OPP_PAWN(R.drawable.pawn, 9, 1), OPP_PROMOTED_PAWN(R.drawable.promoted_pawn, 9, 1);
+        KING(R.drawable.king, 1, 0, Pieces.KING),
+        GOLD_GENERAL(R.drawable.gold_gen, 2, 0, Pieces.GOLD),
+        SILVER_GENERAL(R.drawable.silv_gen, 2, 0, Pieces.SILVER),
+        PROMOTED_SILVER_GENERAL(R.drawable.promoted_silv_gen, 2, 0, Pieces.PRO_SILVER),
+        BISHOP(R.drawable.bishop, 1, 0, Pieces.BISHOP),
+        PROMOTED_BISHOP(R.drawable.promoted_bishop, 1, 0, Pieces.HORSE),
+        ROOK(R.drawable.rook, 1, 0, Pieces.ROOK),
+        PROMOTED_ROOK(R.drawable.promoted_rook, 1, 0, Pieces.DRAGON),
+        LANCE(R.drawable.lance, 2, 0, Pieces.LANCE),
+        PROMOTED_LANCE(R.drawable.promoted_lance, 2, 0, Pieces.PRO_LANCE),
+        KNIGHT(R.drawable.knight, 2, 0, Pieces.KNIGHT),
+        PROMOTED_KNIGHT(R.drawable.promoted_knight, 2, 0, Pieces.PRO_KNIGHT),
+        PAWN(R.drawable.pawn, 9, 0, Pieces.PAWN),
+        PROMOTED_PAWN(R.drawable.promoted_pawn, 9, 0, Pieces.PRO_PAWN),
+
+        OPP_KING(R.drawable.king, 1, 1, Pieces.KING),
+        OPP_GOLD_GEN(R.drawable.gold_gen, 2, 1, Pieces.GOLD),
+        OPP_SILVER_GENERAL(R.drawable.silv_gen, 2, 1, Pieces.SILVER),
+        OPP_PROMOTED_SILVER_GENERAL(R.drawable.promoted_silv_gen, 2, 1, Pieces.PRO_SILVER),
+        OPP_BISHOP(R.drawable.bishop, 1, 1, Pieces.BISHOP),
+        OPP_PROMOTED_BISHOP(R.drawable.promoted_bishop, 1, 1, Pieces.HORSE),
+        OPP_ROOK(R.drawable.rook, 1, 1, Pieces.ROOK),
+        OPP_PROMOTED_ROOK(R.drawable.promoted_rook, 1, 1, Pieces.DRAGON),
+        OPP_LANCE(R.drawable.lance, 2, 1, Pieces.LANCE),
+        OPP_PROMOTED_LANCE(R.drawable.promoted_lance, 2, 1, Pieces.PRO_LANCE),
+        OPP_KNIGHT(R.drawable.knight, 2, 1, Pieces.KNIGHT),
+        OPP_PROMOTED_KNIGHT(R.drawable.promoted_knight, 2, 1, Pieces.PRO_KNIGHT),
+        OPP_PAWN(R.drawable.pawn, 9, 1, Pieces.PAWN),
+        OPP_PROMOTED_PAWN(R.drawable.promoted_pawn, 9, 1, Pieces.PRO_PAWN);
 
         private final int pieceID;
         private final int amount;
         private final int player;
+        private final int engineType;
 
-        GAME_PIECES(int drawableID, int amount, int player) {
+        GAME_PIECES(int drawableID, int amount, int player, int engineType) {
             this.pieceID = drawableID;
             this.amount = amount;
             this.player = player;
+            this.engineType = engineType;
         }
 
         public int getPlayer() {
@@ -67,6 +82,38 @@ public class Piece implements Serializable {
         public int getAmount() {
             return this.amount;
         }
+
+        public int getEngineType() {
+            return this.engineType;
+        }
+
+        // Constants by owner and engine type, for flipping a piece between
+        // its promoted and unpromoted forms
+        private static final GAME_PIECES[][] BY_TYPE = new GAME_PIECES[2][Pieces.TYPES];
+
+        static {
+            for (GAME_PIECES type : values()) {
+                BY_TYPE[type.player][type.engineType] = type;
+            }
+        }
+
+        /**
+         * Returns the promoted form of this piece type
+         *
+         * @return the promoted type, or this type if it can't promote
+         */
+        public GAME_PIECES promoted() {
+            return Pieces.isPromotable(engineType) ? BY_TYPE[player][Pieces.promote(engineType)] : this;
+        }
+
+        /**
+         * Returns the unpromoted form of this piece type
+         *
+         * @return the unpromoted type (this type if it isn't promoted)
+         */
+        public GAME_PIECES unpromoted() {
+            return BY_TYPE[player][Pieces.unpromote(engineType)];
+        }
     }
 
     public enum DIRECTION {
@@ -78,7 +125,7 @@ public class Piece implements Serializable {
     public DIRECTION directionMovement;
 
     private int row, col;
-    private boolean isAlive, isOnBoard, isSelected, isPromoted;
+    private boolean isAlive, isOnBoard, isPromoted;
     private final int[] moveNum; //TL = 0, T = 1, TR = 2, L = 3, R = 4, BL = 5, B = 6, BR = 7 for indexes
     private int thePlayer;
 
@@ -94,7 +141,6 @@ public class Piece implements Serializable {
         pieceType = type;
         directionMovement = dir;
         isAlive = true;
-        isSelected = false;
         moveNum = new int[8];
         setMoveNum();
         firstIsOnBoard();
@@ -106,6 +152,23 @@ public class Piece implements Serializable {
         }
     }
 
+    /**
+     * Deep copy constructor for Piece
+     *
+     * @param orig the piece to copy
+     */
+    public Piece(Piece orig) {
+        row = orig.row;
+        col = orig.col;
+        pieceType = orig.pieceType;
+        directionMovement = orig.directionMovement;
+        isAlive = orig.isAlive;
+        isOnBoard = orig.isOnBoard;
+        isPromoted = orig.isPromoted;
+        moveNum = orig.moveNum.clone();
+        thePlayer = orig.thePlayer;
+    }
+
     /**
      * Sets which pieces are on the board at initialization
      */
@@ -222,6 +285,43 @@ public class Piece implements Serializable {
         return isPromoted;
     }
 
+    /**
+     * Turns this piece into its promoted form
+     *
+     * @return true if it promoted, false if it can't or already has
+     */
+    public boolean promote() {
+        GAME_PIECES promo = pieceType.promoted();
+        if (promo == pieceType) {
+            return false;
+        }
+        changeType(promo);
+        return true;
+    }
+
+    /**
+     * Turns this piece back into its unpromoted form (when it's captured)
+     */
+    public void demote() {
+        changeType(pieceType.unpromoted());
+    }
+
+    /**
+     * Swaps the piece's type, keeping its moves in step with the side it
+     * now plays for
+     *
+     * @param type the new type
+     */
+    private void changeType(GAME_PIECES type) {
+        pieceType = type;
+        isPromoted = type.getEngineType() > Pieces.KING;
+        if (type.getPlayer() == thePlayer) {
+            setMoveNum();
+        } else {
+            setMoveNumAfterDrop(); //It was captured and changed sides
+        }
+    }
+
     public void setRow(int row) {
         this.row = row;
     }
@@ -234,10 +334,6 @@ public class Piece implements Serializable {
         return isOnBoard;
     }
 
-    public boolean isSelected() {
-        return isSelected;
-    }
-
     public void setOnBoard(boolean onBoard) {
         isOnBoard = onBoard;
         if (!onBoard) {
@@ -252,10 +348,6 @@ public class Piece implements Serializable {
         } //Take them off the board if dead
     }
 
-    public void setSelected(boolean selected) {
-        isSelected = selected;
-    }
-
     public void changeTeams() {
         if (this.thePlayer == 0) {
             this.thePlayer = 1;
@@ -1,29 +1,33 @@
 package com.example.alpharelease.Shogi;
 
-import android.util.Log;
 import com.example.alpharelease.GameFramework.infoMessage.GameInfo;
 import com.example.alpharelease.GameFramework.infoMessage.IllegalMoveInfo;
 import com.example.alpharelease.GameFramework.infoMessage.NotYourTurnInfo;
 import com.example.alpharelease.GameFramework.players.GameComputerPlayer;
-import com.example.alpharelease.R;
-import com.example.alpharelease.Shogi.Actions.MovePieceAction;
-import com.example.alpharelease.Shogi.Actions.SelectPieceAction;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Random;
-
+import com.example.alpharelease.GameFramework.utilities.Logger;
+import com.example.alpharelease.Shogi.Actions.ShogiMoveAction;
+import com.example.alpharelease.Shogi.Engine.Move;
+import com.example.alpharelease.Shogi.Engine.Playout;
+import com.example.alpharelease.Shogi.Engine.Position;
+
+/**
+ * Computer player that plays a uniformly random legal move, drops included.
+ * It used to pick random pieces and shuffle their destinations until one
+ * worked, which could stall on pieces with nowhere to go; {@link Playout}
+ * picks straight from the legal moves instead.
+ *
+ * @author Kathryn Weidman
+ * @author Emma Kelly
+ * @author Brent Torres
+ * @author Matthew Tran
+ *
+ * @version 12/13/2022
+ *
+ * */
 public class ShogiDumbCompPlayer extends GameComputerPlayer {
-    /**
-     External Citation
-     Date: 23 November 2022
-     Problem: Computer was incredibly buggy and would stall/crash at irregular intervals
-     Resource: Nathaniel Hopper
-     Solution: The computer was iterating an incredible number of times.
-                Made it shuffle through the possible tiles instead of the whole board.
-     */
 
     private ShogiGameState state;
-    private ArrayList<Tile> possibleTiles = new ArrayList<>();
+    private final Playout playout = new Playout();
 
     public ShogiDumbCompPlayer(String name) {
         super(name);
@@ -41,71 +45,31 @@ public class ShogiDumbCompPlayer extends GameComputerPlayer {
             state = new ShogiGameState((ShogiGameState) info);
 
             if (state.getWhoseTurn() != this.playerNum) {
-                Log.d("dumbComputer", "It's not the computer's turn.");
+                Logger.debugLog("dumbComputer", "It's not the computer's turn.");
                 return;
             } // Not Dumb Computer Player's turn
 
-            if (state.getWhoseTurn() == this.playerNum) { //The computers turn
-                sleep(.5);
-
-                Random rand = new Random();
-                Board board = state.getBoard();
-                Tile fromThisTile = null, goToTile = null;
-                ArrayList<Piece> pieces = state.getPieceArray(this.playerNum);
-                int randIndex = rand.nextInt(pieces.size());
-                if (state.isSelecting()) {
-                    while (pieces.get(randIndex) == null || !pieces.get(randIndex).isAlive() ||
-                            !pieces.get(randIndex).isOnBoard()) {
-                        //Chosen piece either is null, dead, or not on board so try again
-                        randIndex = rand.nextInt(pieces.size());
-                    }
-
-                    fromThisTile = board.getTile(pieces.get(randIndex).getCol(), pieces.get(randIndex).getRow());
-
-                    game.sendAction(new SelectPieceAction(this, fromThisTile.getTileIndex()));
-
-                    board.checkMoves(fromThisTile);
-                    possibleTiles.addAll(board.getPossibleTiles());
-                    state.setSelecting(false);
+            sleep(.5);
 
-                    Log.d("dumbComputer", "Computer Player chose " + fromThisTile.getTileIndex());
+            Board board = state.getBoard();
+            Position pos = new Position(board.getPosition()); //Pick from a copy, not the real board
+            pos.setSideToMove(this.playerNum);
 
-                    Collections.shuffle(possibleTiles);
-
-                    if (possibleTiles.size() == 0) {
-                        state.setSelecting(true);
-                        return;
-                    }
-
-                    goToTile = possibleTiles.get(0);
-
-                    int index = board.getTiles().indexOf(goToTile);
-                    //Log.d("computerTrack", "Computer sent a piece to: " + goToTile.getTileIndex());
-                    Log.d("dumbComputer", "Computer Player sent piece to " + goToTile.getTileIndex());
-
-                    game.sendAction(new MovePieceAction(this, index));
-                    possibleTiles.clear();
-
-                    sendInfo(state);
-                }
+            int move = playout.randomMove(pos);
+            if (move == Move.NONE) {
+                return; //No legal moves, so the game is already over
             }
+            Logger.debugLog("dumbComputer", "Computer Player chose " + Move.toString(move));
+            game.sendAction(new ShogiMoveAction(this, move));
+
         } else if (info instanceof NotYourTurnInfo) {
-            state.setSelecting(true);
-            Log.d("dumbComputer", "It's not the computer's turn.");
-            this.sendInfo(state);
-            return;
+            Logger.debugLog("dumbComputer", "It's not the computer's turn.");
 
         } else if (info instanceof IllegalMoveInfo) {
-            state.setSelecting(false);
-            Log.d("dumbComputer", "Computer Player attempted illegal move.");
-            this.sendInfo(state);
-            return;
+            Logger.debugLog("dumbComputer", "Computer Player attempted illegal move.");
 
         } else {
-            Log.d("dumbComputer", "Computer Player unknown error.");
-            return;
+            Logger.debugLog("dumbComputer", "Computer Player unknown error.");
         }
-
-        Log.d("dumbCheck", "Game Info Class returned: " + info.getClass());
     }
 }
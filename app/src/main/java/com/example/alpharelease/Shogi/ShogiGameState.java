@@ -1,10 +1,12 @@
 package com.example.alpharelease.Shogi;
 
-import android.util.Log;
 import com.example.alpharelease.GameFramework.infoMessage.GameState;
+import com.example.alpharelease.Shogi.Engine.Pieces;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Random;
 
 /**
@@ -28,13 +30,23 @@ public class ShogiGameState extends GameState implements Serializable {
      Solution: Reference the game_piece type rather than it's R.drawable id
      */
 
-    private boolean isInCheck, isInCheckmate, selecting;
+    private boolean isInCheck, isInCheckmate;
     private final Board board;
     private int whoseTurn;
     public ArrayList<Piece> pieces1;
     public ArrayList<Piece> pieces2;
     public ArrayList<Tile> tileArray;
 
+    // A position repeated this many times ends the game (sennichite)
+    public static final int SENNICHITE_COUNT = 4;
+
+    // How many times each position (by Zobrist key) has come up this game
+    private final HashMap<Long, Integer> seenPositions;
+
+    // Every position recorded this game in order, and whether the move into it gave check
+    private final ArrayList<Long> keyHistory;
+    private final ArrayList<Boolean> checkHistory;
+
     /**
      * Current state of the game constructor
      */
@@ -44,27 +56,59 @@ public class ShogiGameState extends GameState implements Serializable {
         pieces1 = new ArrayList<>();
         pieces2 = new ArrayList<>();
         tileArray = new ArrayList<>();
-        selecting = true;
 
         assignPieces();
+        board.getPosition().setSideToMove(whoseTurn);
+        seenPositions = new HashMap<>();
+        keyHistory = new ArrayList<>();
+        checkHistory = new ArrayList<>();
+        recordPosition();
+    }
+
+    /**
+     * Constructor for a new game where the given player moves first, instead
+     * of a random one
+     *
+     * @param firstPlayer the player who moves first (0 or 1)
+     */
+    public ShogiGameState(int firstPlayer) {
+        this();
+        changeTurn(firstPlayer);
+        seenPositions.clear(); //The starting position was recorded with the other side to move
+        keyHistory.clear();
+        checkHistory.clear();
+        recordPosition();
     }
 
     /**
      * Current state of the game deep copy constructor
+     *
+     * @param orig the state to copy; nothing in the copy is shared with it
      */
     public ShogiGameState(ShogiGameState orig) {
+        IdentityHashMap<Piece, Piece> copies = new IdentityHashMap<>();
 
         this.whoseTurn = orig.whoseTurn;
-        this.board = orig.board;
-        this.selecting = orig.selecting;
+        this.board = new Board(orig.board, copies);
+        this.isInCheck = orig.isInCheck;
+        this.isInCheckmate = orig.isInCheckmate;
         this.pieces1 = new ArrayList<>();
         this.pieces2 = new ArrayList<>();
         this.tileArray = new ArrayList<>();
+        this.seenPositions = new HashMap<>(orig.seenPositions);
+        this.keyHistory = new ArrayList<>(orig.keyHistory);
+        this.checkHistory = new ArrayList<>(orig.checkHistory);
 
         // for loop through
-        this.pieces1.addAll(orig.pieces1);
-        this.pieces2.addAll(orig.pieces2);
-        this.tileArray.addAll(orig.tileArray);
+        for (Piece p : orig.pieces1) {
+            this.pieces1.add(Board.copyOf(p, copies));
+        }
+        for (Piece p : orig.pieces2) {
+            this.pieces2.add(Board.copyOf(p, copies));
+        }
+        for (Tile t : orig.tileArray) {
+            this.tileArray.add(board.getTile(t.getTileIndex()));
+        }
     }
 
     /**
@@ -73,6 +117,9 @@ public class ShogiGameState extends GameState implements Serializable {
     private void assignPieces() {
 
         for (Piece.GAME_PIECES piece : Piece.GAME_PIECES.values()) {
+            if (piece.getEngineType() > Pieces.KING) {
+                continue; //Promoted forms come from promoting a piece in place
+            }
             for (int i = 0; i < piece.getAmount(); i++) {
                 switch (piece.getPlayer()) {
                     case 0:
@@ -123,13 +170,6 @@ public class ShogiGameState extends GameState implements Serializable {
 
         for (Piece p : piece) {
             switch (p.pieceType) { //What kind of piece is it
-                case PROMOTED_BISHOP: case PROMOTED_LANCE: case PROMOTED_KNIGHT:
-                case PROMOTED_PAWN: case PROMOTED_ROOK: case PROMOTED_SILVER_GENERAL:
-                case OPP_PROMOTED_BISHOP: case OPP_PROMOTED_SILVER_GENERAL:
-                case OPP_PROMOTED_LANCE: case OPP_PROMOTED_PAWN:
-                case OPP_PROMOTED_KNIGHT: case OPP_PROMOTED_ROOK:
-                    //if it's a promoted piece skip it
-                    break;
                 case PAWN: case OPP_PAWN:
                     p.setRow(frontRow); //up down
                     p.setCol(pawnNum); //side to side
@@ -205,20 +245,13 @@ public class ShogiGameState extends GameState implements Serializable {
 
     public void changeTurn(int playerID) {
         this.whoseTurn = playerID;
+        board.getPosition().setSideToMove(playerID == 1 ? 1 : 0);
     }
 
     public int getWhoseTurn() {
         return whoseTurn;
     }
 
-    public void setSelecting(boolean selecting) {
-        this.selecting = selecting;
-    }
-
-    public boolean isSelecting() {
-        return selecting;
-    }
-
     public Board getBoard() {
         return board;
     }
@@ -248,4 +281,89 @@ public class ShogiGameState extends GameState implements Serializable {
     public void setInCheckmate(boolean inCheckmate) {
         isInCheckmate = inCheckmate;
     }
+
+    /**
+     * Returns the Zobrist key of the current position (pieces on the board,
+     * pieces in the graves and whose turn it is)
+     *
+     * @return the 64 bit position key
+     */
+    public long getKey() {
+        return board.getPosition().getKey();
+    }
+
+    /**
+     * Adds the current position to the repetition history; call once after
+     * every move, once isInCheck is up to date
+     *
+     * @return how many times this position has now come up
+     */
+    public int recordPosition() {
+        Long key = getKey();
+        Integer seen = seenPositions.get(key);
+        int count = seen == null ? 1 : seen + 1;
+        seenPositions.put(key, count);
+        keyHistory.add(key);
+        checkHistory.add(isInCheck);
+        return count;
+    }
+
+    /**
+     * Checks how many times the current position has been recorded
+     *
+     * @return the number of times this position has come up
+     */
+    public int timesSeen() {
+        Integer seen = seenPositions.get(getKey());
+        return seen == null ? 0 : seen;
+    }
+
+    /**
+     * Checks for fourfold repetition, which ends the game: a draw, unless
+     * one player got there by checking with every move (see
+     * {@link #getPerpetualChecker()})
+     *
+     * @return true if the current position has come up four times
+     */
+    public boolean isSennichite() {
+        return timesSeen() >= SENNICHITE_COUNT;
+    }
+
+    /**
+     * Finds the player, if any, whose every move since the current position
+     * first came up gave check. A repetition reached by perpetual check is
+     * lost by the player giving it rather than drawn.
+     *
+     * @return the player giving perpetual check, or -1 if neither did
+     */
+    public int getPerpetualChecker() {
+        int now = keyHistory.size() - 1;
+        if (now < 0) {
+            return -1;
+        }
+        long key = keyHistory.get(now);
+        int first = now;
+        for (int i = now - 2; i >= 0; i -= 2) { //Same side to move, so same parity
+            if (keyHistory.get(i) == key) {
+                first = i;
+            }
+        }
+        if (first == now) {
+            return -1; //Not a repetition
+        }
+
+        // Positions now, now - 2, ... came from the last mover's moves, the rest from the other's
+        int lastMover = 1 - whoseTurn;
+        boolean[] allChecks = {true, true};
+        for (int i = first + 1; i <= now; i++) {
+            int mover = (now - i) % 2 == 0 ? lastMover : 1 - lastMover;
+            if (!checkHistory.get(i)) {
+                allChecks[mover] = false;
+            }
+        }
+        if (allChecks[lastMover]) {
+            return lastMover;
+        }
+        return allChecks[1 - lastMover] ? 1 - lastMover : -1;
+    }
 }
@@ -14,9 +14,8 @@ import com.example.alpharelease.GameFramework.infoMessage.NotYourTurnInfo;
 import com.example.alpharelease.GameFramework.players.GameHumanPlayer;
 import com.example.alpharelease.GameFramework.utilities.Logger;
 import com.example.alpharelease.R;
-import com.example.alpharelease.Shogi.Actions.MovePieceAction;
-import com.example.alpharelease.Shogi.Actions.PromoteAction;
-import com.example.alpharelease.Shogi.Actions.SelectPieceAction;
+import com.example.alpharelease.Shogi.Actions.ShogiMoveAction;
+import com.example.alpharelease.Shogi.Engine.MoveGenerator;
 import java.util.ArrayList;
 
 public class ShogiHumanPlayer extends GameHumanPlayer implements View.OnClickListener, View.OnTouchListener {
@@ -31,9 +30,14 @@ public class ShogiHumanPlayer extends GameHumanPlayer implements View.OnClickLis
     private EditText whichPiece;
 
     boolean pieceIsSelected = false;
+    boolean promoteNext = false; //Promote the selected piece when it moves
     private Tile chosenTile = null, fromThisTile = null, goToTile = null;
     private ArrayList<Tile> possibleTiles = new ArrayList<>();
 
+    // Highlighting runs on the UI thread, so it gets its own generator
+    private final MoveGenerator generator = new MoveGenerator();
+    private final int[] moveBuffer = new int[MoveGenerator.MAX_MOVES];
+
 
     /**
      * Callback method, called when player gets a message
@@ -146,7 +150,9 @@ public class ShogiHumanPlayer extends GameHumanPlayer implements View.OnClickLis
             case R.id.promoButton:
                 if (pieceIsSelected && fromThisTile != null) {
                     Log.i("HUMAN_PROMOTION", "Human promotion!");
-                    game.sendAction(new PromoteAction(this, fromThisTile.getTileIndex()));
+                    promoteNext = !promoteNext; //Toggled, so a second press cancels it
+                    String string = whichPiece.getText().toString().replace(" (PROMOTE)", "");
+                    whichPiece.setText(promoteNext ? string + " (PROMOTE)" : string);
                 }
                 break;
         }
@@ -188,10 +194,10 @@ public class ShogiHumanPlayer extends GameHumanPlayer implements View.OnClickLis
                             //Chosen piece either isn't yours or is empty
                             return false;
                         }
-                        fromThisTile = chosenTile;
-                        game.sendAction(new SelectPieceAction(this, fromThisTile.getTileIndex()));
+                        fromThisTile = chosenTile; //Only this player knows what's selected
                         pieceIsSelected = true;
-                        board.checkMoves(fromThisTile);
+                        promoteNext = false;
+                        board.checkMoves(fromThisTile, generator, moveBuffer);
 
                         String string = "" + fromThisTile.getPiece().pieceType;
                         string = string.replace("OPP_", "");
@@ -207,13 +213,12 @@ public class ShogiHumanPlayer extends GameHumanPlayer implements View.OnClickLis
 
                     } else if (chosenTile.isOccupied() && this.playerNum == chosenTile.getPiece().pieceType.getPlayer()) {
                         //You already selected a piece, but chose a different one
-                        fromThisTile.getPiece().setSelected(false); //Set old piece to unselected
                         board.impossAllTiles(); //Get rid of previous possibilities
 
                         fromThisTile = chosenTile;
-                        game.sendAction(new SelectPieceAction(this, fromThisTile.getTileIndex()));
                         pieceIsSelected = true;
-                        board.checkMoves(fromThisTile);
+                        promoteNext = false;
+                        board.checkMoves(fromThisTile, generator, moveBuffer);
 
                         String string = "" + fromThisTile.getPiece().pieceType;
                         string = string.replace("OPP_", "");
@@ -235,8 +240,9 @@ public class ShogiHumanPlayer extends GameHumanPlayer implements View.OnClickLis
                             return false;
                         }
 
-                        game.sendAction(new MovePieceAction(this, goToTile.getTileIndex()));
+                        game.sendAction(new ShogiMoveAction(this, fromThisTile, goToTile, promoteNext));
                         pieceIsSelected = false;
+                        promoteNext = false;
                         possibleTiles.clear();
 
                         Log.d("HUMAN_MOVED_PLACE", "You placed it at " + goToTile.getTileIndex());
@@ -1,17 +1,15 @@
 package com.example.alpharelease.Shogi;
 
-import android.util.Log;
 import com.example.alpharelease.GameFramework.LocalGame;
 import com.example.alpharelease.GameFramework.actionMessage.GameAction;
 import com.example.alpharelease.GameFramework.players.GamePlayer;
-import com.example.alpharelease.R;
-import com.example.alpharelease.Shogi.Actions.MovePieceAction;
-import com.example.alpharelease.Shogi.Actions.PromoteAction;
-import com.example.alpharelease.Shogi.Actions.SelectPieceAction;
+import com.example.alpharelease.GameFramework.utilities.Logger;
+import com.example.alpharelease.Shogi.Actions.ShogiMoveAction;
 import com.example.alpharelease.Shogi.Actions.SurrenderAction;
+import com.example.alpharelease.Shogi.Engine.Move;
+import com.example.alpharelease.Shogi.Engine.MoveGenerator;
 import com.example.alpharelease.Shogi.Piece;
 import com.example.alpharelease.Shogi.ShogiGameState;
-import java.util.ArrayList;
 /**
  *
  * @author Kathryn Weidman
@@ -24,6 +22,12 @@ import java.util.ArrayList;
  * */
 public class ShogiLocalGame extends LocalGame {
 
+    // Only used on the game thread; players check their own moves with their own
+    private final MoveGenerator generator = new MoveGenerator();
+
+    // The player who resigned, or -1 while nobody has
+    private int surrendered = -1;
+
     public ShogiLocalGame() {
         super();
         super.state = new ShogiGameState();
@@ -47,6 +51,12 @@ public class ShogiLocalGame extends LocalGame {
     @Override
     protected String checkIfGameOver() {
         ShogiGameState state = ((ShogiGameState)super.state);
+        if (surrendered == 0) {
+            return "First Player resigned. Second Player Wins! ";
+        }
+        if (surrendered == 1) {
+            return "Second Player resigned. First Player Wins! ";
+        }
         if(state.isInCheckmate()){
             if(state.getWhoseTurn() == 0) {
                 return "Second Player Wins! ";
@@ -55,157 +65,73 @@ public class ShogiLocalGame extends LocalGame {
                 return "First Player Wins! ";
             }
         }
+        if (state.isSennichite()) {
+            int checker = state.getPerpetualChecker(); //Perpetual check loses instead of drawing
+            if (checker == 0) {
+                return "First Player gave perpetual check. Second Player Wins! ";
+            }
+            if (checker == 1) {
+                return "Second Player gave perpetual check. First Player Wins! ";
+            }
+            return "Draw by repetition! ";
+        }
         return null;
     }
 
     /**
-     * Determine whether selected space is a valid move for selected piece
+     * Checks and plays a move sent as a single ShogiMoveAction, or resigns
+     * the game for a SurrenderAction
      *
      * @param action
-     *     the player interaction that selects the piece
+     *     the player's move
      * @return boolean
-     *     true - if the selected move is inside bounds/valid
-     *     false - if the selected movie is outside bounds/invalid
+     *     true - if the move was legal and has been played, or the player resigned
+     *     false - if it wasn't a move or the player to move can't make it
      *
      */
     @Override
     protected boolean makeMove(GameAction action) {
 
+        if (action instanceof SurrenderAction) {
+            surrendered = ((ShogiGameState)super.state).getWhoseTurn(); //Only the player to move gets here
+            return true;
+        }
+        if (!(action instanceof ShogiMoveAction)) {
+            return false;
+        }
+
         ShogiGameState state = ((ShogiGameState)super.state);
         Board board = state.getBoard();
-        ArrayList<Tile> possibleTiles = new ArrayList<>();
-        Tile fromHere = null;
-
-        if (action instanceof SelectPieceAction) {
-            int tileIndex = ((SelectPieceAction)action).selected;
-            fromHere = board.getTile(tileIndex);
-            Piece piece = fromHere.getPiece();
-
-            board.checkMoves(fromHere);
-            possibleTiles.addAll(board.getPossibleTiles());
-            piece.setSelected(possibleTiles.size() != 0); //False if this piece can't move.
-
-            if (piece.isSelected()) {
-                state.setSelecting(false);
-
-                Log.d("SELECTED A PIECE", "Selected a piece! " + fromHere.getTileIndex() +
-                        " and turn is " + state.getWhoseTurn());
-                return true;
-            }
-
-            Log.d("SELECTED A PIECE (BAD)", "Selected bad!!! " + fromHere.getTileIndex() +
-                    " and turn is " + state.getWhoseTurn());
-
-            return false;  //This piece can't move. Try again
+        ShogiMoveAction moveAction = (ShogiMoveAction) action;
+        int mover = state.getWhoseTurn();
+
+        int move = board.findLegalMove(generator, moveAction.from, moveAction.to, moveAction.promote,
+                moveAction.dropPiece);
+        if (move == Move.NONE) {
+            Logger.debugLog("MOVE A PIECE (BAD)", "Tried to move to " + moveAction.to +
+                    " and turn is " + mover);
+            return false; //Not a legal move for whoever's turn it is
         }
 
-        if (action instanceof MovePieceAction) {
-            Tile goThere = board.getTile(((MovePieceAction) action).destination);
-            int check = 0;
-            // Get orig tile
-            if (check == 0) {
-                for (Tile t : board.getTiles()) {
-                    if (t.getPiece() != null) {
-                        if (t.getPiece().isSelected()) {
-                            fromHere = t;
-                            check = 1;
-                            break;
-                        }
-                    }
-                }
-            } //chck
-            if (check == 0) {
-                for (Tile t : board.getGrave0()) {
-                    if (t.getPiece() != null) {
-                        if (t.getPiece().isSelected()) {
-                            fromHere = t;
-                            check = 1;
-                            break;
-                        }
-                    }
-                }
-            } //chck
-            if (check == 0) {
-                for (Tile t : board.getGrave1()) {
-                    if (t.getPiece() != null) {
-                        if (t.getPiece().isSelected()) {
-                            fromHere = t;
-                            check = 1;
-                            break;
-                        }
-                    }
-                }
-            } // chck
-            // [End] get orig tile
-
-            if (fromHere == null || goThere == null) {
-                return false;
-            }
-
-            board.checkMoves(fromHere);
-            possibleTiles.addAll(board.getPossibleTiles());
-
-            if (possibleTiles.contains(goThere)) {
-
-                if (goThere.isOccupied() && (goThere.getPiece().pieceType == Piece.GAME_PIECES.KING
-                        || goThere.getPiece().pieceType == Piece.GAME_PIECES.OPP_KING)) {
-                    state.setInCheckmate(true);
-                } //They snatched the king!
-
-                Piece p = goThere.getPiece();
-                if (p != null) {
-                    p.setAlive(false);
-                    p.setOnBoard(false);
-                    p.changeTeams();
-                    board.addToGrave(p,state.getWhoseTurn());
-                }
-
-                state.changeTurn(1 - fromHere.getPiece().getThePlayer()); //Change turn
-                if (!fromHere.getPiece().isAlive()) {
-                    fromHere.getPiece().setAlive(true);
-                    // change moveset since changed team
-                    fromHere.getPiece().setMoveNumAfterDrop();
-                    fromHere.getPiece().changeDirection();
-                }
-                if (!fromHere.getPiece().isOnBoard()) {
-                    fromHere.getPiece().setOnBoard(true);
-                }
-                goThere.setPiece(fromHere.getPiece());
-                fromHere.getPiece().setSelected(false);
-                fromHere.setPiece(null);
-
-                board.impossAllTiles();
-                state.setSelecting(true);
-
-                Log.d("MOVE A PIECE", "Moved to "  + goThere.getTileIndex() +
-                        " and turn is " + state.getWhoseTurn());
-
-                return true;
-            }
-
-            Log.d("MOVE A PIECE (BAD)", "Tried to move to "  + goThere.getTileIndex() +
-                    " and turn is " + state.getWhoseTurn());
+        Tile fromHere = board.getMoveTile(move, mover); //A grave tile for drops
+        Tile goThere = board.getTile(Move.to(move));
+        if (fromHere == null) {
+            return false; //The hand and the grave disagree
+        }
+        board.movePiece(fromHere, goThere, mover);
+        if (Move.isPromote(move)) {
+            board.promote(goThere);
+        }
 
-            state.setSelecting(false);
-            return false; //Can't move because chosen place is invalid
-        } //End of movepieceaction case
+        state.changeTurn(1 - mover); //Change turn
+        state.setInCheck(board.isInCheck(generator, 1 - mover));
+        state.setInCheckmate(board.isCheckmate(generator)); //No legal way out of check
+        state.recordPosition();
+        board.impossAllTiles();
 
-        if (action instanceof PromoteAction){
-            fromHere = board.getTile(((PromoteAction) action).SelectedIndex);
+        Logger.debugLog("MOVE A PIECE", "Moved to "  + goThere.getTileIndex() +
+                " and turn is " + state.getWhoseTurn());
 
-            if (!board.canPromote(fromHere)) {
-                return false;
-            }
-
-            board.promote(fromHere, state,state.getWhoseTurn());
-            state.changeTurn(1 - fromHere.getPiece().pieceType.getPlayer()); //Change turn
-            fromHere.getPiece().setSelected(false);
-            fromHere.getPiece().setPromoted(true);
-            fromHere = null;
-            state.setSelecting(true);
-            board.impossAllTiles();
-            return true;
-        }
-        return false;
+        return true;
     }
 }
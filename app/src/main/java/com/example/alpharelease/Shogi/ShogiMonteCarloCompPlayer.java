@@ -0,0 +1,98 @@
+package com.example.alpharelease.Shogi;
+
+import com.example.alpharelease.GameFramework.infoMessage.GameInfo;
+import com.example.alpharelease.GameFramework.infoMessage.IllegalMoveInfo;
+import com.example.alpharelease.GameFramework.infoMessage.NotYourTurnInfo;
+import com.example.alpharelease.GameFramework.players.GameComputerPlayer;
+import com.example.alpharelease.GameFramework.utilities.Logger;
+import com.example.alpharelease.Shogi.Actions.ShogiMoveAction;
+import com.example.alpharelease.Shogi.Engine.MonteCarloSearch;
+import com.example.alpharelease.Shogi.Engine.Move;
+import com.example.alpharelease.Shogi.Engine.Position;
+
+/**
+ * Computer player that picks its moves by Monte Carlo tree search (see
+ * {@link MonteCarloSearch}) instead of alpha-beta. It plays a looser, more
+ * varied game than the Less Dumb player and gets stronger with every core
+ * it is given.
+ */
+public class ShogiMonteCarloCompPlayer extends GameComputerPlayer {
+
+    // Time the computer gets to think about each move
+    public static final long MOVE_TIME_MILLIS = 2000;
+
+    private ShogiGameState state;
+    private final MonteCarloSearch search;
+    private long moveMillis = MOVE_TIME_MILLIS;
+
+    /**
+     * Constructor for a Monte Carlo computer player
+     *
+     * @param name the player's name
+     * @param threads how many threads grow the search tree
+     */
+    public ShogiMonteCarloCompPlayer(String name, int threads) {
+        super(name);
+        search = new MonteCarloSearch(threads, MonteCarloSearch.DEFAULT_NODES, true);
+    }
+
+    /**
+     * Changes how long the computer thinks about each move
+     *
+     * @param millis the time per move in milliseconds
+     */
+    public void setMoveTime(long millis) {
+        moveMillis = millis;
+    }
+
+    /**
+     * Receives information about the gamestate and then searches for the best move
+     *
+     * @param info the information typically containing the gamestate
+     */
+    @Override
+    protected void receiveInfo(GameInfo info) {
+
+        if (info instanceof ShogiGameState) {
+            state = new ShogiGameState((ShogiGameState) info);
+
+            if (state.getWhoseTurn() != this.playerNum) {
+                Logger.debugLog("monteCarloComputer", "It's not the computer's turn.");
+                return;
+            } // Not this player's turn
+
+            Board board = state.getBoard();
+            Position pos = new Position(board.getPosition()); //Search a copy, not the real board
+            pos.setSideToMove(this.playerNum);
+
+            int move = search.think(pos, moveMillis, Long.MAX_VALUE);
+            Logger.log("monteCarloComputer", "Ran " + search.getPlayouts() + " playouts on "
+                    + search.getThreads() + " thread(s) in " + search.getElapsed() + " ms ("
+                    + search.playoutsPerSecond() + " playouts/s, " + search.getReusedVisits()
+                    + " kept from the last move), best " + Move.toString(move) + " winning "
+                    + Math.round(100 * search.getWinRate()) + "%");
+
+            if (move == Move.NONE) {
+                return; //No legal moves, so the game is already over
+            }
+            game.sendAction(new ShogiMoveAction(this, move));
+
+        } else if (info instanceof NotYourTurnInfo) {
+            Logger.debugLog("monteCarloComputer", "It's not the computer's turn.");
+
+        } else if (info instanceof IllegalMoveInfo) {
+            Logger.debugLog("monteCarloComputer", "Computer Player attempted illegal move.");
+
+        } else {
+            Logger.debugLog("monteCarloComputer", "Computer Player unknown error.");
+        }
+    }
+
+    /**
+     * Lets the search's threads go once the game is over
+     */
+    @Override
+    protected void gameEnded() {
+        search.shutdown();
+    }
+}
@@ -1,37 +1,123 @@
 package com.example.alpharelease.Shogi;
 
-import android.util.Log;
 import com.example.alpharelease.GameFramework.infoMessage.GameInfo;
 import com.example.alpharelease.GameFramework.infoMessage.IllegalMoveInfo;
 import com.example.alpharelease.GameFramework.infoMessage.NotYourTurnInfo;
 import com.example.alpharelease.GameFramework.players.GameComputerPlayer;
-import com.example.alpharelease.R;
-import com.example.alpharelease.Shogi.Actions.MovePieceAction;
-import com.example.alpharelease.Shogi.Actions.PromoteAction;
-import com.example.alpharelease.Shogi.Actions.SelectPieceAction;
-import java.util.ArrayList;
-import java.util.Collections;
+import com.example.alpharelease.GameFramework.utilities.Logger;
+import com.example.alpharelease.Shogi.Actions.ShogiMoveAction;
+import com.example.alpharelease.Shogi.Engine.Evaluator;
+import com.example.alpharelease.Shogi.Engine.Move;
+import com.example.alpharelease.Shogi.Engine.MoveGenerator;
+import com.example.alpharelease.Shogi.Engine.OpeningBook;
+import com.example.alpharelease.Shogi.Engine.ParallelSearch;
+import com.example.alpharelease.Shogi.Engine.Position;
+import com.example.alpharelease.Shogi.Engine.Search;
+import com.example.alpharelease.Shogi.Engine.TranspositionTable;
+import com.example.alpharelease.Shogi.Engine.TsumeSolver;
+
 import java.util.Random;
 
+/**
+ * Computer player that searches for its move (iterative deepening alpha-beta,
+ * see {@link Search}) on this player's own thread, optionally helped by more
+ * threads sharing its transposition table (see {@link ParallelSearch}). Before
+ * searching it looks for a forced mate with a small node budget (see
+ * {@link TsumeSolver}) and plays it if there is one. While the game is still
+ * in its opening book (see {@link OpeningBook}) it plays a book move and
+ * doesn't search at all. After moving it ponders on the opponent's time, so
+ * when the expected reply comes the search is already well under way.
+ *
+ * @author Kathryn Weidman
+ * @author Emma Kelly
+ * @author Brent Torres
+ * @author Matthew Tran
+ *
+ * @version 12/13/2022
+ *
+ * */
 public class ShogiSmartCompPlayer extends GameComputerPlayer {
-    /**
-     External Citation
-     Date: 23 November 2022
-     Problem: Computer was incredibly buggy and would stall/crash at irregular intervals
-     Resource: Nathaniel Hopper
-     Solution: The computer was iterating an incredible number of times.
-     Made it shuffle through the possible tiles instead of the whole board.
-     */
+
+    // Time the computer gets to think about each move
+    public static final long MOVE_TIME_MILLIS = 2000;
+
+    // Memory for the transposition table, which is kept from move to move
+    public static final int HASH_MB = 16;
+
+    // Positions the mate solver may look at before the real search starts
+    public static final long TSUME_NODES = 20000;
+    public static final int TSUME_HASH_MB = 4;
+
+    // Longest the computer ponders while waiting for the opponent
+    public static final long PONDER_MILLIS = 60000;
 
     private ShogiGameState state;
-    private ArrayList<Tile> possibleTiles = new ArrayList<>();
+    private final ParallelSearch search;
+    private final TsumeSolver tsume = new TsumeSolver(TSUME_HASH_MB);
+    private final OpeningBook book;
+    private final MoveGenerator generator = new MoveGenerator();
+    private final Random random = new Random();
+    private long moveMillis = MOVE_TIME_MILLIS;
+    private long tsumeNodes = TSUME_NODES;
+    private boolean ponder = true;
 
     public ShogiSmartCompPlayer(String name) {
+        this(name, 1);
+    }
+
+    public ShogiSmartCompPlayer(String name, int threads) {
+        this(name, threads, null);
+    }
+
+    /**
+     * Constructor for a computer player searching with several threads
+     *
+     * @param name the player's name
+     * @param threads how many threads search each move
+     * @param book the opening book to play from, or null to always search
+     */
+    public ShogiSmartCompPlayer(String name, int threads, OpeningBook book) {
+        this(name, threads, book, Evaluator.CLASSICAL);
+    }
+
+    /**
+     * Constructor for a computer player with its own evaluation
+     *
+     * @param name the player's name
+     * @param threads how many threads search each move
+     * @param book the opening book to play from, or null to always search
+     * @param evaluator scores positions for the search (see {@link Evaluator})
+     */
+    public ShogiSmartCompPlayer(String name, int threads, OpeningBook book, Evaluator evaluator) {
         super(name);
+        search = new ParallelSearch(threads, new TranspositionTable(HASH_MB), evaluator);
+        this.book = book;
     }
 
     /**
-     * Receives information about the gamestate and then makes a random move based on that
+     * Changes how long the computer thinks about each move; the mate solver's
+     * budget grows or shrinks with it
+     *
+     * @param millis the time per move in milliseconds
+     */
+    public void setMoveTime(long millis) {
+        moveMillis = millis;
+        tsumeNodes = Math.max(1, TSUME_NODES * millis / MOVE_TIME_MILLIS);
+    }
+
+    /**
+     * Turns pondering on the opponent's time on or off; games played side by
+     * side (see {@link Tournament}) turn it off so a pondering player doesn't
+     * take CPU from the games next to it
+     *
+     * @param ponder whether to ponder after each move
+     */
+    public void setPonder(boolean ponder) {
+        this.ponder = ponder;
+    }
+
+    /**
+     * Receives information about the gamestate and then searches for the best move
      *
      * @param info the information typically containing the gamestate
      */
@@ -42,81 +128,86 @@ public class ShogiSmartCompPlayer extends GameComputerPlayer {
             state = new ShogiGameState((ShogiGameState) info);
 
             if (state.getWhoseTurn() != this.playerNum) {
-                Log.d("smartComputer", "It's not the computer's turn.");
+                Logger.debugLog("smartComputer", "It's not the computer's turn.");
                 return;
-            } // Not Dumb Computer Player's turn
-
-            if (state.getWhoseTurn() == this.playerNum) { //The computers turn
-                sleep(.5);
-
-                Random rand = new Random();
-                Board board = state.getBoard();
-                Tile fromThisTile = null, goToTile = null;
-                ArrayList<Piece> pieces = state.getPieceArray(this.playerNum);
-                int randIndex = rand.nextInt(pieces.size());
-                if (state.isSelecting()) {
-                    while (pieces.get(randIndex) == null || !pieces.get(randIndex).isAlive() ||
-                            !pieces.get(randIndex).isOnBoard()) {
-                        //Chosen piece either is null, dead, or not on board so try again
-                        randIndex = rand.nextInt(pieces.size());
-                    }
-
-                    fromThisTile = board.getTile(pieces.get(randIndex).getCol(), pieces.get(randIndex).getRow());
-
-                    game.sendAction(new SelectPieceAction(this, fromThisTile.getTileIndex()));
-
-                    board.checkMoves(fromThisTile);
-                    possibleTiles.addAll(board.getPossibleTiles());
-                    state.setSelecting(false);
-
-                    Log.d("smartComputer", "Computer Player chose " + fromThisTile.getTileIndex());
-
-                    if (!fromThisTile.getPiece().getPromoted() && board.canPromote(fromThisTile)) {
-                        game.sendAction(new PromoteAction(this, fromThisTile.getTileIndex()));
-
-                    } else {
-                        Collections.shuffle(possibleTiles);
-                        if (possibleTiles.size() == 0) {
-                            state.setSelecting(true);
-                            return;
-                        }
-                        goToTile = possibleTiles.get(0);
-
-                        //Smart AI implementation: if piece is able to capture another piece, capture it
-                        for (int i = 0; i < possibleTiles.size(); i++) {
-                            if (possibleTiles.get(i).isOccupied() == true) {
-                                goToTile = possibleTiles.get(i);
-                                break;
-                            }
-                        }
-                        int index = board.getTiles().indexOf(goToTile);
-                        //Log.d("computerTrack", "Computer sent a piece to: " + goToTile.getTileIndex());
-                        Log.d("smartComputer", "Computer Player sent piece to " + goToTile.getTileIndex());
-
-                        game.sendAction(new MovePieceAction(this, index));
-                    }
-                    possibleTiles.clear();
-
-                    sendInfo(state);
+            } // Not Smart Computer Player's turn
+
+            Board board = state.getBoard();
+            Position pos = new Position(board.getPosition()); //Search a copy, not the real board
+            pos.setSideToMove(this.playerNum);
+
+            //A ponder that guessed right keeps running while the mate solver looks
+            int move = bookMove(pos);
+            boolean ponderHit = search.isPondering(pos.getKey());
+            if (move != Move.NONE) {
+                search.stopPondering();
+                Logger.log("smartComputer", "Playing book move " + Move.toString(move));
+            } else if (tsume.solve(pos, tsumeNodes) == TsumeSolver.MATE) {
+                search.stopPondering();
+                move = tsume.getMateSequence()[0];
+                Logger.log("smartComputer", "Found mate in " + tsume.getMateSequence().length
+                        + " after " + tsume.getNodes() + " nodes, playing " + Move.toString(move));
+            } else {
+                if (ponderHit) {
+                    move = search.ponderHit(moveMillis);
+                } else {
+                    search.stopPondering(); //Guessed wrong, but the table is warm
+                    move = search.think(pos, moveMillis, Search.MAX_PLY);
                 }
+                Logger.log("smartComputer", (ponderHit ? "Ponder hit, searched " : "Searched ")
+                        + search.getNodes() + " nodes on "
+                        + search.getThreads() + " thread(s) to depth "
+                        + search.getDepth() + " in " + search.getElapsed() + " ms ("
+                        + search.nodesPerSecond() + " nodes/s), best " + Move.toString(move)
+                        + " scoring " + search.getScore() + ", "
+                        + Math.round(100 * search.firstMoveCutoffRate()) + "% of cutoffs on the first move");
             }
+
+            if (move == Move.NONE) {
+                return; //No legal moves, so the game is already over
+            }
+            game.sendAction(new ShogiMoveAction(this, move));
+            Logger.debugLog("smartComputer", "Computer Player sent piece to " + Move.to(move));
+
+            if (ponder) {
+                pos.makeMove(move);
+                search.ponder(pos, PONDER_MILLIS, Search.MAX_PLY);
+            }
+
         } else if (info instanceof NotYourTurnInfo) {
-            state.setSelecting(true);
-            Log.d("smartComputer", "It's not the computer's turn.");
-            this.sendInfo(state);
-            return;
+            Logger.debugLog("smartComputer", "It's not the computer's turn.");
 
         } else if (info instanceof IllegalMoveInfo) {
-            state.setSelecting(false);
-            Log.d("smartComputer", "Computer Player attempted illegal move.");
-            this.sendInfo(state);
-            return;
+            Logger.debugLog("smartComputer", "Computer Player attempted illegal move.");
 
         } else {
-            Log.d("smartComputer", "Computer Player unknown error.");
-            return;
+            Logger.debugLog("smartComputer", "Computer Player unknown error.");
         }
+    }
+
+    /**
+     * Stops pondering once there is nothing left to wait for
+     */
+    @Override
+    protected void gameEnded() {
+        search.stopPondering();
+    }
 
-        Log.d("smartCheck", "Game Info Class returned: " + info.getClass());
+    /**
+     * Picks a move from the opening book, if the position is in it
+     *
+     * @param pos the position to move in
+     * @return a legal book move, or Move.NONE if there isn't one
+     */
+    private int bookMove(Position pos) {
+        if (book == null) {
+            return Move.NONE;
+        }
+        int move = book.choose(pos.getKey(), random);
+        if (move != Move.NONE && generator.isPseudoLegal(pos, move)
+                && generator.isLegal(pos, move, this.playerNum)) {
+            return move;
+        }
+        return Move.NONE; //Out of book, or a key collision with a book position
     }
 }
@@ -37,14 +37,28 @@ public class Tile implements Serializable {
         xCoord = yCoord = xCoordEnd = yCoordEnd = 0;
         isOccupied = possible = false;
         piece = null;
+        //The paints are made when the tile is first drawn, so a board can be
+        //set up where there's nothing to draw on (the tournament, unit tests)
+    }
 
-        tilePaint = new Paint();
-        emptyPaint = new Paint();
-        emptyPaint.setColor(Color.TRANSPARENT);
-        possPaint = new Paint();
-        possPaint.setARGB(255/2, 100, 155, 100);
-
-        tilePaint.setColor(emptyPaint.getColor());
+    /**
+     * Copy constructor for Tile; the paints are made again when it's drawn
+     *
+     * @param orig the tile to copy
+     * @param piece the piece on the copy, which the caller copies so tiles
+     *              and piece lists stay linked (null if empty)
+     */
+    public Tile(Tile orig, Piece piece) {
+        row = orig.row;
+        col = orig.col;
+        tileIndex = orig.tileIndex;
+        xCoord = orig.xCoord;
+        yCoord = orig.yCoord;
+        xCoordEnd = orig.xCoordEnd;
+        yCoordEnd = orig.yCoordEnd;
+        isOccupied = orig.isOccupied;
+        possible = orig.possible;
+        this.piece = piece;
     }
 
     /**
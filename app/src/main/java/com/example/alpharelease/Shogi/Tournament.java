@@ -0,0 +1,558 @@
+package com.example.alpharelease.Shogi;
+
+import com.example.alpharelease.GameFramework.Game;
+import com.example.alpharelease.GameFramework.actionMessage.GameAction;
+import com.example.alpharelease.GameFramework.infoMessage.BindGameInfo;
+import com.example.alpharelease.GameFramework.infoMessage.GameOverInfo;
+import com.example.alpharelease.GameFramework.infoMessage.GameState;
+import com.example.alpharelease.GameFramework.infoMessage.StartGameInfo;
+import com.example.alpharelease.GameFramework.players.GameComputerPlayer;
+import com.example.alpharelease.GameFramework.players.GamePlayer;
+import com.example.alpharelease.GameFramework.utilities.Logger;
+import com.example.alpharelease.Shogi.Actions.ShogiMoveAction;
+import com.example.alpharelease.Shogi.Engine.Move;
+import com.example.alpharelease.Shogi.Engine.MoveGenerator;
+import com.example.alpharelease.Shogi.Engine.Playout;
+import com.example.alpharelease.Shogi.Engine.Position;
+import com.example.alpharelease.Shogi.Engine.Sfen;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Plays two computer players against each other many times over, without
+ * Android: each game is a ShogiLocalGame whose players are fed their infos
+ * directly on a worker thread (see GameComputerPlayer.receiveNow), so the
+ * moves go through exactly the same rules as on the phone.
+ *
+ * Games come in pairs that start from the same randomized opening, once with
+ * each player moving first. Every player gets the same time per move and
+ * loses a game if it runs well over. A game that drags on past the ply limit
+ * is a draw, and one where a side stays far ahead on material is given to
+ * that side. Each finished game is written out as a line as soon as it ends.
+ *
+ * With SPRT bounds set (see {@link #setSprt}), the match stops early as soon
+ * as the results show the first player is either at least elo1 stronger or
+ * at most elo0 stronger than the second. From the command line:
+ *      ./gradlew tournament --args="playerA playerB [games] [millisPerMove] [concurrency] [resultFile]"
+ * where a player is dumb, smart[:threads] or mcts[:threads]. The players log
+ * through Logger, which writes to System.err off Android; main turns its
+ * debug mode off so only warnings and errors show up.
+ */
+public class Tournament {
+
+    // Random plies played from the starting position before a game begins
+    public static final int DEFAULT_OPENING_PLIES = 8;
+
+    // Plies after which a game is called a draw
+    public static final int DEFAULT_MAX_PLIES = 320;
+
+    // Material lead (side 0's view, see Position.getMaterial) that wins a game
+    // once it has lasted ADJUDICATE_PLIES plies in a row
+    public static final int ADJUDICATE_MARGIN = 3000;
+    public static final int ADJUDICATE_PLIES = 12;
+
+    // How far over the time per move a player may go before it loses on time
+    public static final long TIME_MARGIN_MILLIS = 1000;
+
+    // Game results, from the first player's point of view
+    public static final int LOSS = 0;
+    public static final int DRAW = 1;
+    public static final int WIN = 2;
+
+    /**
+     * Makes fresh computer players, one for every game
+     */
+    public interface PlayerFactory {
+
+        /**
+         * Creates a player
+         *
+         * @param name the player's name
+         * @param moveMillis the time the player gets for each move
+         * @return the player
+         */
+        GameComputerPlayer create(String name, long moveMillis);
+    }
+
+    private final PlayerFactory first;
+    private final PlayerFactory second;
+    private final long moveMillis;
+    private int openingPlies = DEFAULT_OPENING_PLIES;
+    private int maxPlies = DEFAULT_MAX_PLIES;
+    private int concurrency = 1;
+    private long seed = System.nanoTime();
+
+    // SPRT setup; no test when alpha is 0
+    private double elo0, elo1, alpha, beta;
+
+    private int wins, draws, losses;
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    /**
+     * Constructor for a match between two players
+     *
+     * @param first makes the first player, whose results are counted
+     * @param second makes its opponent
+     * @param moveMillis the time each player gets for each move
+     */
+    public Tournament(PlayerFactory first, PlayerFactory second, long moveMillis) {
+        this.first = first;
+        this.second = second;
+        this.moveMillis = moveMillis;
+    }
+
+    /**
+     * Sets how many random plies each opening has
+     *
+     * @param plies the number of plies, 0 to always start from the usual position
+     */
+    public void setOpeningPlies(int plies) {
+        openingPlies = plies;
+    }
+
+    /**
+     * Sets the ply limit after which a game is drawn
+     *
+     * @param plies the most plies a game may last
+     */
+    public void setMaxPlies(int plies) {
+        maxPlies = plies;
+    }
+
+    /**
+     * Sets how many games are played at once
+     *
+     * @param games the number of games (and threads)
+     */
+    public void setConcurrency(int games) {
+        concurrency = Math.max(1, games);
+    }
+
+    /**
+     * Sets the seed the openings are picked with
+     *
+     * @param seed the random seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Turns on the sequential probability ratio test: the match stops once
+     * the first player is shown to be elo1 stronger, or no more than elo0
+     * stronger
+     *
+     * @param elo0 the Elo difference of the null hypothesis
+     * @param elo1 the Elo difference of the alternative hypothesis
+     * @param alpha the chance of accepting elo1 when elo0 is true
+     * @param beta the chance of accepting elo0 when elo1 is true
+     */
+    public void setSprt(double elo0, double elo1, double alpha, double beta) {
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+
+    /**
+     * Plays the match, writing a line for each game and a summary at the end
+     *
+     * @param games the most games to play (rounded up to an even number)
+     * @param out where the results go
+     * @throws InterruptedException if interrupted while waiting for the games
+     */
+    public void run(int games, final PrintStream out) throws InterruptedException {
+        out.println("# game movedFirst movedSecond result(first player) plies reason opening");
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        for (int pair = 0; pair < (games + 1) / 2; pair++) {
+            for (int swap = 0; swap < 2; swap++) {
+                final int game = 2 * pair + swap;
+                final long openingSeed = seed + pair;
+                final boolean firstMovesFirst = swap == 0;
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!stopped.get()) {
+                            playGame(game, openingSeed, firstMovesFirst, out);
+                        }
+                    }
+                });
+            }
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        out.println("# " + summary());
+        out.flush();
+    }
+
+    /**
+     * Plays one game and counts its result
+     *
+     * @param index the game's number
+     * @param openingSeed picks the opening
+     * @param firstMovesFirst whether the first player makes the first move
+     * @param out where the result line goes
+     */
+    private void playGame(int index, long openingSeed, boolean firstMovesFirst, PrintStream out) {
+        ShogiLocalGame local = new ShogiLocalGame(new ShogiGameState(0));
+        String opening = playOpening(local, openingSeed);
+
+        HeadlessGame game = new HeadlessGame(local);
+        int firstSeat = firstMovesFirst ? 0 : 1;
+        GameComputerPlayer[] seats = new GameComputerPlayer[2];
+        seats[firstSeat] = first.create("first", moveMillis);
+        seats[1 - firstSeat] = second.create("second", moveMillis);
+        game.players = seats;
+        String[] names = new String[2];
+        names[firstSeat] = "first";
+        names[1 - firstSeat] = "second";
+        for (int seat = 0; seat < 2; seat++) {
+            seats[seat].receiveNow(new BindGameInfo(game, seat));
+            seats[seat].receiveNow(new StartGameInfo(names));
+        }
+
+        MoveGenerator generator = new MoveGenerator();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int winner = -1; //Seat that won, or -1 for a draw
+        String reason;
+        int plies = 0;
+        int leader = -1, leadPlies = 0;
+        while (true) {
+            ShogiGameState state = (ShogiGameState) local.getGameState();
+            int turn = state.getWhoseTurn();
+            if (local.checkIfGameOver() != null) {
+                if (state.isInCheckmate()) {
+                    winner = 1 - turn;
+                    reason = "mate";
+                } else if (state.getPerpetualChecker() != -1) {
+                    winner = 1 - state.getPerpetualChecker();
+                    reason = "perpetual check";
+                } else {
+                    reason = "repetition";
+                }
+                break;
+            }
+            if (plies >= maxPlies) {
+                reason = "ply limit";
+                break;
+            }
+
+            int material = state.getBoard().getPosition().getMaterial();
+            int ahead = material >= ADJUDICATE_MARGIN ? 0 : material <= -ADJUDICATE_MARGIN ? 1 : -1;
+            leadPlies = ahead != -1 && ahead == leader ? leadPlies + 1 : 0;
+            leader = ahead;
+            if (leader != -1 && leadPlies >= ADJUDICATE_PLIES) {
+                winner = leader;
+                reason = "material";
+                break;
+            }
+
+            long start = System.currentTimeMillis();
+            seats[turn].receiveNow(new ShogiGameState(state));
+            long elapsed = System.currentTimeMillis() - start;
+
+            if (((ShogiGameState) local.getGameState()).getWhoseTurn() == turn) {
+                Position pos = new Position(state.getBoard().getPosition());
+                winner = 1 - turn;
+                reason = generator.generateLegal(pos, moves) == 0 ? "no moves" : "no move made";
+                break;
+            }
+            plies++;
+            if (elapsed > moveMillis + TIME_MARGIN_MILLIS) {
+                winner = 1 - turn;
+                reason = "time (" + elapsed + " ms)";
+                break;
+            }
+        }
+
+        String message = winner == -1 ? "Draw! " : names[winner] + " Wins! ";
+        for (int seat = 0; seat < 2; seat++) {
+            seats[seat].receiveNow(new GameOverInfo(message));
+        }
+
+        int result = winner == -1 ? DRAW : winner == firstSeat ? WIN : LOSS;
+        record(result);
+        synchronized (out) {
+            out.println(index + " " + (firstMovesFirst ? "first second " : "second first ")
+                    + (result == WIN ? "1-0" : result == LOSS ? "0-1" : "1/2") + " " + plies
+                    + " " + reason.replace(' ', '_') + " " + opening);
+            out.flush();
+        }
+    }
+
+    /**
+     * Plays random moves to start a game from, through the game's own rules
+     *
+     * @param local the freshly set up game
+     * @param openingSeed picks the moves; the same seed gives the same opening
+     * @return the opening position as SFEN
+     */
+    private String playOpening(ShogiLocalGame local, long openingSeed) {
+        Playout playout = new Playout(openingSeed);
+        for (int ply = 0; ply < openingPlies; ply++) {
+            ShogiGameState state = (ShogiGameState) local.getGameState();
+            Board board = state.getBoard();
+            Position pos = new Position(board.getPosition());
+            int move = playout.randomMove(pos);
+            if (move == Move.NONE || state.isInCheckmate()) {
+                break; //Not much of an opening, but still the same one for both games
+            }
+            local.makeMove(new ShogiMoveAction(null, move));
+        }
+        return Sfen.toString(((ShogiGameState) local.getGameState()).getBoard().getPosition())
+                .replace(' ', '_');
+    }
+
+    /**
+     * Counts a finished game and runs the SPRT on the results so far
+     *
+     * @param result the first player's result
+     */
+    private synchronized void record(int result) {
+        if (result == WIN) {
+            wins++;
+        } else if (result == DRAW) {
+            draws++;
+        } else {
+            losses++;
+        }
+        if (alpha > 0) {
+            double llr = llr(wins, draws, losses, elo0, elo1);
+            if (llr >= Math.log((1 - beta) / alpha) || llr <= Math.log(beta / (1 - alpha))) {
+                stopped.set(true); //Games already under way still finish and count
+            }
+        }
+    }
+
+    /**
+     * Describes the results so far: the score, the Elo difference with its
+     * 95% error margin and, if on, where the SPRT stands
+     *
+     * @return the summary
+     */
+    public synchronized String summary() {
+        int games = wins + draws + losses;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("games %d: +%d =%d -%d", games, wins, draws, losses));
+        if (wins + draws > 0 && losses + draws > 0) { //No estimate from a clean sweep
+            sb.append(String.format(", Elo %.1f +/- %.1f", elo(wins, draws, losses),
+                    eloMargin(wins, draws, losses)));
+        }
+        if (alpha > 0) {
+            double llr = llr(wins, draws, losses, elo0, elo1);
+            double lower = Math.log(beta / (1 - alpha));
+            double upper = Math.log((1 - beta) / alpha);
+            sb.append(String.format(", SPRT [%.1f, %.1f] LLR %.2f (%.2f, %.2f)", elo0, elo1, llr,
+                    lower, upper));
+            sb.append(llr >= upper ? " H1 accepted" : llr <= lower ? " H0 accepted" : " inconclusive");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Wins, draws and losses of the first player so far
+     *
+     * @return the three counts
+     */
+    public synchronized int[] getResults() {
+        return new int[]{wins, draws, losses};
+    }
+
+    /**
+     * Whether the SPRT has ended the match early
+     *
+     * @return true if it has
+     */
+    public boolean isStopped() {
+        return stopped.get();
+    }
+
+    /**
+     * Estimates the Elo difference a score stands for
+     *
+     * @param wins games won
+     * @param draws games drawn
+     * @param losses games lost
+     * @return the Elo difference, infinite for an all-win or all-loss score
+     */
+    public static double elo(int wins, int draws, int losses) {
+        double score = (wins + draws / 2.0) / (wins + draws + losses);
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    /**
+     * Half the width of the 95% confidence interval of the Elo estimate
+     *
+     * @param wins games won
+     * @param draws games drawn
+     * @param losses games lost
+     * @return the margin in Elo
+     */
+    public static double eloMargin(int wins, int draws, int losses) {
+        int games = wins + draws + losses;
+        double score = (wins + draws / 2.0) / games;
+        double deviation = Math.sqrt(variance(wins, draws, losses, score) / games);
+        double high = Math.min(score + 1.96 * deviation, 1);
+        double low = Math.max(score - 1.96 * deviation, 0);
+        return (-400 * Math.log10(1 / high - 1) + 400 * Math.log10(1 / low - 1)) / 2;
+    }
+
+    /**
+     * The log-likelihood ratio of elo1 against elo0, using the normal
+     * approximation to the win/draw/loss results (as in fishtest's GSPRT)
+     *
+     * @param wins games won
+     * @param draws games drawn
+     * @param losses games lost
+     * @param elo0 the Elo difference of the null hypothesis
+     * @param elo1 the Elo difference of the alternative hypothesis
+     * @return the LLR, 0 before any games
+     */
+    public static double llr(int wins, int draws, int losses, double elo0, double elo1) {
+        int games = wins + draws + losses;
+        if (games == 0) {
+            return 0;
+        }
+        double score = (wins + draws / 2.0) / games;
+        //Half a game more of each result, so a clean sweep still has some variance
+        double variance = variance(wins + 0.5, draws + 0.5, losses + 0.5, score);
+        double s0 = 1 / (1 + Math.pow(10, -elo0 / 400));
+        double s1 = 1 / (1 + Math.pow(10, -elo1 / 400));
+        return games * (s1 - s0) * (2 * score - s0 - s1) / (2 * variance);
+    }
+
+    /**
+     * Variance of a single game's score
+     *
+     * @param wins games won
+     * @param draws games drawn
+     * @param losses games lost
+     * @param score the average score
+     * @return the variance
+     */
+    private static double variance(double wins, double draws, double losses, double score) {
+        return (wins * (1 - score) * (1 - score) + draws * (0.5 - score) * (0.5 - score)
+                + losses * score * score) / (wins + draws + losses);
+    }
+
+    /**
+     * Makes players from a command line description: dumb, smart[:threads]
+     * or mcts[:threads]
+     *
+     * @param spec the description
+     * @return the factory
+     */
+    public static PlayerFactory parsePlayer(String spec) {
+        String[] parts = spec.split(":");
+        final int threads = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+        if (parts[0].equals("dumb")) {
+            return new PlayerFactory() {
+                @Override
+                public GameComputerPlayer create(String name, long moveMillis) {
+                    return new ShogiDumbCompPlayer(name);
+                }
+            };
+        } else if (parts[0].equals("smart")) {
+            return new PlayerFactory() {
+                @Override
+                public GameComputerPlayer create(String name, long moveMillis) {
+                    ShogiSmartCompPlayer player = new ShogiSmartCompPlayer(name, threads);
+                    player.setMoveTime(moveMillis);
+                    player.setPonder(false); //It would only slow down the other games
+                    return player;
+                }
+            };
+        } else if (parts[0].equals("mcts")) {
+            return new PlayerFactory() {
+                @Override
+                public GameComputerPlayer create(String name, long moveMillis) {
+                    ShogiMonteCarloCompPlayer player = new ShogiMonteCarloCompPlayer(name, threads);
+                    player.setMoveTime(moveMillis);
+                    return player;
+                }
+            };
+        }
+        throw new IllegalArgumentException("Unknown player " + spec);
+    }
+
+    /**
+     * Command line entry point; runs an SPRT of [0, 10] Elo at 5% error rates
+     *
+     * @param args the two players and optionally the number of games, the
+     *             time per move, the games played at once and a result file
+     * @throws IOException if the result file can't be written
+     * @throws InterruptedException if interrupted while waiting for the games
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("usage: Tournament playerA playerB [games] [millisPerMove]"
+                    + " [concurrency] [resultFile]");
+            return;
+        }
+        Logger.setDebugValue(false); //A line per move from every game is too much
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        long millis = args.length > 3 ? Long.parseLong(args[3]) : 200;
+        Tournament tournament = new Tournament(parsePlayer(args[0]), parsePlayer(args[1]), millis);
+        tournament.setConcurrency(args.length > 4 ? Integer.parseInt(args[4])
+                : Runtime.getRuntime().availableProcessors());
+        tournament.setSprt(0, 10, 0.05, 0.05);
+        PrintStream out = args.length > 5 ? new PrintStream(new FileOutputStream(args[5], true))
+                : System.out;
+        tournament.run(games, out);
+        if (out != System.out) {
+            out.close();
+            System.out.println(tournament.summary());
+        }
+    }
+
+    /**
+     * The Game the players of one tournament game send their actions to,
+     * passing them straight to the ShogiLocalGame on the same thread
+     */
+    private static class HeadlessGame implements Game {
+
+        private final ShogiLocalGame local;
+        private GamePlayer[] players;
+
+        /**
+         * Constructor for the Game around a local game
+         *
+         * @param local the game whose rules decide
+         */
+        HeadlessGame(ShogiLocalGame local) {
+            this.local = local;
+        }
+
+        @Override
+        public void start(GamePlayer[] players) {
+            this.players = players;
+        }
+
+        /**
+         * Makes a player's move if it is that player's turn; names, ready
+         * messages and game over acknowledgements need no answer here
+         *
+         * @param action the action
+         */
+        @Override
+        public void sendAction(GameAction action) {
+            if (!(action instanceof ShogiMoveAction)) {
+                return;
+            }
+            int turn = ((ShogiGameState) local.getGameState()).getWhoseTurn();
+            if (players[turn] == action.getPlayer()) {
+                local.makeMove(action);
+            }
+        }
+
+        @Override
+        public GameState getGameState() {
+            return local.getGameState();
+        }
+    }
+}
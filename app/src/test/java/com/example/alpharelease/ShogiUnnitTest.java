@@ -6,12 +6,52 @@ import org.junit.Test;
 import android.graphics.Point;
 import android.util.Log;
 
+import com.example.alpharelease.GameFramework.Game;
+import com.example.alpharelease.GameFramework.GameMainActivity;
+import com.example.alpharelease.GameFramework.actionMessage.GameOverAckAction;
+import com.example.alpharelease.GameFramework.actionMessage.MyNameIsAction;
+import com.example.alpharelease.GameFramework.actionMessage.ReadyAction;
+import com.example.alpharelease.GameFramework.infoMessage.BindGameInfo;
+import com.example.alpharelease.GameFramework.infoMessage.GameInfo;
+import com.example.alpharelease.GameFramework.infoMessage.GameOverInfo;
+import com.example.alpharelease.GameFramework.infoMessage.StartGameInfo;
+import com.example.alpharelease.GameFramework.players.GamePlayer;
 import com.example.alpharelease.Shogi.Board;
 import com.example.alpharelease.Shogi.Piece;
 import com.example.alpharelease.Shogi.ShogiGameState;
+import com.example.alpharelease.Shogi.ShogiLocalGame;
+import com.example.alpharelease.Shogi.Tile;
+import com.example.alpharelease.Shogi.Tournament;
+import com.example.alpharelease.Shogi.Actions.ShogiMoveAction;
+import com.example.alpharelease.Shogi.Actions.SurrenderAction;
+import com.example.alpharelease.Shogi.Engine.Evaluation;
+import com.example.alpharelease.Shogi.Engine.MonteCarloSearch;
+import com.example.alpharelease.Shogi.Engine.Move;
+import com.example.alpharelease.Shogi.Engine.MoveGenerator;
+import com.example.alpharelease.Shogi.Engine.MovePicker;
+import com.example.alpharelease.Shogi.Engine.NnueEvaluator;
+import com.example.alpharelease.Shogi.Engine.OpeningBook;
+import com.example.alpharelease.Shogi.Engine.ParallelSearch;
+import com.example.alpharelease.Shogi.Engine.Perft;
+import com.example.alpharelease.Shogi.Engine.Pieces;
+import com.example.alpharelease.Shogi.Engine.Playout;
+import com.example.alpharelease.Shogi.Engine.Position;
+import com.example.alpharelease.Shogi.Engine.Search;
+import com.example.alpharelease.Shogi.Engine.Sfen;
+import com.example.alpharelease.Shogi.Engine.TranspositionTable;
+import com.example.alpharelease.Shogi.Engine.TsumeSolver;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class ShogiUnnitTest {
     @Test
@@ -51,17 +91,6 @@ public class ShogiUnnitTest {
         assertEquals(10,testStateCopy.getWhoseTurn());
     } /** Matt Tran */
 
-    @Test
-    public void TestSetSelecting() throws Exception {
-        ShogiGameState testState = new ShogiGameState();
-        testState.setSelecting(true);
-        boolean t1 = testState.isSelecting();
-        testState.setSelecting(false);
-        boolean t2 = testState.isSelecting();
-        assertEquals(true,t1);
-        assertEquals(false,t2);
-    } /** Matt Tran */
-
     /**Testing Implementations for Brent Torres*/
 
     @Test
@@ -181,18 +210,1032 @@ public class ShogiUnnitTest {
         Board testBoard = testState.getBoard();
 
         // promote pawn
-        testBoard.promote(testBoard.getTile(0,6),testState,0);
+        testBoard.promote(testBoard.getTile(0,6));
         assertEquals(R.drawable.promoted_pawn, testBoard.getTile(0,6).getPiece().pieceType.getID());
         // enemy pawn
-        testBoard.promote(testBoard.getTile(0,2),testState,1);
+        testBoard.promote(testBoard.getTile(0,2));
         assertEquals(R.drawable.promoted_pawn, testBoard.getTile(0,2).getPiece().pieceType.getID());
 
         // promote lance
-        testBoard.promote(testBoard.getTile(0,8),testState,0);
+        testBoard.promote(testBoard.getTile(0,8));
         assertEquals(R.drawable.promoted_lance, testBoard.getTile(0,8).getPiece().pieceType.getID());
 
         // promote king [Can't promote]
-        testBoard.promote(testBoard.getTile(4,8),testState,0);
+        testBoard.promote(testBoard.getTile(4,8));
         assertEquals(R.drawable.king, testBoard.getTile(4,8).getPiece().pieceType.getID());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPositionMatchesTiles() throws Exception {
+        ShogiGameState testState = new ShogiGameState();
+        Board testBoard = testState.getBoard();
+        Position pos = testBoard.getPosition();
+
+        for (Tile t : testBoard.getTiles()) {
+            if (t.getPiece() == null) {
+                assertTrue(pos.isEmpty(t.getTileIndex()));
+            } else {
+                assertEquals(Board.codeOf(t.getPiece()), pos.pieceAt(t.getTileIndex()));
+            }
+        }
+        assertEquals(4 + 8 * 9, pos.kingSquare(0));
+        assertEquals(4, pos.kingSquare(1));
+        assertEquals(0, pos.handCount(0, Pieces.PAWN));
+    }
+
+    @Test
+    public void testMovePieceCaptures() throws Exception {
+        ShogiGameState testState = new ShogiGameState();
+        Board testBoard = testState.getBoard();
+        Position pos = testBoard.getPosition();
+
+        // walk the edge pawn up the column until it takes the enemy pawn
+        testBoard.movePiece(testBoard.getTile(0, 6), testBoard.getTile(0, 5), 0);
+        testBoard.movePiece(testBoard.getTile(0, 5), testBoard.getTile(0, 4), 0);
+        testBoard.movePiece(testBoard.getTile(0, 4), testBoard.getTile(0, 3), 0);
+        Piece taken = testBoard.movePiece(testBoard.getTile(0, 3), testBoard.getTile(0, 2), 0);
+
+        assertEquals(Piece.GAME_PIECES.OPP_PAWN, taken.pieceType);
+        assertEquals(1, pos.handCount(0, Pieces.PAWN));
+        assertEquals(Pieces.code(0, Pieces.PAWN), pos.pieceAt(2 * 9));
+        assertTrue(testBoard.canPromote(testBoard.getTile(0, 2)));
+        assertEquals(false, testBoard.canPromote(testBoard.getTile(4, 8)));
+    }
+
+    @Test
+    public void testGraveLookup() throws Exception {
+        ShogiGameState testState = new ShogiGameState();
+        Board testBoard = testState.getBoard();
+
+        assertEquals(Board.GRAVE0_START, testBoard.getTile(Board.GRAVE0_START).getTileIndex());
+        int last = Board.GRAVE1_START + Board.GRAVE_SIZE - 1;
+        assertEquals(last, testBoard.getTile(last).getTileIndex());
+        assertEquals(null, testBoard.getTile(81));
+        assertEquals(null, testBoard.getTile(last + 1));
+
+        // each kind of piece has its own grave tile, stacking up as more are captured
+        Piece p = testBoard.getTile(0, 2).getPiece();
+        testBoard.addToGrave(p, 0);
+        assertEquals(p, testBoard.getTile(Board.GRAVE0_START + Pieces.PAWN - 1).getPiece());
+        Piece q = testBoard.getTile(1, 2).getPiece();
+        testBoard.addToGrave(q, 0);
+        assertEquals(q, testBoard.getTile(Board.GRAVE0_START + Pieces.PAWN - 1).getPiece());
+        assertEquals(2, testBoard.heldCount(0, Pieces.PAWN));
+        assertEquals(2, testBoard.getPosition().handCount(0, Pieces.PAWN));
+        assertFalse(testBoard.getTile(Board.GRAVE0_START + Pieces.LANCE - 1).isOccupied());
+    }
+
+    @Test
+    public void testFullHand() throws Exception {
+        ShogiGameState testState = new ShogiGameState();
+        Board testBoard = testState.getBoard();
+        Position pos = testBoard.getPosition();
+
+        // Player 1's rook takes five pawns and drops them back on the board
+        for (int col = 0; col < 5; col++) {
+            testBoard.movePiece(testBoard.getTile(1, 1), testBoard.getTile(col, 6), 1);
+            testBoard.movePiece(testBoard.getTile(col, 6), testBoard.getTile(1, 1), 1);
+        }
+        for (int col = 0; col < 5; col++) {
+            Tile from = testBoard.getMoveTile(Move.makeDrop(4 * 9 + col, Pieces.PAWN), 1);
+            testBoard.movePiece(from, testBoard.getTile(col, 4), 1);
+        }
+
+        // Player 0's rook then takes all 24 of player 1's pieces but the king
+        ArrayList<Tile> targets = new ArrayList<>();
+        for (Tile t : testBoard.getTiles()) {
+            Piece piece = t.getPiece();
+            if (piece != null && piece.getThePlayer() == 1
+                    && piece.pieceType.getEngineType() != Pieces.KING) {
+                targets.add(t);
+            }
+        }
+        assertEquals(24, targets.size());
+        Tile rook = testBoard.getTile(7, 7);
+        for (Tile t : targets) {
+            testBoard.movePiece(rook, t, 0);
+            rook = t;
+        }
+        assertEquals(14, pos.handCount(0, Pieces.PAWN));
+        int held = 0;
+        for (int type = Pieces.PAWN; type < Pieces.HAND_TYPES; type++) {
+            held += testBoard.heldCount(0, type);
+            assertNotNull(testBoard.getMoveTile(Move.makeDrop(3 * 9, type), 0));
+        }
+        assertEquals(24, held);
+
+        // Every pawn the hand count promises can be dropped, one piece each
+        Piece previous = null;
+        for (int n = 0; n < 14; n++) {
+            Tile from = testBoard.getMoveTile(Move.makeDrop(2 * 9 + n, Pieces.PAWN), 0);
+            assertNotNull(from);
+            Tile to = testBoard.getTile(2 * 9 + n);
+            assertNull(to.getPiece());
+            testBoard.movePiece(from, to, 0);
+            assertNotSame(previous, to.getPiece());
+            assertEquals(0, to.getPiece().getThePlayer());
+            assertEquals(Pieces.code(0, Pieces.PAWN), pos.pieceAt(2 * 9 + n));
+            previous = to.getPiece();
+        }
+        assertEquals(0, pos.handCount(0, Pieces.PAWN));
+        assertNull(testBoard.getMoveTile(Move.makeDrop(5 * 9, Pieces.PAWN), 0));
+        assertEquals(pos.computeKey(), pos.getKey());
+    }
+
+    @Test
+    public void testMoveGenerator() throws Exception {
+        ShogiGameState testState = new ShogiGameState();
+        testState.changeTurn(0);
+        Position pos = testState.getBoard().getPosition();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+        // 30 moves from the starting position, and generating doesn't touch the tiles
+        assertEquals(30, new MoveGenerator().generate(pos, moves));
+        assertEquals(0, testState.getBoard().getPossibleTiles().size());
+
+        int pawnPush = Move.make(6 * 9 + 2, 5 * 9 + 2, Pieces.PAWN, false);
+        assertEquals("7g7f", Move.toString(pawnPush));
+        assertEquals(5 * 9 + 2, Move.to(pawnPush));
+        assertEquals(Pieces.PAWN, Move.type(pawnPush));
+        assertEquals("P*5e", Move.toString(Move.makeDrop(4 * 9 + 4, Pieces.PAWN)));
+    }
+
+    @Test
+    public void testLegalMoves() throws Exception {
+        // Side 1 king on 5a boxed in by its own lances, side 0 gold on 5c
+        Position pos = new Position();
+        pos.put(4, Pieces.code(1, Pieces.KING));
+        pos.put(3, Pieces.code(1, Pieces.LANCE));
+        pos.put(5, Pieces.code(1, Pieces.LANCE));
+        pos.put(2 * 9 + 4, Pieces.code(0, Pieces.GOLD));
+        pos.put(8 * 9 + 8, Pieces.code(0, Pieces.KING));
+        pos.put(6 * 9, Pieces.code(0, Pieces.PAWN));
+        pos.addToHand(0, Pieces.PAWN);
+        pos.addToHand(0, Pieces.GOLD);
+        pos.setSideToMove(0);
+
+        MoveGenerator gen = new MoveGenerator();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int pawnMate = Move.makeDrop(9 + 4, Pieces.PAWN);
+
+        // Dropping a pawn to give mate is illegal, a second pawn on a column is too
+        int n = gen.generateLegalDrops(pos, 0, Pieces.PAWN, moves, 0);
+        for (int i = 0; i < n; i++) {
+            assertNotEquals(pawnMate, moves[i]);
+            assertNotEquals(0, Move.to(moves[i]) % 9);
+            assertNotEquals(0, Move.to(moves[i]) / 9); //Nowhere left to move from row 0
+        }
+        assertFalse(gen.isLegal(pos, pawnMate, 0));
+
+        // Dropping the gold there is a plain checkmate
+        assertTrue(gen.isLegal(pos, Move.makeDrop(9 + 4, Pieces.GOLD), 0));
+        pos.put(9 + 4, Pieces.code(0, Pieces.GOLD));
+        pos.removeFromHand(0, Pieces.GOLD);
+        pos.setSideToMove(1);
+        assertTrue(gen.inCheck(pos, 1));
+        assertTrue(gen.isCheckmate(pos));
+        assertEquals(0, gen.generateLegal(pos, moves));
+    }
+
+    @Test
+    public void testSliderAttacks() throws Exception {
+        long[] out = new long[2];
+
+        // On an empty board a rook in the middle sees its whole row and column
+        Position.attacks(Pieces.code(0, Pieces.ROOK), 40, 0, 0, out);
+        assertEquals(16, Long.bitCount(out[0]) + Long.bitCount(out[1]));
+
+        // A blocker is attacked but nothing behind it is
+        Position pos = new Position();
+        pos.put(40, Pieces.code(0, Pieces.BISHOP));
+        pos.put(80, Pieces.code(1, Pieces.PAWN)); //Corner square in the hi word
+        pos.put(20, Pieces.code(1, Pieces.PAWN));
+        pos.attacks(Pieces.code(0, Pieces.BISHOP), 40, out);
+        assertEquals(4 + 2 + 4 + 4, Long.bitCount(out[0]) + Long.bitCount(out[1]));
+        assertTrue((out[0] & (1L << 20)) != 0);
+        assertTrue((out[0] & (1L << 10)) == 0);
+
+        // A lance only looks ahead, and a dragon adds its king steps
+        Position.attacks(Pieces.code(1, Pieces.LANCE), 4, 0, 0, out);
+        assertEquals(8, Long.bitCount(out[0]) + Long.bitCount(out[1]));
+        Position.attacks(Pieces.code(0, Pieces.DRAGON), 40, 0, 0, out);
+        assertEquals(20, Long.bitCount(out[0]) + Long.bitCount(out[1]));
+    }
+
+    @Test
+    public void testZobristKey() throws Exception {
+        ShogiGameState testState = new ShogiGameState();
+        testState.changeTurn(0);
+        Board testBoard = testState.getBoard();
+        Position pos = testBoard.getPosition();
+        long start = testState.getKey();
+        assertEquals(pos.computeKey(), start);
+
+        // Capture and promote; the kept key always matches a full rebuild
+        testBoard.movePiece(testBoard.getTile(0, 6), testBoard.getTile(0, 5), 0);
+        testBoard.movePiece(testBoard.getTile(0, 5), testBoard.getTile(0, 4), 0);
+        testBoard.movePiece(testBoard.getTile(0, 4), testBoard.getTile(0, 3), 0);
+        testBoard.movePiece(testBoard.getTile(0, 3), testBoard.getTile(0, 2), 0);
+        assertEquals(pos.computeKey(), testState.getKey());
+        testBoard.promote(testBoard.getTile(0, 2));
+        assertEquals(pos.computeKey(), testState.getKey());
+        assertNotEquals(start, testState.getKey());
+
+        // Whose turn it is is part of the key
+        long before = testState.getKey();
+        testState.changeTurn(1);
+        assertNotEquals(before, testState.getKey());
+        testState.changeTurn(0);
+        assertEquals(before, testState.getKey());
+    }
+
+    @Test
+    public void testSennichite() throws Exception {
+        ShogiGameState testState = new ShogiGameState();
+        testState.changeTurn(0);
+        Board testBoard = testState.getBoard();
+
+        // Both players shuffle a rook back and forth (the start is only on
+        // record already if player 0 happened to go first)
+        int seen = testState.timesSeen();
+        while (seen < ShogiGameState.SENNICHITE_COUNT) {
+            assertFalse(testState.isSennichite());
+            testBoard.movePiece(testBoard.getTile(7, 7), testBoard.getTile(6, 7), 0);
+            testState.changeTurn(1);
+            testState.recordPosition();
+            testBoard.movePiece(testBoard.getTile(1, 1), testBoard.getTile(2, 1), 1);
+            testState.changeTurn(0);
+            testState.recordPosition();
+            testBoard.movePiece(testBoard.getTile(6, 7), testBoard.getTile(7, 7), 0);
+            testState.changeTurn(1);
+            testState.recordPosition();
+            testBoard.movePiece(testBoard.getTile(2, 1), testBoard.getTile(1, 1), 1);
+            testState.changeTurn(0);
+            testState.recordPosition();
+            assertEquals(++seen, testState.timesSeen());
+        }
+        assertTrue(testState.isSennichite());
+        assertEquals(-1, testState.getPerpetualChecker());
+    }
+
+    @Test
+    public void testPerpetualCheck() throws Exception {
+        // The same shuffle, but now every move player 0 makes gives check;
+        // the second time round one of them doesn't
+        for (int quiet = -1; quiet <= 1; quiet += 2) {
+            ShogiGameState testState = new ShogiGameState(0);
+            Board testBoard = testState.getBoard();
+            int cycle = 0;
+            while (!testState.isSennichite()) {
+                testBoard.movePiece(testBoard.getTile(7, 7), testBoard.getTile(6, 7), 0);
+                testState.changeTurn(1);
+                testState.setInCheck(cycle != quiet);
+                testState.recordPosition();
+                testBoard.movePiece(testBoard.getTile(1, 1), testBoard.getTile(2, 1), 1);
+                testState.changeTurn(0);
+                testState.setInCheck(false);
+                testState.recordPosition();
+                testBoard.movePiece(testBoard.getTile(6, 7), testBoard.getTile(7, 7), 0);
+                testState.changeTurn(1);
+                testState.setInCheck(true);
+                testState.recordPosition();
+                testBoard.movePiece(testBoard.getTile(2, 1), testBoard.getTile(1, 1), 1);
+                testState.changeTurn(0);
+                testState.setInCheck(false);
+                testState.recordPosition();
+                cycle++;
+            }
+            assertEquals(ShogiGameState.SENNICHITE_COUNT - 1, cycle);
+            assertEquals(quiet == -1 ? 0 : -1, testState.getPerpetualChecker());
+            assertEquals(testState.getPerpetualChecker(),
+                    new ShogiGameState(testState).getPerpetualChecker());
+        }
+    }
+
+    @Test
+    public void testMakeUnmakeMove() throws Exception {
+        ShogiGameState testState = new ShogiGameState();
+        testState.changeTurn(0);
+        Board testBoard = testState.getBoard();
+        Position pos = testBoard.getPosition();
+        long start = pos.getKey();
+
+        // Open the bishops' diagonal, then take the bishop and promote
+        testBoard.makeMove(Move.make(6 * 9 + 2, 5 * 9 + 2, Pieces.PAWN, false));
+        testBoard.makeMove(Move.make(2 * 9 + 6, 3 * 9 + 6, Pieces.PAWN, false));
+        int takeBishop = Move.make(7 * 9 + 1, 1 * 9 + 7, Pieces.BISHOP, true);
+        testBoard.makeMove(takeBishop);
+        assertEquals(Pieces.code(0, Pieces.HORSE), pos.pieceAt(1 * 9 + 7));
+        assertEquals(1, pos.handCount(0, Pieces.BISHOP));
+        assertEquals(pos.computeKey(), pos.getKey());
+        assertEquals(1, pos.getSideToMove());
+
+        // Looking ahead only changes the engine position, never the tiles
+        assertEquals(Piece.GAME_PIECES.OPP_BISHOP, testBoard.getTile(7, 1).getPiece().pieceType);
+
+        for (int i = 0; i < 3; i++) {
+            testBoard.unmakeMove();
+        }
+        assertEquals(0, pos.undoDepth());
+        assertEquals(start, pos.getKey());
+        assertEquals(Pieces.code(1, Pieces.BISHOP), pos.pieceAt(1 * 9 + 7));
+        assertEquals(0, pos.handCount(0, Pieces.BISHOP));
+
+        // Every legal reply can be played and taken back
+        MoveGenerator gen = new MoveGenerator();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int n = gen.generateLegal(pos, moves);
+        for (int i = 0; i < n; i++) {
+            pos.makeMove(moves[i]);
+            assertEquals(pos.computeKey(), pos.getKey());
+            pos.unmakeMove();
+            assertEquals(start, pos.getKey());
+        }
+    }
+
+    @Test
+    public void testPerft() throws Exception {
+        ShogiGameState testState = new ShogiGameState();
+        testState.changeTurn(0);
+        Position pos = new Position(testState.getBoard().getPosition());
+
+        // Published node counts from the starting position
+        Perft perft = new Perft();
+        assertEquals(30, perft.perft(pos, 1));
+        assertEquals(900, perft.perft(pos, 2));
+        assertEquals(25470, perft.perft(pos, 3));
+        assertEquals(testState.getKey(), pos.getKey());
+
+        // A busy middlegame with pieces in hand, promotions and pins
+        Position busy = Sfen.parse("l6nl/5+P1gk/2np1S3/p1p4Pp/3P2Sp1/1PPb2P1P/P5GS1/R8/LN4bKL w RGgsn5p 1");
+        assertEquals(207, perft.perft(busy, 1));
+        assertEquals(28684, perft.perft(busy, 2));
+
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        assertEquals(900, Perft.divide(pos, 2, true, new PrintStream(text)));
+        assertTrue(text.toString().contains("7g7f: 30"));
+        assertTrue(text.toString().contains("Nodes: 900"));
+    }
+
+    @Test
+    public void testSfen() throws Exception {
+        ShogiGameState testState = new ShogiGameState();
+        testState.changeTurn(0);
+        Position start = testState.getBoard().getPosition();
+        assertEquals(Sfen.START, Sfen.toString(start));
+        assertEquals(start.getKey(), Sfen.parse(Sfen.START).getKey());
+
+        String sfen = "8l/1l+R2P3/p2pBG1pp/kps1p4/Nn1P2G2/P1P1P2PP/1PS6/1KSG3+r1/LN2+p3L w Sbgn3p 1";
+        assertEquals(sfen, Sfen.toString(Sfen.parse(sfen)));
+        assertEquals(3, Sfen.parse(sfen).handCount(1, Pieces.PAWN));
+
+        // A king or an impossible count in hand is bad input, not a crash
+        String[] badHands = {"K", "2k", "19P", "10p9p"};
+        for (String hand : badHands) {
+            try {
+                Sfen.parse("4k4/9/9/9/9/9/9/9/4K4 b " + hand + " 1");
+                fail("parsed hand " + hand);
+            } catch (IllegalArgumentException e) {
+                //expected
+            }
+        }
+    }
+
+    @Test
+    public void testPromoteInPlace() throws Exception {
+        ShogiGameState testState = new ShogiGameState();
+        Board testBoard = testState.getBoard();
+
+        // No promoted placeholders, just the 20 pieces each side starts with
+        assertEquals(20, testState.getPieceArray(0).size());
+        assertEquals(20, testState.getPieceArray(1).size());
+
+        // Promoting changes the piece that's already there
+        Piece rook = testBoard.getTile(7, 7).getPiece();
+        testBoard.promote(testBoard.getTile(7, 7));
+        assertSame(rook, testBoard.getTile(7, 7).getPiece());
+        assertEquals(Piece.GAME_PIECES.PROMOTED_ROOK, rook.pieceType);
+        assertEquals(Pieces.code(0, Pieces.DRAGON), testBoard.getPosition().pieceAt(7 * 9 + 7));
+
+        // and capturing it turns it back into a rook for the other side's hand
+        testBoard.movePiece(testBoard.getTile(1, 1), testBoard.getTile(7, 7), 1);
+        assertEquals(Piece.GAME_PIECES.ROOK, rook.pieceType);
+        assertEquals(false, rook.getPromoted());
+        assertEquals(1, testBoard.getPosition().handCount(1, Pieces.ROOK));
+    }
+
+    @Test
+    public void testCopyIsDeep() throws Exception {
+        ShogiGameState testState = new ShogiGameState(0);
+        ShogiGameState copy = new ShogiGameState(testState);
+        Board copyBoard = copy.getBoard();
+        assertNotSame(testState.getBoard(), copyBoard);
+        assertEquals(testState.getBoard().getPosition().getKey(), copyBoard.getPosition().getKey());
+
+        // The copy's lists hold the copy's pieces
+        Piece pawn = copyBoard.getTile(6 * 9 + 2).getPiece();
+        assertTrue(copy.getPieceArray(0).contains(pawn));
+        assertFalse(testState.getPieceArray(0).contains(pawn));
+
+        // and moving on the copy leaves the original alone
+        copyBoard.movePiece(copyBoard.getTile(6 * 9 + 2), copyBoard.getTile(5 * 9 + 2), 0);
+        assertEquals(5, pawn.getRow());
+        assertTrue(testState.getBoard().getTile(6 * 9 + 2).isOccupied());
+        assertEquals(6, testState.getBoard().getTile(6 * 9 + 2).getPiece().getRow());
+        assertFalse(testState.getBoard().getTile(5 * 9 + 2).isOccupied());
+        assertNotEquals(testState.getBoard().getPosition().getKey(), copyBoard.getPosition().getKey());
+    }
+
+    @Test
+    public void testPawnFiles() throws Exception {
+        ShogiGameState testState = new ShogiGameState();
+        Board testBoard = testState.getBoard();
+        Position pos = testBoard.getPosition();
+        assertEquals(0x1FF, pos.pawnFiles(0));
+        assertEquals(0x1FF, pos.pawnFiles(1));
+
+        // Taking the enemy pawn clears their column; promoting ours clears ours
+        testBoard.movePiece(testBoard.getTile(0, 6), testBoard.getTile(0, 2), 0);
+        assertEquals(0x1FE, pos.pawnFiles(1));
+        testBoard.promote(testBoard.getTile(0, 2));
+        assertEquals(0x1FE, pos.pawnFiles(0));
+
+        // Dropping the captured pawn back on column 0 fills it again
+        Tile grave = testBoard.getTile(200);
+        assertNotNull(grave.getPiece());
+        testBoard.movePiece(grave, testBoard.getTile(0, 4), 0);
+        assertEquals(0x1FF, pos.pawnFiles(0));
+        assertEquals(pos.pawnFiles(0), Sfen.parse(Sfen.toString(pos)).pawnFiles(0));
+    }
+
+    @Test
+    public void testSearch() throws Exception {
+        Search search = new Search();
+
+        // Dropping the gold in front of the boxed-in king mates
+        Position mate = Sfen.parse("3lkl3/9/4G4/9/9/9/9/9/8K b G 1");
+        long key = mate.getKey();
+        int move = search.think(mate, 5000, 3);
+        assertEquals("G*5b", Move.toString(move));
+        assertEquals(Search.MATE - 1, search.getScore());
+        assertEquals(key, mate.getKey()); //Searching leaves the position alone
+
+        // Take the rook that's hanging
+        Position hanging = Sfen.parse("4k4/9/9/9/4r4/4P4/9/4R4/4K4 b - 1");
+        assertEquals("5f5e", Move.toString(search.think(hanging, 5000, 2)));
+        assertTrue(search.getNodes() > 0);
+        assertEquals(2, search.getDepth());
+    }
+
+    @Test
+    public void testEvaluation() throws Exception {
+        // The starting position is the same for both sides
+        Position pos = Sfen.parse(Sfen.START);
+        assertEquals(0, Evaluation.evaluate(pos));
+        assertEquals(Evaluation.computeMaterial(pos), pos.getMaterial());
+
+        // Play a random game; the running score always matches a full recount
+        MoveGenerator gen = new MoveGenerator();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        Random rand = new Random(14);
+        int start = pos.getMaterial();
+        for (int ply = 0; ply < 150; ply++) {
+            int n = gen.generateLegal(pos, moves);
+            if (n == 0) {
+                break;
+            }
+            pos.makeMove(moves[rand.nextInt(n)]);
+            assertEquals(Evaluation.computeMaterial(pos), pos.getMaterial());
+        }
+        while (pos.undoDepth() > 0) {
+            pos.unmakeMove();
+        }
+        assertEquals(start, pos.getMaterial());
+
+        // A rook up is good for whoever has it, whichever side is to move
+        Position rookUp = Sfen.parse("4k4/9/9/9/9/9/9/9/4K4 b R 1");
+        assertTrue(Evaluation.evaluate(rookUp) > 0);
+        rookUp.setSideToMove(1);
+        assertTrue(Evaluation.evaluate(rookUp) < 0);
+    }
+
+    @Test
+    public void testMovePicker() throws Exception {
+        Position pos = Sfen.parse("l6nl/5+P1gk/2np1S3/p1p4Pp/3P2Sp1/1PPb2P1P/P5GS1/R8/LN4bKL w RGgsn5p 1");
+        MoveGenerator gen = new MoveGenerator();
+        int[] legal = new int[MoveGenerator.MAX_MOVES];
+        int n = gen.generateLegal(pos, legal);
+        ArrayList<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < n; i++) {
+            expected.add(legal[i]);
+        }
+
+        // A quiet table move, a killer that can't be played here and a repeated killer
+        int tableMove = legal[n - 1];
+        int badKiller = Move.make(0, 40, Pieces.ROOK, false);
+        MovePicker picker = new MovePicker(gen, new int[2][MovePicker.HISTORY_SIZE]);
+        picker.init(pos, tableMove, badKiller, tableMove, Move.NONE);
+
+        // Every legal move comes out exactly once, table move first, captures next
+        ArrayList<Integer> picked = new ArrayList<Integer>();
+        boolean quietSeen = false;
+        int move;
+        while ((move = picker.next()) != Move.NONE) {
+            if (picked.isEmpty()) {
+                assertEquals(tableMove, move);
+            } else {
+                boolean capture = pos.pieceAt(Move.to(move)) != Pieces.EMPTY;
+                assertFalse(capture && quietSeen);
+                quietSeen |= !capture;
+            }
+            assertFalse(picked.contains(move));
+            picked.add(move);
+        }
+        assertEquals(expected.size(), picked.size());
+        assertTrue(picked.containsAll(expected));
+        assertFalse(gen.isPseudoLegal(pos, badKiller));
+    }
+
+    @Test
+    public void testQuiescence() throws Exception {
+        Search search = new Search();
+
+        // The pawn is defended by the gold, so a one ply search must not grab it
+        Position defended = Sfen.parse("4k4/9/3g5/4p4/9/9/9/4R4/4K4 b - 1");
+        assertNotEquals("5h5d", Move.toString(search.think(defended, 5000, 1)));
+        assertTrue(search.getScore() < Evaluation.evaluate(defended) + Evaluation.VALUE[Pieces.PAWN]);
+        assertTrue(search.getQuiescenceNodes() > 0);
+
+        // ... but an undefended one is fine to take
+        Position loose = Sfen.parse("4k4/9/9/4p4/9/9/9/4R4/4K4 b - 1");
+        assertEquals("5h5d", Move.toString(search.think(loose, 5000, 1)));
+    }
+
+    @Test
+    public void testParallelSearch() throws Exception {
+        ParallelSearch search = new ParallelSearch(4, new TranspositionTable(1));
+        assertEquals(4, search.getThreads());
+
+        // Every thread agrees on the mate and the root is left alone
+        Position mate = Sfen.parse("3lkl3/9/4G4/9/9/9/9/9/8K b G 1");
+        long key = mate.getKey();
+        assertEquals("G*5b", Move.toString(search.think(mate, 5000, 3)));
+        assertEquals(Search.MATE - 1, search.getScore());
+        assertEquals(key, mate.getKey());
+
+        Position hanging = Sfen.parse("4k4/9/9/9/4r4/4P4/9/4R4/4K4 b - 1");
+        assertEquals("5f5e", Move.toString(search.think(hanging, 5000, 3)));
+        assertEquals(3, search.getDepth());
+        assertTrue(search.getNodes() > 0);
+    }
+
+    @Test
+    public void testTsumeSolver() throws Exception {
+        TsumeSolver solver = new TsumeSolver(1);
+        MoveGenerator gen = new MoveGenerator();
+
+        // Mate in 1 with a drop
+        Position oneMove = Sfen.parse("3lkl3/9/4G4/9/9/9/9/9/8K b G 1");
+        assertEquals(TsumeSolver.MATE, solver.solve(oneMove, 1000));
+        assertEquals(1, solver.getMateSequence().length);
+        assertEquals("G*5b", Move.toString(solver.getMateSequence()[0]));
+
+        // A longer mate: every attacking move checks and the line ends in mate
+        Position longer = Sfen.parse("9/7k1/7N1/7B1/9/9/9/9/6K2 b BG 1");
+        long key = longer.getKey();
+        assertEquals(TsumeSolver.MATE, solver.solve(longer, 100000));
+        assertEquals(key, longer.getKey());
+        int[] line = solver.getMateSequence();
+        assertTrue(line.length >= 3 && line.length % 2 == 1);
+        for (int i = 0; i < line.length; i++) {
+            assertTrue(gen.isPseudoLegal(longer, line[i]));
+            assertTrue(gen.isLegal(longer, line[i], longer.getSideToMove()));
+            longer.makeMove(line[i]);
+            if (i % 2 == 0) {
+                assertTrue(gen.inCheck(longer, 1));
+            }
+        }
+        assertTrue(gen.isCheckmate(longer));
+
+        // No pieces to check with, and a budget too small to finish
+        assertEquals(TsumeSolver.NO_MATE, solver.solve(Sfen.parse("4k4/9/9/9/9/9/9/9/4K4 b - 1"), 1000));
+        assertEquals(TsumeSolver.UNKNOWN, solver.solve(Sfen.parse("2k6/9/9/9/8R/3p5/9/9/3K5 b 2G 1"), 500));
+        assertEquals(0, solver.getMateSequence().length);
+    }
+
+    @Test
+    public void testTranspositionTable() throws Exception {
+        TranspositionTable table = new TranspositionTable(1);
+        assertEquals(1 << 16, table.capacity());
+
+        int move = Move.make(6 * 9 + 2, 5 * 9 + 2, Pieces.PAWN, false);
+        table.store(12345L, move, -250, 7, TranspositionTable.LOWER);
+        long entry = table.probe(12345L);
+        assertEquals(move, TranspositionTable.move(entry));
+        assertEquals(-250, TranspositionTable.score(entry));
+        assertEquals(7, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+        assertEquals(0, table.probe(54321L));
+
+        // Fill a bucket in an old search; a new search's entry pushes out an old one
+        int buckets = table.capacity() / TranspositionTable.BUCKET_SIZE;
+        for (int i = 1; i < TranspositionTable.BUCKET_SIZE; i++) {
+            table.store(12345L + (long) i * buckets, move, 0, 20, TranspositionTable.EXACT);
+        }
+        table.newSearch();
+        table.store(12345L + (long) 9 * buckets, move, 0, 1, TranspositionTable.EXACT);
+        assertNotEquals(0, table.probe(12345L + (long) 9 * buckets));
+        assertEquals(0, table.probe(12345L)); //The shallowest old entry went first
+    }
+
+    @Test
+    public void testOpeningBook() throws Exception {
+        OpeningBook.Builder builder = new OpeningBook.Builder();
+        builder.addLine("3 7g7f 3c3d 2g2f");
+        builder.addLine("1 2g2f 8c8d");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        builder.write(out);
+        OpeningBook book = new OpeningBook(ByteBuffer.wrap(out.toByteArray()));
+        assertEquals(2 * 5, book.size()); //Each line is also stored for side 1 moving first
+        for (int i = 1; i < book.size(); i++) {
+            assertTrue(book.keyAt(i - 1) <= book.keyAt(i));
+        }
+
+        // The game's own starting position is in the book, with both first moves
+        Position start = new ShogiGameState().getBoard().getPosition();
+        start.setSideToMove(0);
+        int first = book.find(start.getKey());
+        assertTrue(first >= 0);
+        assertEquals("7g7f", Move.toString(book.moveAt(first)));
+        assertEquals(3, book.weightAt(first));
+        assertEquals("2g2f", Move.toString(book.moveAt(first + 1)));
+
+        // Weighted random picks: 7g7f about three times as often as 2g2f
+        Random random = new Random(1);
+        int often = 0;
+        for (int i = 0; i < 4000; i++) {
+            int move = book.choose(start.getKey(), random);
+            assertTrue(move == book.moveAt(first) || move == book.moveAt(first + 1));
+            if (move == book.moveAt(first)) {
+                often++;
+            }
+        }
+        assertTrue(often > 2700 && often < 3300);
+
+        // Side 1 moving first plays the same openings from its end
+        start.setSideToMove(1);
+        assertEquals("3c3d", Move.toString(book.moveAt(book.find(start.getKey()))));
+
+        // Out of book
+        start.makeMove(book.moveAt(book.find(start.getKey())));
+        start.makeMove(Move.make(6 * 9, 5 * 9, Pieces.PAWN, false));
+        assertEquals(-1, book.find(start.getKey()));
+        assertEquals(Move.NONE, book.choose(start.getKey(), random));
+    }
+
+    @Test
+    public void testPonder() throws Exception {
+        TranspositionTable table = new TranspositionTable(1);
+        ParallelSearch search = new ParallelSearch(2, table);
+        MoveGenerator gen = new MoveGenerator();
+        Position pos = Sfen.parse(Sfen.START);
+        pos.makeMove(search.think(pos, 5000, 4));
+
+        // Ponder on the reply the search expects
+        int reply = TranspositionTable.move(table.probe(pos.getKey()));
+        assertNotEquals(Move.NONE, reply);
+        long key = pos.getKey();
+        search.ponder(pos, 60000, Search.MAX_PLY);
+        assertEquals(key, pos.getKey());
+        pos.makeMove(reply);
+        assertTrue(search.isPondering(pos.getKey()));
+
+        // A hit turns it into a normal timed search
+        long start = System.currentTimeMillis();
+        int move = search.ponderHit(300);
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertTrue(gen.isPseudoLegal(pos, move));
+        assertTrue(gen.isLegal(pos, move, pos.getSideToMove()));
+        assertFalse(search.isPondering(pos.getKey()));
+
+        // A miss just stops it
+        pos.makeMove(move);
+        search.ponder(pos, 60000, Search.MAX_PLY);
+        assertFalse(search.isPondering(key));
+        start = System.currentTimeMillis();
+        search.stopPondering();
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertFalse(search.isPondering(pos.getKey()));
+    }
+
+    @Test
+    public void testNnueEvaluator() throws Exception {
+        NnueEvaluator net = NnueEvaluator.random(8, 3);
+        MoveGenerator gen = new MoveGenerator();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        Random random = new Random(5);
+
+        // The incrementally kept first layer matches one built from scratch,
+        // through captures, drops, promotions and king moves, and after unmaking
+        Position pos = Sfen.parse(Sfen.START);
+        net.prepare(pos);
+        ArrayList<Integer> scores = new ArrayList<Integer>();
+        for (int ply = 0; ply < 150; ply++) {
+            int n = gen.generateLegal(pos, moves);
+            if (n == 0) {
+                break;
+            }
+            int score = net.evaluate(pos);
+            assertEquals(net.evaluate(new Position(pos)), score);
+            scores.add(score);
+            pos.makeMove(moves[random.nextInt(n)]);
+        }
+        for (int ply = scores.size() - 1; ply >= 0; ply--) {
+            pos.unmakeMove();
+            assertEquals((int) scores.get(ply), net.evaluate(pos));
+        }
+
+        // Written out and read back, the network scores the same
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        net.write(out);
+        NnueEvaluator copy = NnueEvaluator.load(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(8, copy.getHidden());
+        assertEquals((int) scores.get(0), copy.evaluate(Sfen.parse(Sfen.START)));
+        assertEquals(NnueEvaluator.fileSize(8), out.size());
+
+        // A file whose length doesn't match its header, or a network too big
+        // for a phone, is turned down before anything is allocated
+        byte[] bytes = out.toByteArray();
+        try {
+            NnueEvaluator.load(new ByteArrayInputStream(bytes), bytes.length - 1);
+            fail("Loaded a cut short network");
+        } catch (IOException expected) {
+        }
+        ByteBuffer.wrap(bytes).putInt(8 + 4, NnueEvaluator.MAX_HIDDEN + 1);
+        try {
+            NnueEvaluator.load(new ByteArrayInputStream(bytes));
+            fail("Loaded an oversized network");
+        } catch (IOException expected) {
+        }
+
+        // Without both kings it falls back on the hand-written evaluation
+        Position noKing = Sfen.parse("3lkl3/9/4G4/9/9/9/9/9/9 b G 1");
+        assertEquals(Evaluation.evaluate(noKing), net.evaluate(noKing));
+
+        // The search runs on it, and mates don't depend on the evaluation
+        Search search = new Search(new TranspositionTable(1), net);
+        assertEquals("G*5b", Move.toString(search.think(Sfen.parse("3lkl3/9/4G4/9/9/9/9/9/8K b G 1"), 5000, 3)));
+    }
+
+    @Test
+    public void testMonteCarloSearch() throws Exception {
+        MoveGenerator gen = new MoveGenerator();
+        for (boolean priors : new boolean[]{false, true}) {
+            MonteCarloSearch search = new MonteCarloSearch(2, 1 << 16, priors);
+
+            // Mate in one and a free rook, and the root is left alone
+            Position mate = Sfen.parse("3lkl3/9/4G4/9/9/9/9/9/8K b G 1");
+            long key = mate.getKey();
+            assertEquals("G*5b", Move.toString(search.think(mate, 10000, 3000)));
+            assertEquals(key, mate.getKey());
+            assertTrue(search.getWinRate() > 0.99);
+            Position hanging = Sfen.parse("4k4/9/9/9/4r4/4P4/9/4R4/4K4 b - 1");
+            assertEquals("5f5e", Move.toString(search.think(hanging, 10000, 3000)));
+            assertTrue(search.getNodes() <= 1 << 16);
+
+            // The tree below the move played is kept for the next search
+            int move = search.think(hanging, 10000, 3000);
+            assertTrue(gen.isLegal(hanging, move, 0));
+            hanging.makeMove(move);
+            search.think(hanging, 10000, 100);
+            assertTrue(search.getReusedVisits() > 100);
+            search.shutdown();
+        }
+
+        // Checkmated: nothing to play
+        MonteCarloSearch search = new MonteCarloSearch(1, 1 << 10, true);
+        assertEquals(Move.NONE, search.think(Sfen.parse("4k4/4G4/4P4/9/9/9/9/9/4K4 w - 1"), 10000, 100));
+    }
+
+    @Test
+    public void testPlayout() throws Exception {
+        MoveGenerator gen = new MoveGenerator();
+        int[] legal = new int[MoveGenerator.MAX_MOVES];
+        Playout playout = new Playout(7);
+        Position pos = Sfen.parse(Sfen.START);
+        for (int ply = 0; ply < 300; ply++) {
+            int n = gen.generateLegal(pos, legal);
+            int move = playout.randomMove(pos);
+            if (n == 0) {
+                assertEquals(Move.NONE, move);
+                break;
+            }
+            boolean found = false;
+            for (int i = 0; i < n; i++) {
+                found |= legal[i] == move;
+            }
+            assertTrue(Move.toString(move), found);
+            pos.makeMove(move);
+        }
+
+        // Playouts leave the position alone, and a seed replays the same games
+        Position start = Sfen.parse(Sfen.START);
+        long key = start.getKey();
+        Playout a = new Playout(11);
+        Playout b = new Playout(11);
+        for (int i = 0; i < 50; i++) {
+            assertEquals(a.play(start, 200), b.play(start, 200));
+            assertEquals(key, start.getKey());
+        }
+        assertEquals(a.getPlies(), b.getPlies());
+
+        // Checkmated: no move, and the other side has won
+        Position mated = Sfen.parse("4k4/4G4/4P4/9/9/9/9/9/4K4 w - 1");
+        assertEquals(Move.NONE, playout.randomMove(mated));
+        assertEquals(0, playout.play(mated, 10));
+    }
+
+    @Test
+    public void testTournament() throws Exception {
+        assertEquals(0, Tournament.elo(5, 2, 5), 1e-9);
+        assertEquals(400 * Math.log10(3), Tournament.elo(3, 0, 1), 1e-9);
+        assertTrue(Tournament.eloMargin(30, 40, 30) > 0);
+
+        // The LLR leans the way the results do and clears the bounds of a lopsided match
+        double upper = Math.log(0.95 / 0.05);
+        assertTrue(Tournament.llr(300, 100, 100, 0, 10) > upper);
+        assertTrue(Tournament.llr(100, 100, 300, 0, 10) < -upper);
+        assertTrue(Tournament.llr(40, 0, 0, 0, 10) > upper);
+        assertEquals(0, Tournament.llr(0, 0, 0, 0, 10), 0);
+
+        // A short match between two random players, through the real game rules
+        Tournament match = new Tournament(Tournament.parsePlayer("dumb"),
+                Tournament.parsePlayer("dumb"), 100);
+        match.setConcurrency(2);
+        match.setSeed(3);
+        match.setMaxPlies(60);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        match.run(4, new PrintStream(bytes));
+        int[] results = match.getResults();
+        assertEquals(4, results[0] + results[1] + results[2]);
+        int games = 0;
+        for (String line : bytes.toString().split("\n")) {
+            if (!line.startsWith("#")) {
+                games++;
+                assertEquals(line, 7, line.trim().split(" ").length);
+            }
+        }
+        assertEquals(4, games);
+        assertFalse(match.isStopped());
+    }
+
+    @Test
+    public void testShogiMoveAction() throws Exception {
+        ShogiGameState testState = new ShogiGameState(0);
+        Board testBoard = testState.getBoard();
+        MoveGenerator gen = new MoveGenerator();
+        int push = Move.make(6 * 9 + 2, 5 * 9 + 2, Pieces.PAWN, false);
+        assertEquals(push, testBoard.findLegalMove(gen, 6 * 9 + 2, 5 * 9 + 2, false, 0));
+
+        // Nothing there, not this player's piece, too far, can't promote, nothing in hand
+        assertEquals(Move.NONE, testBoard.findLegalMove(gen, 5 * 9 + 4, 4 * 9 + 4, false, 0));
+        assertEquals(Move.NONE, testBoard.findLegalMove(gen, 2 * 9 + 6, 3 * 9 + 6, false, 0));
+        assertEquals(Move.NONE, testBoard.findLegalMove(gen, 6 * 9 + 2, 4 * 9 + 2, false, 0));
+        assertEquals(Move.NONE, testBoard.findLegalMove(gen, 6 * 9 + 2, 5 * 9 + 2, true, 0));
+        assertEquals(Move.NONE, testBoard.findLegalMove(gen, ShogiMoveAction.DROP, 4 * 9 + 4, false,
+                Pieces.PAWN));
+        assertEquals(Move.NONE, testBoard.findLegalMove(gen, 6 * 9 + 2, 81, false, 0));
+
+        // One action carries the whole move, from an engine move or from tiles
+        ShogiMoveAction action = new ShogiMoveAction(null, push);
+        assertEquals(6 * 9 + 2, action.from);
+        assertEquals(5 * 9 + 2, action.to);
+        assertFalse(action.promote);
+        assertFalse(action.isDrop());
+        ShogiMoveAction drop = new ShogiMoveAction(null, Move.makeDrop(4 * 9 + 4, Pieces.GOLD));
+        assertTrue(drop.isDrop());
+        assertEquals(Pieces.GOLD, drop.dropPiece);
+        ShogiMoveAction tapped = new ShogiMoveAction(null, testBoard.getTile(6 * 9 + 2),
+                testBoard.getTile(5 * 9 + 2), false);
+        assertEquals(push, testBoard.findLegalMove(gen, tapped.from, tapped.to, tapped.promote,
+                tapped.dropPiece));
+    }
+
+    @Test
+    public void testLocalGameEventLoop() throws Exception {
+        // Two seeded random players, one answering on the game's own thread and one
+        // on a thread of its own; after ten moves each the first player resigns
+        CountDownLatch over = new CountDownLatch(2);
+        RandomPlayer[] players = {new RandomPlayer(true, 10, over), new RandomPlayer(false, 10, over)};
+        ShogiLocalGame game = new ShogiLocalGame(new ShogiGameState(0));
+        game.start(players);
+        assertTrue(over.await(60, TimeUnit.SECONDS));
+
+        // Each hears it's bound and started, then gets the first state, one per
+        // move and one for the resignation, and last that the game is over
+        for (RandomPlayer p : players) {
+            p.thread.shutdown();
+            assertEquals(10, p.moves);
+            assertEquals(25, p.received.size());
+            assertEquals("BindGameInfo", p.received.get(0));
+            assertEquals("StartGameInfo", p.received.get(1));
+            for (int i = 2; i < 24; i++) {
+                assertEquals("ShogiGameState", p.received.get(i));
+            }
+            assertEquals("GameOverInfo", p.received.get(24));
+            assertEquals("First Player resigned. Second Player Wins! ", p.overMessage);
+        }
+    }
+
+    /**
+     * A player for the event loop test that plays seeded random moves, either
+     * right away on whichever thread tells it about the game or on a thread of
+     * its own, and resigns once it has played its moves
+     */
+    private static class RandomPlayer implements GamePlayer {
+        final ExecutorService thread = Executors.newSingleThreadExecutor();
+        final boolean answerAtOnce;
+        final int maxMoves;
+        final CountDownLatch over;
+        final Playout playout = new Playout(5);
+        final ArrayList<String> received = new ArrayList<String>(); //Info class names, in order
+        Game game;
+        int playerNum;
+        int moves;
+        String overMessage;
+
+        RandomPlayer(boolean answerAtOnce, int maxMoves, CountDownLatch over) {
+            this.answerAtOnce = answerAtOnce;
+            this.maxMoves = maxMoves;
+            this.over = over;
+        }
+
+        @Override
+        public void sendInfo(final GameInfo info) {
+            if (answerAtOnce) {
+                receiveInfo(info);
+                return;
+            }
+            thread.execute(new Runnable() {
+                @Override
+                public void run() {
+                    receiveInfo(info);
+                }
+            });
+        }
+
+        void receiveInfo(GameInfo info) {
+            received.add(info.getClass().getSimpleName());
+            if (info instanceof BindGameInfo) {
+                game = ((BindGameInfo) info).getGame();
+                playerNum = ((BindGameInfo) info).getPlayerNum();
+                game.sendAction(new MyNameIsAction(this, "random " + playerNum));
+            } else if (info instanceof StartGameInfo) {
+                game.sendAction(new ReadyAction(this));
+            } else if (info instanceof GameOverInfo) {
+                overMessage = ((GameOverInfo) info).getMessage();
+                game.sendAction(new GameOverAckAction(this));
+                over.countDown();
+            } else if (info instanceof ShogiGameState
+                    && ((ShogiGameState) info).getWhoseTurn() == playerNum) {
+                if (moves == maxMoves) {
+                    game.sendAction(new SurrenderAction(this));
+                    return;
+                }
+                Position pos = new Position(((ShogiGameState) info).getBoard().getPosition());
+                int move = playout.randomMove(pos);
+                if (move != Move.NONE) {
+                    moves++;
+                    game.sendAction(new ShogiMoveAction(this, move));
+                }
+            }
+        }
+
+    @Override
+        public void start() {
+        }
+
+        @Override
+        public void gameSetAsGui(GameMainActivity activity) {
+        }
+
+        @Override
+        public void setAsGui(GameMainActivity activity) {
+        }
+
+        @Override
+        public boolean requiresGui() {
+            return false;
+        }
+
+        @Override
+        public boolean supportsGui() {
+            return false;
+        }
+
+        @Override
+        public GameMainActivity getActivity() {
+            return null;
+        }
+    }
+}